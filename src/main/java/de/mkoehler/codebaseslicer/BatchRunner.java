@@ -0,0 +1,170 @@
+package de.mkoehler.codebaseslicer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Creates many slices in one process, as listed in a batch manifest.
+ * <p>
+ * All slices share the source index, the per-thread resolvers and the dependency cache, so a class
+ * that is reached from several roots (typically the shared domain model) is parsed and resolved only
+ * once. The slices themselves run concurrently, each in its own {@link SliceSession} on one thread
+ * of the worker pool. When all slices are done, a throughput report is printed.
+ * </p>
+ *
+ * <h3>Manifest format:</h3>
+ * <p>
+ * One slice per line, with whitespace-separated fields {@code <root> <depth> <output> [<include1,include2,...>]}.
+ * Blank lines and lines starting with {@code #} are ignored.
+ * </p>
+ * <pre>{@code
+ * # root                                   depth  output                  includes
+ * com.myproject.api.OrderController        2      slices/order.txt
+ * com.myproject.api.CustomerController     2      slices/customer.txt     com.myproject.config.Constants
+ * }</pre>
+ */
+class BatchRunner {
+
+    /** The slices to create, in manifest order. */
+    private final List<Entry> entries;
+    /** The engine shared by all slices. */
+    private final SlicerEngine engine;
+    /** The pool the slices run on concurrently. */
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a new BatchRunner.
+     *
+     * @param entries  The slices to create.
+     * @param engine   The engine shared by all slices.
+     * @param executor The pool the slices run on concurrently.
+     */
+    BatchRunner(List<Entry> entries, SlicerEngine engine, ExecutorService executor) {
+        this.entries = entries;
+        this.engine = engine;
+        this.executor = executor;
+    }
+
+    /**
+     * Reads a batch manifest.
+     *
+     * @param manifest The manifest file.
+     * @return The entries of the manifest, in file order.
+     * @throws IOException              if the manifest cannot be read.
+     * @throws IllegalArgumentException if a line of the manifest is malformed.
+     */
+    static List<Entry> readManifest(Path manifest) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] fields = line.split("\\s+");
+            if (fields.length < 3 || fields.length > 4) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " of " + manifest
+                        + ": expected '<root> <depth> <output> [<includes>]', got: " + line);
+            }
+            int depth;
+            try {
+                depth = Integer.parseInt(fields[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " of " + manifest + ": invalid depth: " + fields[1]);
+            }
+            List<String> includes = fields.length == 4
+                    ? Arrays.stream(fields[3].split(",")).map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toList())
+                    : Collections.emptyList();
+            entries.add(new Entry(fields[0], depth, Paths.get(fields[2]), includes));
+        }
+        return entries;
+    }
+
+    /**
+     * Runs all slices concurrently and prints the throughput report.
+     *
+     * @return The number of slices that failed.
+     */
+    int run() {
+        long start = System.nanoTime();
+        List<Future<Integer>> futures = new ArrayList<>();
+        long[] millis = new long[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            int index = i;
+            futures.add(executor.submit(() -> {
+                long sliceStart = System.nanoTime();
+                try {
+                    return new SliceSession(engine, entry.root, entry.depth, entry.includes, entry.output, null).run().getFiles().size();
+                } finally {
+                    millis[index] = (System.nanoTime() - sliceStart) / 1_000_000;
+                }
+            }));
+        }
+
+        int failed = 0;
+        long totalFiles = 0;
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            String status;
+            try {
+                int files = futures.get(i).get();
+                totalFiles += files;
+                status = files + " files";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                status = "interrupted";
+                failed++;
+            } catch (ExecutionException e) {
+                status = "FAILED: " + e.getCause().getMessage();
+                failed++;
+            }
+            rows.add(String.format("  %-60s depth %-3d %8d ms  %s", entry.root, entry.depth, millis[i], status));
+        }
+        long wallMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("\nBatch throughput report:");
+        rows.forEach(System.out::println);
+        double seconds = Math.max(wallMillis, 1) / 1000.0;
+        System.out.printf("  %d slices (%d failed), %d files written in %d ms: %.2f slices/s, %.1f files/s%n",
+                entries.size(), failed, totalFiles, wallMillis, entries.size() / seconds, totalFiles / seconds);
+        return failed;
+    }
+
+    /**
+     * A single slice of a batch manifest.
+     */
+    static class Entry {
+        /** The fully qualified name of the class to start from. */
+        final String root;
+        /** The maximum depth of the dependency traversal. */
+        final int depth;
+        /** The output file. */
+        final Path output;
+        /** Classes to include without following their dependencies. */
+        final List<String> includes;
+
+        /**
+         * Constructs a new Entry.
+         *
+         * @param root     The fully qualified name of the class to start from.
+         * @param depth    The maximum depth of the dependency traversal.
+         * @param output   The output file.
+         * @param includes Classes to include without following their dependencies.
+         */
+        Entry(String root, int depth, Path output, List<String> includes) {
+            this.root = root;
+            this.depth = depth;
+            this.output = output;
+            this.includes = includes;
+        }
+    }
+}
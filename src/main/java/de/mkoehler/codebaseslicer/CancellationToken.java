@@ -0,0 +1,98 @@
+package de.mkoehler.codebaseslicer;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops a running {@link SliceSession} early, either when a deadline passes or when another thread
+ * cancels it.
+ * <p>
+ * Cancellation is cooperative: the traversal checks the token before it analyzes the next file, and
+ * the parallel traversal stops waiting for its workers. The accurate engine also checks it between
+ * the references of a file, so a single expensive file does not run far past the deadline; the file
+ * is then left out of the dependency cache, since its dependencies are incomplete. The other engines
+ * analyze a file in one step, which is finished first. The session then returns the slice it has found
+ * so far, see {@link SliceResult#isCutOff()}.
+ * </p>
+ * <p>
+ * Tokens are safe for concurrent use. One token may be shared by several sessions, e.g. to stop all
+ * slices of a request at once.
+ * </p>
+ */
+public final class CancellationToken {
+
+    /** A token that never fires, for callers that always want the complete slice. {@link #cancel()} has no effect on it. */
+    public static final CancellationToken NONE = new CancellationToken();
+
+    /** The value of {@link System#nanoTime()} at which the token fires, if {@link #hasDeadline}. */
+    private final long deadlineNanos;
+    /** Whether the token fires at {@link #deadlineNanos}. */
+    private final boolean hasDeadline;
+    /** Whether {@link #cancel()} was called. */
+    private volatile boolean cancelled;
+
+    /**
+     * Constructs a new token without a deadline, which only fires when {@link #cancel()} is called.
+     */
+    public CancellationToken() {
+        this.deadlineNanos = 0;
+        this.hasDeadline = false;
+    }
+
+    /**
+     * Constructs a new token that fires after a timeout.
+     *
+     * @param timeoutNanos The timeout, counted from now.
+     */
+    private CancellationToken(long timeoutNanos) {
+        this.deadlineNanos = System.nanoTime() + timeoutNanos;
+        this.hasDeadline = true;
+    }
+
+    /**
+     * Creates a token that fires after a timeout, or earlier when {@link #cancel()} is called.
+     * Timeouts too long to count in nanoseconds (about 292 years) never fire.
+     *
+     * @param timeoutMillis The timeout in milliseconds, counted from now. A timeout of 0 fires at once.
+     * @return The token.
+     * @throws IllegalArgumentException if the timeout is negative.
+     */
+    public static CancellationToken withTimeout(long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("The timeout must not be negative: " + timeoutMillis);
+        }
+        // Saturates at Long.MAX_VALUE instead of overflowing into the past.
+        return new CancellationToken(TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    /**
+     * Fires the token. Sessions using it stop at their next check. Does nothing for {@link #NONE},
+     * which is shared by all sessions that run without a token.
+     */
+    public void cancel() {
+        if (this != NONE) {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Stops the current piece of work if the token has fired.
+     *
+     * @throws CancellationException if the deadline has passed or {@link #cancel()} was called.
+     */
+    void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("The slice was cancelled.");
+        }
+    }
+
+    /**
+     * Checks whether the token has fired.
+     *
+     * @return {@code true} if the deadline has passed or {@link #cancel()} was called.
+     */
+    public boolean isCancelled() {
+        // Compared as a difference, since nanoTime may overflow.
+        return cancelled || hasDeadline && System.nanoTime() - deadlineNanos >= 0;
+    }
+}
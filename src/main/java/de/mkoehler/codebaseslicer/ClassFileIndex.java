@@ -0,0 +1,172 @@
+package de.mkoehler.codebaseslicer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Extracts dependencies from compiled class files instead of source code, for {@code -classes}.
+ * <p>
+ * The class directories are walked once. Every class file is mapped to the source file of its
+ * top-level class through the {@link SourceIndex}, so that a source file is answered from the class
+ * files of all its classes, including nested, local and anonymous ones. Reading a constant pool
+ * (see {@link ClassFileReader}) takes a fraction of the time of parsing and resolving the source.
+ * </p>
+ * <p>
+ * A source file without class files, or with a class file older than the source, has not been
+ * compiled since its last change. For such files {@link #dependencies(Path)} returns {@code null},
+ * and the caller falls back to a source backend.
+ * </p>
+ */
+class ClassFileIndex {
+
+    /** The number of source files that were answered from class files. */
+    private static final LongAdder TOTAL_READ = new LongAdder();
+    /** The number of source files that had no up-to-date class files. */
+    private static final LongAdder TOTAL_FALLBACKS = new LongAdder();
+
+    /** The class files of each source file, by absolute, normalized source path. */
+    private final Map<Path, List<Path>> classFiles;
+
+    /**
+     * Constructs a new ClassFileIndex.
+     *
+     * @param classFiles The class files of each source file.
+     */
+    private ClassFileIndex(Map<Path, List<Path>> classFiles) {
+        this.classFiles = classFiles;
+    }
+
+    /**
+     * Walks the class directories and maps every class file to its source file.
+     *
+     * @param classDirectories The directories containing the compiled classes, e.g. {@code target/classes}.
+     * @param sourceIndex      The index of all project types.
+     * @return The index.
+     * @throws IOException if a class directory cannot be walked.
+     */
+    static ClassFileIndex build(List<Path> classDirectories, SourceIndex sourceIndex) throws IOException {
+        long start = System.nanoTime();
+        Map<Path, List<Path>> classFiles = new HashMap<>();
+        int count = 0;
+        int unmatched = 0;
+        for (Path classDirectory : classDirectories) {
+            if (!Files.isDirectory(classDirectory)) {
+                System.err.println("Class directory does not exist: " + classDirectory);
+                continue;
+            }
+            List<Path> files;
+            try (Stream<Path> paths = Files.walk(classDirectory)) {
+                files = paths.filter(p -> p.toString().endsWith(".class") && Files.isRegularFile(p)).collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (Path classFile : files) {
+                String relativePath = classDirectory.relativize(classFile).toString();
+                String binaryName = relativePath.substring(0, relativePath.length() - ".class".length())
+                        .replace(classFile.getFileSystem().getSeparator(), ".");
+                int dollar = binaryName.indexOf('$');
+                Path sourceFile = sourceIndex.find(dollar < 0 ? binaryName : binaryName.substring(0, dollar));
+                if (sourceFile == null) {
+                    // module-info, package-info, or classes whose sources are not under -source.
+                    unmatched++;
+                    continue;
+                }
+                classFiles.computeIfAbsent(normalize(sourceFile), key -> new ArrayList<>()).add(classFile);
+                count++;
+            }
+        }
+        System.out.printf("Indexed %d class files of %d source files in %d ms (%d without a source file).%n",
+                count, classFiles.size(), (System.nanoTime() - start) / 1_000_000, unmatched);
+        return new ClassFileIndex(classFiles);
+    }
+
+    /**
+     * Returns the types referenced by the compiled classes of a source file.
+     *
+     * @param sourceFile The source file.
+     * @return The fully qualified names of the referenced types, with nested types in source form
+     *         ({@code Order.Line}), or {@code null} if the file has no up-to-date class files.
+     * @throws IOException if a class file cannot be read.
+     */
+    Set<String> dependencies(Path sourceFile) throws IOException {
+        List<Path> files = classFiles.get(normalize(sourceFile));
+        if (files == null || isStale(sourceFile, files)) {
+            TOTAL_FALLBACKS.increment();
+            return null;
+        }
+        Set<String> referencedTypes = new HashSet<>();
+        for (Path classFile : files) {
+            for (String internalName : ClassFileReader.referencedClasses(classFile)) {
+                referencedTypes.add(toSourceName(internalName));
+            }
+        }
+        TOTAL_READ.increment();
+        return referencedTypes;
+    }
+
+    /**
+     * Returns the counters of all instances added up.
+     *
+     * @return The number of source files answered from class files, and the number of source files
+     *         that fell back to a source backend, in this order.
+     */
+    static long[] totals() {
+        return new long[]{TOTAL_READ.sum(), TOTAL_FALLBACKS.sum()};
+    }
+
+    /**
+     * Checks whether a source file was changed after any of its classes was compiled.
+     *
+     * @param sourceFile The source file.
+     * @param files      The class files of the source file.
+     * @return {@code true} if a class file is older than the source file.
+     * @throws IOException if a modification time cannot be read.
+     */
+    private static boolean isStale(Path sourceFile, List<Path> files) throws IOException {
+        long sourceModified = Files.getLastModifiedTime(sourceFile).toMillis();
+        for (Path classFile : files) {
+            if (Files.getLastModifiedTime(classFile).toMillis() < sourceModified) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Converts an internal class name to the name the source backends report.
+     *
+     * @param internalName The internal name, e.g. {@code com/example/Order$Line}.
+     * @return The source name, e.g. {@code com.example.Order.Line}, or the name of the enclosing class
+     *         for local and anonymous classes.
+     */
+    private static String toSourceName(String internalName) {
+        String name = internalName.replace('/', '.');
+        int dollar = name.indexOf('$');
+        while (dollar >= 0 && dollar + 1 < name.length()) {
+            if (Character.isDigit(name.charAt(dollar + 1))) {
+                // Local and anonymous classes ($1, $1Helper) cannot be referenced by name.
+                name = name.substring(0, dollar);
+                break;
+            }
+            dollar = name.indexOf('$', dollar + 1);
+        }
+        return name.replace('$', '.');
+    }
+
+    /**
+     * Returns the absolute, normalized form of a path, so that paths from the source index and from
+     * the callers can be compared.
+     *
+     * @param path The path.
+     * @return The absolute, normalized path.
+     */
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,313 @@
+package de.mkoehler.codebaseslicer;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads the classes a compiled class file refers to, straight from its constant pool.
+ * <p>
+ * Every class that the bytecode touches (as a receiver, in a cast, in an {@code instanceof}, as an
+ * exception type, or as a nested class) has a {@code CONSTANT_Class} entry in the constant pool.
+ * The types that only appear in declarations are collected from the descriptors and {@code Signature}
+ * attributes of the class, its fields and its methods, which also covers generic type arguments such
+ * as the {@code Order} in {@code List<Order>}. Annotations are skipped, as in the source backends.
+ * </p>
+ * <p>
+ * The types of local variables that the bytecode never touches, such as the {@code Order} in a local
+ * {@code List<Order>}, are read from the {@code LocalVariableTable} and {@code LocalVariableTypeTable}
+ * attributes inside the {@code Code} attribute of each method. The compiler only writes these with
+ * debug information ({@code javac -g}, which Maven and Gradle pass by default). References to
+ * compile-time constants of other classes cannot be recovered at all, since the compiler copies the
+ * constant's value into the referring class and keeps no trace of the class that declared it.
+ * </p>
+ * <p>
+ * Only the parts of the class file format that are needed are decoded (JVMS chapter 4); everything
+ * else is skipped by its length, so the reader works for class files of any version.
+ * </p>
+ */
+final class ClassFileReader {
+
+    /** The magic number at the start of every class file. */
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private ClassFileReader() {
+    }
+
+    /**
+     * Reads a class file and returns the classes it refers to.
+     *
+     * @param classFile The class file.
+     * @return The internal names of the referenced classes (e.g. {@code com/example/Order$Line}),
+     *         including the class itself.
+     * @throws IOException if the file cannot be read or is not a valid class file.
+     */
+    static Set<String> referencedClasses(Path classFile) throws IOException {
+        return referencedClasses(Files.readAllBytes(classFile));
+    }
+
+    /**
+     * Returns the classes a class file refers to.
+     *
+     * @param bytes The content of the class file.
+     * @return The internal names of the referenced classes, including the class itself.
+     * @throws IOException if the content is not a valid class file.
+     */
+    static Set<String> referencedClasses(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file.");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        int constantCount = in.readUnsignedShort();
+        String[] utf8 = new String[constantCount];
+        int[] classNames = new int[constantCount];
+        int classCount = 0;
+        for (int i = 1; i < constantCount; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7: // Class
+                    classNames[classCount++] = in.readUnsignedShort();
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    in.readUnsignedShort();
+                    break;
+                case 15: // MethodHandle
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    in.readInt();
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    in.readLong();
+                    i++; // Takes two slots.
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag + " at index " + i + ".");
+            }
+        }
+
+        Set<String> referencedClasses = new HashSet<>();
+        for (int i = 0; i < classCount; i++) {
+            String name = utf8[classNames[i]];
+            if (name.startsWith("[")) {
+                // Array classes are given as descriptors.
+                new SignatureParser(name, referencedClasses).parse();
+            } else {
+                referencedClasses.add(name);
+            }
+        }
+
+        in.readUnsignedShort(); // access flags
+        in.readUnsignedShort(); // this class
+        in.readUnsignedShort(); // super class
+        int interfaceCount = in.readUnsignedShort();
+        for (int i = 0; i < interfaceCount; i++) {
+            in.readUnsignedShort();
+        }
+        // Fields and methods have the same layout.
+        for (int memberKind = 0; memberKind < 2; memberKind++) {
+            int memberCount = in.readUnsignedShort();
+            for (int i = 0; i < memberCount; i++) {
+                in.readUnsignedShort(); // access flags
+                in.readUnsignedShort(); // name
+                new SignatureParser(utf8[in.readUnsignedShort()], referencedClasses).parse();
+                readAttributes(in, utf8, referencedClasses);
+            }
+        }
+        readAttributes(in, utf8, referencedClasses);
+        return referencedClasses;
+    }
+
+    /**
+     * Reads an attribute table and collects the classes in its {@code Signature} attribute, and in the
+     * local variable tables of its {@code Code} attribute.
+     *
+     * @param in                The class file, positioned at the attribute count.
+     * @param utf8              The Utf8 entries of the constant pool.
+     * @param referencedClasses Receives the internal names of the referenced classes.
+     * @throws IOException if the class file ends prematurely.
+     */
+    private static void readAttributes(DataInputStream in, String[] utf8, Set<String> referencedClasses) throws IOException {
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            String name = utf8[in.readUnsignedShort()];
+            int length = in.readInt();
+            if ("Signature".equals(name)) {
+                new SignatureParser(utf8[in.readUnsignedShort()], referencedClasses).parse();
+            } else if ("Code".equals(name)) {
+                in.readUnsignedShort(); // max stack
+                in.readUnsignedShort(); // max locals
+                in.skipBytes(in.readInt()); // the bytecode
+                in.skipBytes(in.readUnsignedShort() * 8); // the exception table
+                readAttributes(in, utf8, referencedClasses);
+            } else if ("LocalVariableTable".equals(name) || "LocalVariableTypeTable".equals(name)) {
+                int variableCount = in.readUnsignedShort();
+                for (int j = 0; j < variableCount; j++) {
+                    in.skipBytes(6); // start, length and name
+                    new SignatureParser(utf8[in.readUnsignedShort()], referencedClasses).parse();
+                    in.readUnsignedShort(); // slot
+                }
+            } else {
+                in.skipBytes(length);
+            }
+        }
+    }
+
+    /**
+     * Collects the class names from a descriptor or generic signature (JVMS 4.3 and 4.7.9.1).
+     */
+    private static class SignatureParser {
+        /** The descriptor or signature. */
+        private final String signature;
+        /** Receives the internal names of the referenced classes. */
+        private final Set<String> referencedClasses;
+        /** The position of the next character to read. */
+        private int pos;
+
+        /**
+         * Constructs a new SignatureParser.
+         *
+         * @param signature         The descriptor or signature of a class, field or method.
+         * @param referencedClasses Receives the internal names of the referenced classes.
+         */
+        SignatureParser(String signature, Set<String> referencedClasses) {
+            this.signature = signature;
+            this.referencedClasses = referencedClasses;
+        }
+
+        /**
+         * Parses the whole descriptor or signature.
+         */
+        void parse() {
+            if (pos < signature.length() && signature.charAt(pos) == '<') {
+                typeParameters();
+            }
+            if (pos < signature.length() && signature.charAt(pos) == '(') {
+                pos++;
+                while (signature.charAt(pos) != ')') {
+                    type();
+                }
+                pos++;
+            }
+            // The return and thrown types of a method, or the supertypes of a class, or a field type.
+            while (pos < signature.length()) {
+                if (signature.charAt(pos) == '^') {
+                    pos++;
+                }
+                type();
+            }
+        }
+
+        /**
+         * Parses a type: a base type, {@code V}, an array, a type variable or a class type.
+         */
+        private void type() {
+            char c = signature.charAt(pos);
+            if (c == 'L') {
+                classType();
+            } else if (c == 'T') {
+                pos = signature.indexOf(';', pos) + 1;
+            } else {
+                // An array prefix or a base type.
+                pos++;
+            }
+        }
+
+        /**
+         * Parses a class type, including its type arguments and nested class suffixes.
+         */
+        private void classType() {
+            pos++;
+            String name = identifier();
+            referencedClasses.add(name);
+            while (true) {
+                char c = signature.charAt(pos);
+                if (c == '<') {
+                    typeArguments();
+                } else if (c == '.') {
+                    pos++;
+                    name = name + "$" + identifier();
+                    referencedClasses.add(name);
+                } else {
+                    pos++; // ';'
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Parses type arguments such as {@code <Lcom/example/Order;*>}.
+         */
+        private void typeArguments() {
+            pos++;
+            while (signature.charAt(pos) != '>') {
+                char c = signature.charAt(pos);
+                if (c == '*') {
+                    pos++;
+                } else {
+                    if (c == '+' || c == '-') {
+                        pos++;
+                    }
+                    type();
+                }
+            }
+            pos++;
+        }
+
+        /**
+         * Parses formal type parameters such as {@code <T:Ljava/lang/Object;>}.
+         */
+        private void typeParameters() {
+            pos++;
+            while (signature.charAt(pos) != '>') {
+                pos = signature.indexOf(':', pos);
+                while (signature.charAt(pos) == ':') {
+                    pos++;
+                    // The class bound may be empty, if the first bound is an interface.
+                    char c = signature.charAt(pos);
+                    if (c == 'L' || c == 'T') {
+                        type();
+                    }
+                }
+            }
+            pos++;
+        }
+
+        /**
+         * Reads an identifier or internal class name up to the next delimiter of a class type.
+         *
+         * @return The identifier.
+         */
+        private String identifier() {
+            int start = pos;
+            while (true) {
+                char c = signature.charAt(pos);
+                if (c == '<' || c == '.' || c == ';') break;
+                pos++;
+            }
+            return signature.substring(start, pos);
+        }
+    }
+}
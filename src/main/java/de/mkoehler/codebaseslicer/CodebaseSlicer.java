@@ -1,22 +1,15 @@
 package de.mkoehler.codebaseslicer;
 
 import com.github.javaparser.ParserConfiguration;
-import com.github.javaparser.StaticJavaParser;
-import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.TypeDeclaration;
-import com.github.javaparser.ast.type.ClassOrInterfaceType;
-import com.github.javaparser.resolution.types.ResolvedType;
-import com.github.javaparser.symbolsolver.JavaSymbolSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -33,10 +26,19 @@ import java.util.stream.Collectors;
  * It uses the {@code com.github.javaparser} library to accurately parse Java source code and
  * resolve type symbols.
  * </p>
+ * <p>
+ * This class only translates the command line. The slicing itself is done by a {@link SlicerEngine},
+ * which services can also embed directly and share between concurrent {@link SliceSession}s.
+ * </p>
  *
  * <h3>Usage:</h3>
  * <pre>{@code
- * java -jar codebase-slicer.jar -root <...> -source <...> -output <...> -depth <...> [-java <...>] [-include <...>]
+ * java -jar codebase-slicer.jar -root <...> -source <...> -output <...> -depth <...> [-java <...>] [-mode <...>] [-classes <...>] [-exclude-packages <...>] [-include <...>] [-cache <...>] [-threads <...>] [-watch] [-direction <...>] [-max-tokens <...> [-rank <...>]] [-full-depth <...>] [-timeout <...>] [-stats <...>]
+ * java -jar codebase-slicer.jar -daemon <port> -source <...> [-output-dir <...>] [-java <...>] [-mode <...>] [-classes <...>] [-exclude-packages <...>] [-cache <...>] [-threads <...>]
+ * java -jar codebase-slicer.jar -batch <manifest> -source <...> [-java <...>] [-mode <...>] [-classes <...>] [-exclude-packages <...>] [-cache <...>] [-threads <...>] [-watch]
+ * java -jar codebase-slicer.jar -index <file> -source <...> [-java <...>] [-mode <...>] [-classes <...>] [-exclude-packages <...>] [-cache <...>] [-threads <...>]
+ * java -jar codebase-slicer.jar -benchmark <files> -source <...> [-java <...>] [-classes <...>] [-exclude-packages <...>]
+ * java -jar codebase-slicer.jar -index <file> -root <...> -output <...> -depth <...> [-include <...>] [-exclude-packages <...>] [-direction <...>] [-max-tokens <...> [-rank <...>]] [-full-depth <...>] [-timeout <...>] [-stats <...>]
  * }</pre>
  *
  * <h3>Example:</h3>
@@ -52,23 +54,8 @@ import java.util.stream.Collectors;
  */
 public class CodebaseSlicer {
 
-    // --- Static fields for managing the slicing process ---
-
-    /** A list of all source root directories for the project (e.g., src/main/java, src/test/java). */
-    private static List<Path> projectSourcePaths;
-    /** The path to the output file where the summary will be saved. */
-    private static Path outputPath;
-    /** The maximum depth for the dependency traversal. 0 means only the root class. */
-    private static int maxDepth;
-    /** The fully qualified name of the class where the analysis starts. */
-    private static String rootClassName;
-
-    /** A set to track classes that have already been processed to avoid cycles and redundant work. */
-    private static final Set<String> processedClasses = new HashSet<>();
-    /** A queue for the breadth-first search, holding classes that need to be analyzed. */
-    private static final Queue<WorkItem> workQueue = new LinkedList<>();
-    /** The final set of files to be included in the output, mapping qualified name to file path. */
-    private static final Map<String, Path> finalFileSet = new HashMap<>();
+    /** A command-line value that starts with a dash but is not a flag. */
+    private static final Pattern NEGATIVE_NUMBER = Pattern.compile("-\\d+");
 
     /**
      * The main entry point for the application.
@@ -87,236 +74,345 @@ public class CodebaseSlicer {
      * @throws IOException if there is an error reading source files or writing the output file.
      */
     public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
         Map<String, String> argMap = parseArgs(args);
-        rootClassName = argMap.get("-root");
+        String rootClassName = argMap.get("-root");
         String sourceDirsStr = argMap.get("-source");
         String outputFile = argMap.get("-output");
         String depthStr = argMap.get("-depth");
         String javaVersionStr = argMap.getOrDefault("-java", "LATEST");
         // --- NEW: Parse the -include argument ---
         String includeStr = argMap.get("-include");
-
-        if (rootClassName == null || sourceDirsStr == null || outputFile == null || depthStr == null) {
-            // --- MODIFIED: Updated usage string ---
-            System.err.println("Usage: java -jar <jarfile> -root <com.example.MyClass> -source <path1,path2,...> -output <summary.txt> -depth <number> [-java <version>] [-include <class1,class2,...>]");
-            System.err.println("Example: -root de.otto.payments.b2ccreditfraud.bonim.entities.repos.CustomerTypeRepository -source C:\\Users\\MKOEHLER\\intellij-workspace\\piranha_bonim\\src\\main\\java,C:\\Users\\MKOEHLER\\intellij-workspace\\piranha_bonim\\src\\test\\java -output customerTypeRepo_slice.txt -depth 2");
+        String cacheDirStr = argMap.get("-cache");
+        String threadsStr = argMap.getOrDefault("-threads", "1");
+        String daemonPortStr = argMap.get("-daemon");
+        String outputDirStr = argMap.get("-output-dir");
+        String batchManifestStr = argMap.get("-batch");
+        String indexFileStr = argMap.get("-index");
+        String directionStr = argMap.getOrDefault("-direction", "forward");
+        String maxTokensStr = argMap.get("-max-tokens");
+        String rankStr = argMap.getOrDefault("-rank", "fanin");
+        String fullDepthStr = argMap.get("-full-depth");
+        String timeoutStr = argMap.get("-timeout");
+        String statsStr = argMap.get("-stats");
+        String excludePackagesStr = argMap.getOrDefault("-exclude-packages", PackageTrie.DEFAULT_PREFIXES);
+        String modeStr = argMap.getOrDefault("-mode", DependencyExtractor.MODES[0]);
+        String benchmarkStr = argMap.get("-benchmark");
+        String classesStr = argMap.get("-classes");
+
+        boolean daemonMode = daemonPortStr != null;
+        boolean batchMode = batchManifestStr != null;
+        boolean watchMode = Boolean.parseBoolean(argMap.get("-watch"));
+        boolean benchmarkMode = benchmarkStr != null;
+        boolean buildIndex = indexFileStr != null && rootClassName == null;
+        boolean queryIndex = indexFileStr != null && rootClassName != null;
+        boolean usageError = queryIndex
+                ? outputFile == null || (depthStr == null && maxTokensStr == null)
+                : sourceDirsStr == null || (!daemonMode && !batchMode && !buildIndex && !benchmarkMode
+                        && (rootClassName == null || outputFile == null || (depthStr == null && maxTokensStr == null)));
+        if (usageError) {
+            printUsage();
             return;
         }
 
-        // --- NEW: Prepare list of explicitly included classes ---
-        List<String> explicitlyIncludedClasses = Collections.emptyList();
-        if (includeStr != null && !includeStr.trim().isEmpty()) {
-            explicitlyIncludedClasses = Arrays.stream(includeStr.split(","))
-                    .map(String::trim)
-                    .collect(Collectors.toList());
+        DependencyGraph.Direction direction;
+        try {
+            direction = DependencyGraph.Direction.valueOf(directionStr.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: The -direction flag must be forward, reverse or both, got: " + directionStr);
+            return;
+        }
+        if (direction != DependencyGraph.Direction.FORWARD && (daemonMode || batchMode || watchMode || buildIndex)) {
+            System.err.println("Error: The -direction flag is only supported for single slices.");
+            return;
         }
 
-        projectSourcePaths = Arrays.stream(sourceDirsStr.split(","))
-                .map(String::trim)
-                .map(Paths::get)
-                .collect(Collectors.toList());
-
-        outputPath = Paths.get(outputFile);
-        maxDepth = Integer.parseInt(depthStr);
+        // With a token budget, -depth is optional and only limits the traversal further.
+        int depth = depthStr != null ? (int) parseNumber("-depth", depthStr, Integer.MAX_VALUE) : Integer.MAX_VALUE;
+        long maxTokens = maxTokensStr != null ? parseNumber("-max-tokens", maxTokensStr, Long.MAX_VALUE) : 0;
+        if (maxTokens < 0 || (maxTokensStr != null && maxTokens == 0)) {
+            System.err.println("Error: The -max-tokens flag requires a positive number, got: " + maxTokensStr);
+            return;
+        }
+        if (maxTokens > 0 && (daemonMode || batchMode || watchMode || buildIndex)) {
+            System.err.println("Error: The -max-tokens flag is only supported for single slices. The daemon takes it per request.");
+            return;
+        }
+        if (!"fanin".equalsIgnoreCase(rankStr) && !"pagerank".equalsIgnoreCase(rankStr)) {
+            System.err.println("Error: The -rank flag must be fanin or pagerank, got: " + rankStr);
+            return;
+        }
+        boolean rankByPageRank = "pagerank".equalsIgnoreCase(rankStr);
+        if (rankByPageRank && maxTokens == 0) {
+            System.err.println("Error: The -rank flag requires a token budget (-max-tokens).");
+            return;
+        }
+        int fullSourceDepth = fullDepthStr != null ? (int) parseNumber("-full-depth", fullDepthStr, Integer.MAX_VALUE) : -1;
+        if (fullDepthStr != null && (fullSourceDepth < 0 || daemonMode || batchMode || watchMode || buildIndex)) {
+            System.err.println("Error: The -full-depth flag requires a non-negative number and is only supported for single slices."
+                    + " The daemon takes it per request.");
+            return;
+        }
+        long timeoutMillis = timeoutStr != null ? parseNumber("-timeout", timeoutStr, Long.MAX_VALUE) : 0;
+        if (timeoutStr != null && (timeoutMillis <= 0 || daemonMode || batchMode || watchMode || buildIndex)) {
+            System.err.println("Error: The -timeout flag requires a positive number of milliseconds and is only supported for single slices."
+                    + " The daemon takes it per request.");
+            return;
+        }
+        if (outputDirStr != null && (!daemonMode || !Files.isDirectory(Paths.get(outputDirStr)))) {
+            System.err.println("Error: The -output-dir flag requires an existing directory and is only supported for the daemon.");
+            return;
+        }
+        if (statsStr != null && (daemonMode || batchMode || watchMode || buildIndex || benchmarkMode)) {
+            System.err.println("Error: The -stats flag is only supported for single slices.");
+            return;
+        }
+        int threads = (int) parseNumber("-threads", threadsStr, Integer.MAX_VALUE);
+        int daemonPort = daemonMode ? (int) parseNumber("-daemon", daemonPortStr, 65535) : 0;
+        int benchmarkFiles = benchmarkMode ? (int) parseNumber("-benchmark", benchmarkStr, Integer.MAX_VALUE) : 0;
 
+        ParserConfiguration.LanguageLevel languageLevel;
         try {
-            ParserConfiguration.LanguageLevel languageLevel = "LATEST".equalsIgnoreCase(javaVersionStr)
+            languageLevel = "LATEST".equalsIgnoreCase(javaVersionStr)
                     ? ParserConfiguration.LanguageLevel.JAVA_21 // Defaulting to a recent version if 'LATEST' is specified
                     : ParserConfiguration.LanguageLevel.valueOf("JAVA_" + javaVersionStr);
             System.out.println("Setting JavaParser language level to: " + languageLevel);
-            StaticJavaParser.getConfiguration().setLanguageLevel(languageLevel);
         } catch (IllegalArgumentException e) {
             System.err.println("Error: Invalid Java version specified with -java flag: " + javaVersionStr);
             return;
         }
 
-        CombinedTypeSolver typeSolver = new CombinedTypeSolver();
-        typeSolver.add(new ReflectionTypeSolver()); // For JDK classes
-        for (Path sourcePath : projectSourcePaths) {
-            System.out.println("Adding source directory to solver: " + sourcePath);
-            typeSolver.add(new JavaParserTypeSolver(sourcePath.toFile()));
+        // A slice from a precomputed graph has no source directories.
+        List<Path> projectSourcePaths = queryIndex ? Collections.emptyList() : Arrays.stream(sourceDirsStr.split(","))
+                .map(String::trim)
+                .map(Paths::get)
+                .collect(Collectors.toList());
+        SlicerEngine.Builder builder = SlicerEngine.Config.builder(projectSourcePaths)
+                .languageLevel(languageLevel)
+                .cacheDirectory(cacheDirStr != null ? Paths.get(cacheDirStr) : null)
+                // These modes always share resolved dependencies between slices.
+                .inMemoryCache(daemonMode || batchMode || watchMode);
+        if (classesStr != null) {
+            builder.classDirectories(Arrays.stream(classesStr.split(","))
+                    .map(String::trim)
+                    .map(Paths::get)
+                    .collect(Collectors.toList()));
         }
-        JavaSymbolSolver symbolSolver = new JavaSymbolSolver(typeSolver);
-        StaticJavaParser.getConfiguration().setSymbolResolver(symbolSolver);
-
-        System.out.println("\nStarting analysis...");
-        addWork(rootClassName, 0);
-
-        while (!workQueue.isEmpty()) {
-            WorkItem item = workQueue.poll();
-            if (item.depth > maxDepth || processedClasses.contains(item.qualifiedName)) continue;
+        try {
+            builder.mode(modeStr);
+            builder.excludedPackages(excludePackagesStr);
+            builder.threads(threads);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            return;
+        }
+        SlicerEngine.Config config = builder.build();
 
-            System.out.printf("Processing: %s (Depth: %d)%n", item.qualifiedName, item.depth);
-            processedClasses.add(item.qualifiedName);
+        // --- NEW: Prepare list of explicitly included classes ---
+        List<String> explicitlyIncludedClasses = Collections.emptyList();
+        if (includeStr != null && !includeStr.trim().isEmpty()) {
+            explicitlyIncludedClasses = Arrays.stream(includeStr.split(","))
+                    .map(String::trim)
+                    .collect(Collectors.toList());
+        }
 
-            try {
-                findDependencies(item);
-            } catch (Exception e) {
-                System.err.println("Could not resolve or parse: " + item.qualifiedName + ". Skipping. Error: " + e.getMessage());
-            }
+        SliceStats stats = statsStr != null ? new SliceStats() : null;
+        if (stats != null) {
+            stats.phase("arguments", System.nanoTime() - start);
         }
 
-        // --- NEW: Process the explicitly included classes without recursion ---
-        if (!explicitlyIncludedClasses.isEmpty()) {
-            System.out.println("\nProcessing explicitly included classes...");
-            for (String className : explicitlyIncludedClasses) {
-                // Check if it was already found by the dependency traversal
-                if (finalFileSet.containsKey(className)) {
-                    System.out.println("  -> " + className + " was already included by the dependency tree. Skipping.");
-                    continue;
-                }
-                Path filePath = convertQualifiedNameToPath(className);
-                if (filePath != null) {
-                    System.out.println("  -> Adding: " + className);
-                    finalFileSet.put(className, filePath);
-                } else {
-                    System.err.println("  -> Could not find source file for explicitly included class: " + className);
-                }
+        if (queryIndex) {
+            // A slice from a precomputed graph needs neither the source index nor the parsers.
+            long loadStart = System.nanoTime();
+            DependencyGraph graph = DependencyGraph.read(Paths.get(indexFileStr));
+            System.out.printf("Loaded dependency graph with %d types and %d edges in %d ms.%n",
+                    graph.nodeCount(), graph.edgeCount(), (System.nanoTime() - loadStart) / 1_000_000);
+            if (stats != null) {
+                stats.phase("setup", System.nanoTime() - loadStart);
             }
+            Path outputPath = Paths.get(outputFile);
+            SliceSession session = new SliceSession(config, rootClassName, depth, explicitlyIncludedClasses, outputPath, graph, direction);
+            session.setMaxTokens(maxTokens);
+            session.setRankByPageRank(rankByPageRank);
+            session.setFullSourceDepth(fullSourceDepth);
+            session.setCancellationToken(timeoutToken(timeoutMillis));
+            session.setStats(stats);
+            session.run();
+            System.out.println("\nProcessing complete. Summary saved to " + outputPath);
+            writeStats(stats, statsStr);
+            return;
         }
 
-        writeOutput();
-        System.out.println("\nProcessing complete. Summary saved to " + outputPath);
-    }
-
-    /**
-     * Traverses a parsed Java file to find all referenced types and adds them to the work queue.
-     * <p>
-     * This is the core analysis step for a single file. It resolves all type references within the file,
-     * including extended classes, implemented interfaces, field types, and method signatures.
-     * Any new, relevant types are added to the work queue for subsequent processing.
-     * </p>
-     *
-     * @param item The {@link WorkItem} representing the class to analyze.
-     * @throws IOException if the source file cannot be read or parsed.
-     */
-    private static void findDependencies(WorkItem item) throws IOException {
-        Path filePath = convertQualifiedNameToPath(item.qualifiedName);
-        if (filePath == null) {
-            System.err.println("  -> Could not find source file for: " + item.qualifiedName);
-            return;
+        List<BatchRunner.Entry> entries = null;
+        if (batchMode) {
+            try {
+                entries = BatchRunner.readManifest(Paths.get(batchManifestStr));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: Invalid batch manifest. " + e.getMessage());
+                return;
+            }
         }
 
-        finalFileSet.put(item.qualifiedName, filePath);
-        CompilationUnit cu = StaticJavaParser.parse(filePath);
-        Set<String> referencedTypes = new HashSet<>();
+        long setupStart = System.nanoTime();
+        try (SlicerEngine engine = new SlicerEngine(config)) {
+            if (stats != null) {
+                // Building the source index and the class file index.
+                stats.phase("setup", System.nanoTime() - setupStart);
+            }
+            if (benchmarkMode) {
+                engine.benchmark(benchmarkFiles);
+                return;
+            }
 
-        // Find all direct class references (fields, variables, method calls, etc.)
-        cu.findAll(ClassOrInterfaceType.class).forEach(type -> {
-            try {
-                ResolvedType resolvedType = type.resolve();
-                if (resolvedType.isReferenceType()) {
-                    referencedTypes.add(resolvedType.asReferenceType().getQualifiedName());
+            if (watchMode) {
+                if (entries == null) {
+                    entries = Collections.singletonList(new BatchRunner.Entry(rootClassName, depth,
+                            Paths.get(outputFile), explicitlyIncludedClasses));
                 }
-            } catch (Exception e) { /* Ignore unsolvable types */ }
-        });
+                new SliceWatcher(engine, entries).run();
+                return;
+            }
 
-        // Find parent classes and implemented interfaces
-        cu.findAll(TypeDeclaration.class).forEach(type -> {
-            if (type.isClassOrInterfaceDeclaration()) {
-                type.asClassOrInterfaceDeclaration().getExtendedTypes().forEach(parent -> {
-                    try {
-                        ResolvedType resolvedType = parent.resolve();
-                        if (resolvedType.isReferenceType()) {
-                            referencedTypes.add(resolvedType.asReferenceType().getQualifiedName());
-                        }
-                    } catch (Exception e) { /* Ignore */ }
-                });
-                type.asClassOrInterfaceDeclaration().getImplementedTypes().forEach(iface -> {
-                    try {
-                        ResolvedType resolvedType = iface.resolve();
-                        if (resolvedType.isReferenceType()) {
-                            referencedTypes.add(resolvedType.asReferenceType().getQualifiedName());
-                        }
-                    } catch (Exception e) { /* Ignore */ }
+            if (batchMode) {
+                System.out.println("Running " + entries.size() + " slices on " + threads + " threads.");
+                // Slices run concurrently, each traversing on its own thread.
+                ExecutorService batchPool = Executors.newFixedThreadPool(threads, runnable -> {
+                    Thread thread = new Thread(runnable, "slicer-batch");
+                    thread.setDaemon(true);
+                    return thread;
                 });
+                int failed;
+                try {
+                    failed = new BatchRunner(entries, engine, batchPool).run();
+                } finally {
+                    batchPool.shutdown();
+                }
+                engine.saveCache();
+                if (failed > 0) {
+                    // Lets scripts and CI jobs notice failed slices. System.exit skips the try-with-resources, so close first.
+                    engine.close();
+                    System.exit(1);
+                }
+                return;
             }
-        });
 
-        // Add discovered types to the work queue
-        for (String type : referencedTypes) {
-            // Filter out JDK classes
-            if (!type.startsWith("java.") && !type.startsWith("javax.")) {
-                addWork(type, item.depth + 1);
+            if (daemonMode) {
+                // Requests may only write slices below this directory.
+                Path outputDirectory = Paths.get(outputDirStr != null ? outputDirStr : "");
+                new SlicerDaemon(engine, daemonPort, outputDirectory).run();
+                return;
             }
+
+            if (buildIndex) {
+                Path indexPath = Paths.get(indexFileStr);
+                engine.buildGraph().write(indexPath);
+                engine.saveCache();
+                System.out.println("\nDependency graph saved to " + indexPath);
+                return;
+            }
+
+            Path outputPath = Paths.get(outputFile);
+            if (direction != DependencyGraph.Direction.FORWARD || rankByPageRank) {
+                // The users of a class can be anywhere, and PageRank needs all edges, so every file has to be analyzed first.
+                System.out.println("No -index given. Analyzing the whole project first...");
+                long graphStart = System.nanoTime();
+                DependencyGraph graph = engine.buildGraph();
+                if (stats != null) {
+                    stats.phase("setup", System.nanoTime() - graphStart);
+                }
+                SliceSession session = new SliceSession(config, rootClassName, depth, explicitlyIncludedClasses, outputPath, graph, direction);
+                session.setMaxTokens(maxTokens);
+                session.setRankByPageRank(rankByPageRank);
+                session.setFullSourceDepth(fullSourceDepth);
+                session.setCancellationToken(timeoutToken(timeoutMillis));
+                session.setStats(stats);
+                session.run();
+            } else {
+                SliceSession session = engine.newSession(rootClassName, depth, explicitlyIncludedClasses, outputPath);
+                session.setMaxTokens(maxTokens);
+                session.setFullSourceDepth(fullSourceDepth);
+                session.setCancellationToken(timeoutToken(timeoutMillis));
+                session.setStats(stats);
+                session.run();
+            }
+            engine.saveCache();
+            System.out.println("\nProcessing complete. Summary saved to " + outputPath);
+            writeStats(stats, statsStr);
         }
     }
 
     /**
-     * Adds a new work item to the processing queue if it meets the criteria.
-     * <p>
-     * A work item is added only if it has not already been processed, is not already in the queue,
-     * and its depth does not exceed the maximum allowed depth.
-     * </p>
-     *
-     * @param qualifiedName The fully qualified name of the class to potentially add.
-     * @param depth         The dependency depth of this class relative to the root.
+     * Prints the command line syntax of all modes.
      */
-    private static void addWork(String qualifiedName, int depth) {
-        if (!processedClasses.contains(qualifiedName) && depth <= maxDepth) {
-            if (workQueue.stream().noneMatch(w -> w.qualifiedName.equals(qualifiedName))) {
-                workQueue.add(new WorkItem(qualifiedName, depth));
-            }
-        }
+    private static void printUsage() {
+        System.err.println("Usage: java -jar <jarfile> -root <com.example.MyClass> -source <path1,path2,...> -output <summary.txt> -depth <number> [-java <version>] [-mode accurate|fast|javac] [-classes <dir1,dir2,...>] [-exclude-packages <prefix1,prefix2,...>] [-include <class1,class2,...>] [-cache <directory>] [-threads <number>] [-watch] [-direction forward|reverse|both] [-max-tokens <number> [-rank fanin|pagerank]] [-full-depth <number>] [-timeout <milliseconds>] [-stats <file.json>]");
+        System.err.println("   or: java -jar <jarfile> -daemon <port> -source <path1,path2,...> [-output-dir <directory>] [-java <version>] [-mode accurate|fast|javac] [-classes <dir1,dir2,...>] [-exclude-packages <prefix1,prefix2,...>] [-cache <directory>] [-threads <number>]");
+        System.err.println("   or: java -jar <jarfile> -batch <manifest> -source <path1,path2,...> [-java <version>] [-mode accurate|fast|javac] [-classes <dir1,dir2,...>] [-exclude-packages <prefix1,prefix2,...>] [-cache <directory>] [-threads <number>] [-watch]");
+        System.err.println("   or: java -jar <jarfile> -index <file> -source <path1,path2,...> [-java <version>] [-mode accurate|fast|javac] [-classes <dir1,dir2,...>] [-exclude-packages <prefix1,prefix2,...>] [-cache <directory>] [-threads <number>]");
+        System.err.println("   or: java -jar <jarfile> -benchmark <files> -source <path1,path2,...> [-java <version>] [-classes <dir1,dir2,...>] [-exclude-packages <prefix1,prefix2,...>]");
+        System.err.println("   or: java -jar <jarfile> -index <file> -root <com.example.MyClass> -output <summary.txt> -depth <number> [-include <class1,class2,...>] [-exclude-packages <prefix1,prefix2,...>] [-direction forward|reverse|both] [-max-tokens <number> [-rank fanin|pagerank]] [-full-depth <number>] [-timeout <milliseconds>] [-stats <file.json>]");
+        System.err.println("Note: -classes does not see references to constants of other classes, which the compiler inlines,"
+                + " and sees the types of local variables only in classes compiled with debug information (javac -g).");
+        System.err.println("Example: -root de.otto.payments.b2ccreditfraud.bonim.entities.repos.CustomerTypeRepository -source C:\\Users\\MKOEHLER\\intellij-workspace\\piranha_bonim\\src\\main\\java,C:\\Users\\MKOEHLER\\intellij-workspace\\piranha_bonim\\src\\test\\java -output customerTypeRepo_slice.txt -depth 2");
     }
 
     /**
-     * Converts a fully qualified Java class name to its corresponding file system path.
-     * <p>
-     * It handles inner classes by looking for the outer class's file. It searches through all
-     * configured source directories to locate the file.
-     * </p>
+     * Parses the value of a numeric flag. A value that is not a whole number, or is larger than the
+     * flag allows, is a usage error: it is reported together with the usage, and the process exits
+     * with status 1, so that scripts do not go on with a default.
      *
-     * @param qualifiedName The fully qualified name of the class (e.g., "com.example.MyClass").
-     * @return A {@link Path} to the corresponding .java file, or {@code null} if not found in any source directory.
+     * @param flag  The flag, for the error message.
+     * @param value The value given on the command line.
+     * @param max   The largest value the flag allows.
+     * @return The parsed value.
      */
-    private static Path convertQualifiedNameToPath(String qualifiedName) {
-        String mainClassName = qualifiedName.split("\\$")[0];
-        String relativePath = mainClassName.replace('.', File.separatorChar) + ".java";
-
-        for (Path sourceRoot : projectSourcePaths) {
-            Path candidate = sourceRoot.resolve(relativePath);
-            if (Files.exists(candidate)) {
-                return candidate;
+    private static long parseNumber(String flag, String value, long max) {
+        try {
+            long number = Long.parseLong(value.trim());
+            if (number <= max) {
+                return number;
             }
+            System.err.println("Error: The " + flag + " flag allows at most " + max + ", got: " + value);
+        } catch (NumberFormatException e) {
+            System.err.println("Error: The " + flag + " flag requires a whole number, got: " + value);
         }
-        return null;
+        printUsage();
+        System.exit(1);
+        throw new IllegalStateException("Unreachable");
     }
 
     /**
-     * Gathers the source code from all collected files and writes them to the final output file.
-     * <p>
-     * The files are sorted alphabetically for a consistent and predictable output. Each file's
-     * content is enclosed in a 'START FILE' and 'END FILE' block for easy parsing.
-     * </p>
+     * Writes the report of {@code -stats}, if it was requested.
      *
-     * @throws IOException If an error occurs while writing to the output file.
+     * @param stats    The collected stats, or {@code null}.
+     * @param statsStr The file to write to.
+     * @throws IOException if the file cannot be written.
      */
-    private static void writeOutput() throws IOException {
-        StringBuilder sb = new StringBuilder();
-        sb.append(String.format("### Codebase Slice starting from root: %s (Depth: %d) ###%n%n", rootClassName, maxDepth));
-
-        List<Path> sortedFiles = finalFileSet.values().stream().sorted().collect(Collectors.toList());
+    private static void writeStats(SliceStats stats, String statsStr) throws IOException {
+        if (stats == null) return;
+        Path statsPath = Paths.get(statsStr);
+        stats.write(statsPath);
+        System.out.println("Stats saved to " + statsPath);
+    }
 
-        for (Path filePath : sortedFiles) {
-            String relativePath = filePath.toString(); // Fallback to absolute path
-            for (Path sourceRoot : projectSourcePaths) {
-                if (filePath.toAbsolutePath().startsWith(sourceRoot.toAbsolutePath())) {
-                    relativePath = sourceRoot.relativize(filePath).toString().replace('\\', '/');
-                    break;
-                }
-            }
-            sb.append("--- START FILE: ").append(relativePath).append(" ---\n");
-            sb.append(Files.readString(filePath));
-            sb.append("\n--- END FILE: ").append(relativePath).append(" ---\n\n");
-        }
-        Files.writeString(outputPath, sb.toString());
+    /**
+     * Creates the token for {@code -timeout}. The deadline starts with the traversal, so that building
+     * the source index and the dependency graph does not count against it.
+     *
+     * @param timeoutMillis The timeout in milliseconds, or 0 for none.
+     * @return The token.
+     */
+    private static CancellationToken timeoutToken(long timeoutMillis) {
+        return timeoutMillis > 0 ? CancellationToken.withTimeout(timeoutMillis) : CancellationToken.NONE;
     }
 
     /**
      * A simple parser for command-line arguments.
      * <p>
-     * It assumes arguments are provided in key-value pairs (e.g., {@code -key value}).
+     * It assumes arguments are provided in key-value pairs (e.g., {@code -key value}). A flag that is
+     * followed by another flag or ends the argument list (e.g., {@code -watch}) is stored with the
+     * value {@code "true"}. A negative number (e.g., {@code -timeout -1}) is a value, not a flag, so
+     * that it is reported by the validation of its flag.
      * </p>
      *
      * @param args The array of command-line arguments from {@code main}.
@@ -324,36 +420,14 @@ public class CodebaseSlicer {
      */
     private static Map<String, String> parseArgs(String[] args) {
         Map<String, String> map = new HashMap<>();
-        for (int i = 0; i < args.length; i += 2) {
-            if (i + 1 < args.length) {
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 < args.length && (!args[i + 1].startsWith("-") || NEGATIVE_NUMBER.matcher(args[i + 1]).matches())) {
                 map.put(args[i], args[i + 1]);
+                i++;
+            } else if (args[i].startsWith("-")) {
+                map.put(args[i], "true");
             }
         }
         return map;
     }
-
-    /**
-     * A simple data structure to hold information about a class to be processed.
-     * <p>
-     * This is used by the breadth-first search queue to track not only the class to process
-     * but also its depth in the dependency graph relative to the root class.
-     * </p>
-     */
-    static class WorkItem {
-        /** The fully qualified name of the class. */
-        String qualifiedName;
-        /** The dependency depth of this class. The root is at depth 0. */
-        int depth;
-
-        /**
-         * Constructs a new WorkItem.
-         *
-         * @param qualifiedName The fully qualified name of the class.
-         * @param depth The dependency depth of the class.
-         */
-        WorkItem(String qualifiedName, int depth) {
-            this.qualifiedName = qualifiedName;
-            this.depth = depth;
-        }
-    }
-}
\ No newline at end of file
+}
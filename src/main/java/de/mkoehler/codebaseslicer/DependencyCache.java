@@ -0,0 +1,365 @@
+package de.mkoehler.codebaseslicer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * A persistent, on-disk cache of the resolved outgoing dependencies of each source file.
+ * <p>
+ * Every entry maps the absolute path of a source file to the SHA-256 hash of its content and the set
+ * of fully qualified type names that were resolved from it. As long as the content hash of a file is
+ * unchanged, a later run can reuse the stored dependency set and skip parsing and symbol resolution
+ * for that file entirely.
+ * </p>
+ * <p>
+ * The cache is stored as a single UTF-8 text file inside the cache directory. Its first line is a
+ * format marker, the second line a fingerprint of the configuration the dependencies were resolved
+ * with (source roots and language level). If the fingerprint does not match the current run, the
+ * stored entries are discarded, because the same file may resolve differently against other roots.
+ * </p>
+ * <p>
+ * A file's references can also resolve differently when a type is added to its package or to an
+ * imported package, when a member type is added or removed, or when a type moves between packages,
+ * although the file itself is unchanged. Each entry therefore records the packages its file can see
+ * types of: its own package, the packages named by its imports and the packages of the types it
+ * referenced, together with a hash over the type names of these packages (see
+ * {@link SourceIndex#packageHash(String)}). An entry is only reused while that hash is unchanged, so
+ * adding a type invalidates the files of its package and of the packages importing it, not the whole
+ * cache. A fully qualified name that did not resolve when the file was analyzed is not covered: if
+ * its type is added later, the file keeps its cached dependencies until it is edited.
+ * </p>
+ * <p>
+ * Entries of files that are no longer part of the source roots are dropped before the cache is saved
+ * (see {@link #retainFiles(Predicate)}).
+ * </p>
+ */
+class DependencyCache {
+
+    /** The name of the cache file inside the cache directory. */
+    private static final String CACHE_FILE_NAME = "dependencies.cache";
+    /** The marker written to the first line of the cache file; bumped whenever the format changes. */
+    private static final String FORMAT_MARKER = "# codebase-slicer dependency cache v2";
+    /** The number of lookups that found a valid entry. */
+    private static final LongAdder TOTAL_HITS = new LongAdder();
+    /** The number of lookups that found no entry, or one for an older version of the file. */
+    private static final LongAdder TOTAL_MISSES = new LongAdder();
+
+    /** The file the cache is loaded from and saved to, or {@code null} for a cache that lives only in memory. */
+    private final Path cacheFile;
+    /** The fingerprint of the configuration the cached dependencies belong to. */
+    private final String fingerprint;
+    /** The cached entries, keyed by the absolute, normalized path of the source file. */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /** Whether entries were added or replaced since the cache was loaded. */
+    private volatile boolean dirty;
+
+    /**
+     * Constructs an empty cache. Use {@link #load(Path, String)} to create a cache from disk.
+     *
+     * @param cacheFile   The file the cache is saved to.
+     * @param fingerprint The fingerprint of the current configuration.
+     */
+    private DependencyCache(Path cacheFile, String fingerprint) {
+        this.cacheFile = cacheFile;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Loads the cache from the given directory, or creates an empty one if no usable cache exists yet.
+     *
+     * @param cacheDir    The cache directory. It is created when the cache is saved.
+     * @param fingerprint The fingerprint of the current configuration (see {@link #fingerprint(List, String, String, String)}).
+     * @return The loaded cache.
+     * @throws IOException if the cache file exists but cannot be read.
+     */
+    static DependencyCache load(Path cacheDir, String fingerprint) throws IOException {
+        DependencyCache cache = new DependencyCache(cacheDir.resolve(CACHE_FILE_NAME), fingerprint);
+        if (!Files.isRegularFile(cache.cacheFile)) {
+            return cache;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(cache.cacheFile, StandardCharsets.UTF_8)) {
+            if (!FORMAT_MARKER.equals(reader.readLine()) || !fingerprint.equals(reader.readLine())) {
+                System.out.println("Dependency cache is outdated or was built with a different configuration. Rebuilding.");
+                cache.dirty = true;
+                return cache;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length != 5) continue;
+                // The package list always contains the file's own package, which may be the empty default package.
+                List<String> packages = Arrays.asList(parts[3].split(",", -1));
+                Set<String> dependencies = parts[4].isEmpty()
+                        ? Collections.emptySet()
+                        : new HashSet<>(Arrays.asList(parts[4].split(",")));
+                cache.entries.put(parts[0], new Entry(parts[1], packages, parts[2], Collections.unmodifiableSet(dependencies)));
+            }
+        }
+        System.out.println("Loaded " + cache.entries.size() + " entries from dependency cache " + cache.cacheFile);
+        return cache;
+    }
+
+    /**
+     * Creates an empty cache that is never written to disk. The daemon uses it to keep resolved
+     * dependencies between requests when no cache directory is configured.
+     *
+     * @param fingerprint The fingerprint of the current configuration.
+     * @return The in-memory cache.
+     */
+    static DependencyCache inMemory(String fingerprint) {
+        return new DependencyCache(null, fingerprint);
+    }
+
+    /**
+     * Returns the cached dependencies of a file if its content hash still matches and no type was
+     * added to or removed from the packages it can see since the entry was stored.
+     *
+     * @param filePath The source file.
+     * @param hash     The current content hash of the file.
+     * @param index    The current source index.
+     * @return The cached set of referenced type names, or {@code null} if there is no valid entry.
+     */
+    Set<String> get(Path filePath, String hash, SourceIndex index) {
+        Entry entry = entries.get(key(filePath));
+        if (entry == null || !entry.hash.equals(hash) || !entry.scopeHash.equals(scopeHash(entry.packages, index))) {
+            TOTAL_MISSES.increment();
+            return null;
+        }
+        TOTAL_HITS.increment();
+        return entry.dependencies;
+    }
+
+    /**
+     * Returns the counters of all instances added up.
+     *
+     * @return The number of hits and misses of {@link #get(Path, String, SourceIndex)}, in this order.
+     */
+    static long[] totals() {
+        return new long[]{TOTAL_HITS.sum(), TOTAL_MISSES.sum()};
+    }
+
+    /**
+     * Returns the most recently stored dependencies of a file, regardless of whether its content has
+     * changed since. The watch mode uses this to tell whether an edit changed a file's dependencies.
+     *
+     * @param filePath The source file.
+     * @return The last stored set of referenced type names, or {@code null} if the file has no entry.
+     */
+    Set<String> lastKnown(Path filePath) {
+        Entry entry = entries.get(key(filePath));
+        return entry != null ? entry.dependencies : null;
+    }
+
+    /**
+     * Stores the resolved dependencies of a file.
+     *
+     * @param filePath     The source file.
+     * @param hash         The content hash of the file the dependencies were resolved from.
+     * @param scan         The scan of the same content, for the file's package and imports.
+     * @param dependencies The set of referenced type names.
+     * @param index        The source index the dependencies were resolved against.
+     */
+    void put(Path filePath, String hash, JavaSourceScanner.ScanResult scan, Set<String> dependencies, SourceIndex index) {
+        List<String> packages = new ArrayList<>(visiblePackages(scan, dependencies));
+        entries.put(key(filePath), new Entry(hash, packages, scopeHash(packages, index),
+                Collections.unmodifiableSet(new HashSet<>(dependencies))));
+        dirty = true;
+    }
+
+    /**
+     * Drops the entries of all files that do not satisfy a condition, e.g. files that were deleted.
+     *
+     * @param keep Returns {@code true} for files whose entries are kept.
+     */
+    void retainFiles(Predicate<Path> keep) {
+        if (entries.keySet().removeIf(key -> !keep.test(Paths.get(key)))) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the cache back to disk if it has changed. The file is written to a temporary file first
+     * and then moved into place, so an interrupted run never leaves a truncated cache behind.
+     * Does nothing for an in-memory cache.
+     *
+     * @throws IOException if the cache directory or file cannot be written.
+     */
+    synchronized void save() throws IOException {
+        if (!dirty || cacheFile == null) return;
+
+        Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+        Path tempFile = cacheFile.resolveSibling(CACHE_FILE_NAME + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            writer.write(FORMAT_MARKER);
+            writer.newLine();
+            writer.write(fingerprint);
+            writer.newLine();
+            for (Map.Entry<String, Entry> e : new TreeMap<>(entries).entrySet()) {
+                writer.write(e.getKey());
+                writer.write('\t');
+                writer.write(e.getValue().hash);
+                writer.write('\t');
+                writer.write(e.getValue().scopeHash);
+                writer.write('\t');
+                writer.write(String.join(",", e.getValue().packages));
+                writer.write('\t');
+                writer.write(String.join(",", new TreeSet<>(e.getValue().dependencies)));
+                writer.newLine();
+            }
+        }
+        Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        dirty = false;
+    }
+
+    /**
+     * Computes the fingerprint of a configuration. Cached dependencies are only valid for the
+     * configuration they were resolved with.
+     *
+     * @param sourcePaths      The source root directories, in lookup order.
+     * @param languageLevel    The language level used for parsing.
+     * @param mode             The extraction mode, {@code accurate} or {@code fast}.
+     * @param excludedPackages The excluded package prefixes, whose types are missing from the cached sets.
+     * @return A single-line fingerprint string.
+     */
+    static String fingerprint(List<Path> sourcePaths, String languageLevel, String mode, String excludedPackages) {
+        StringBuilder sb = new StringBuilder("level=").append(languageLevel).append(";mode=").append(mode)
+                .append(";exclude=").append(excludedPackages).append(";roots=");
+        for (Path sourcePath : sourcePaths) {
+            sb.append(sourcePath.toAbsolutePath().normalize()).append('|');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the packages whose types a file can refer to without naming them in full: its own
+     * package, the packages named by its imports and the packages of the types it referenced. Since
+     * a dotted name does not tell where the package ends and nested types begin, every qualifier of
+     * such a name is taken, e.g. {@code a.b} and {@code a} for {@code a.b.C}.
+     *
+     * @param scan         The scan of the file.
+     * @param dependencies The types the file referenced.
+     * @return The package names, sorted.
+     */
+    static SortedSet<String> visiblePackages(JavaSourceScanner.ScanResult scan, Set<String> dependencies) {
+        SortedSet<String> packages = new TreeSet<>();
+        packages.add(scan.packageName);
+        for (String name : scan.imports) {
+            addQualifiers(packages, name);
+        }
+        for (String name : dependencies) {
+            addQualifiers(packages, name);
+        }
+        return packages;
+    }
+
+    /**
+     * Adds every qualifier of a dotted name to a set, from the longest to the shortest.
+     *
+     * @param packages The set to add to.
+     * @param name     The dotted name.
+     */
+    private static void addQualifiers(Set<String> packages, String name) {
+        for (String qualifier = SourceIndex.qualifier(name); !qualifier.isEmpty(); qualifier = SourceIndex.qualifier(qualifier)) {
+            packages.add(qualifier);
+        }
+    }
+
+    /**
+     * Computes a hash over the type names of a list of packages.
+     *
+     * @param packages The package names.
+     * @param index    The source index to take the type names from.
+     * @return The hash as a lowercase hexadecimal string.
+     */
+    private static String scopeHash(List<String> packages, SourceIndex index) {
+        StringBuilder sb = new StringBuilder();
+        for (String packageName : packages) {
+            sb.append(packageName).append('=').append(index.packageHash(packageName)).append('\n');
+        }
+        return hash(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Computes the SHA-256 hash of a file's content.
+     *
+     * @param filePath The file to hash.
+     * @return The hash as a lowercase hexadecimal string.
+     * @throws IOException if the file cannot be read.
+     */
+    static String hash(Path filePath) throws IOException {
+        return hash(Files.readAllBytes(filePath));
+    }
+
+    /**
+     * Computes the SHA-256 hash of a byte array.
+     *
+     * @param content The bytes to hash.
+     * @return The hash as a lowercase hexadecimal string.
+     */
+    static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the key under which a file is stored.
+     *
+     * @param filePath The source file.
+     * @return The absolute, normalized path as a string.
+     */
+    private static String key(Path filePath) {
+        return filePath.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * A single cache entry: the content hash of a file, the packages it can see and the dependencies
+     * resolved from it.
+     */
+    static class Entry {
+        /** The SHA-256 content hash of the file. */
+        final String hash;
+        /** The packages whose types the file can see, see {@link #visiblePackages(JavaSourceScanner.ScanResult, Set)}. */
+        final List<String> packages;
+        /** The hash over the type names of {@link #packages} when the dependencies were resolved. */
+        final String scopeHash;
+        /** The fully qualified names of all types referenced by the file. */
+        final Set<String> dependencies;
+
+        /**
+         * Constructs a new Entry.
+         *
+         * @param hash         The content hash of the file.
+         * @param packages     The packages the file can see.
+         * @param scopeHash    The hash over the type names of these packages.
+         * @param dependencies The referenced type names.
+         */
+        Entry(String hash, List<String> packages, String scopeHash, Set<String> dependencies) {
+            this.hash = hash;
+            this.packages = packages;
+            this.scopeHash = scopeHash;
+            this.dependencies = dependencies;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package de.mkoehler.codebaseslicer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Finds the types a source file refers to. The traversal only sees this interface, so the engine can
+ * be chosen per run with {@code -mode}, and {@code -benchmark} can compare all engines on the same
+ * files.
+ * <p>
+ * The engines are:
+ * </p>
+ * <ul>
+ *   <li>{@code accurate}: JavaParser and the symbol solver, see {@link DependencyResolver},</li>
+ *   <li>{@code fast}: the tokens of the file and the {@link SourceIndex}, see {@link LexicalDependencyExtractor},</li>
+ *   <li>{@code javac}: the attributed syntax trees of the JDK compiler, see {@link JavacDependencyExtractor},</li>
+ *   <li>{@code -classes}: the constant pools of compiled classes, see {@link ClassFileIndex}. It is not
+ *       an engine of its own, since it needs another engine for files that were not compiled.</li>
+ * </ul>
+ * <p>
+ * Implementations are called from several threads at once with {@code -threads}.
+ * </p>
+ */
+interface DependencyExtractor {
+
+    /** The names of the engines that {@code -mode} accepts, the default first. */
+    String[] MODES = {"accurate", "fast", "javac"};
+
+    /**
+     * Finds the types a source file refers to.
+     *
+     * @param file The source file.
+     * @return The fully qualified names of the referenced types, with nested types in source form
+     *         ({@code Order.Line}). Types outside the project may or may not be included.
+     * @throws IOException if the file cannot be read or analyzed.
+     */
+    Set<String> extract(Path file) throws IOException;
+
+    /**
+     * Finds the types a source file refers to, stopping early when a token fires. Engines that
+     * analyze a file in one step ignore the token.
+     *
+     * @param file              The source file.
+     * @param cancellationToken Stops the analysis of the file.
+     * @return The fully qualified names of the referenced types, as for {@link #extract(Path)}.
+     * @throws IOException           if the file cannot be read or analyzed.
+     * @throws CancellationException if the token fired before the file was analyzed completely.
+     */
+    default Set<String> extract(Path file, CancellationToken cancellationToken) throws IOException {
+        return extract(file);
+    }
+
+    /**
+     * Releases the threads the engine keeps, if any. The engine must not be used afterwards.
+     */
+    default void close() {
+    }
+}
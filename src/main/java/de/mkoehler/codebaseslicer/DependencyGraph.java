@@ -0,0 +1,588 @@
+package de.mkoehler.codebaseslicer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * The precomputed dependency graph of a whole project in compressed sparse row (CSR) form.
+ * <p>
+ * Every type declared in the source roots is a node, identified by an integer ID. Node IDs are
+ * assigned in the sorted order of the fully qualified names, so a name is looked up by binary search
+ * in the string table. Each node points to the source file declaring it, and the edges are stored per
+ * file, since all types declared in one file share that file's dependencies:
+ * </p>
+ * <ul>
+ *   <li>{@code edgeOffsets[f]} to {@code edgeOffsets[f + 1]} is the range of file {@code f}'s edges
+ *       in {@code edgeTargets},</li>
+ *   <li>{@code edgeTargets[i]} is the node ID of a referenced type.</li>
+ * </ul>
+ * <p>
+ * An inverted index of the same edges is built alongside: {@code reverseOffsets[n]} to
+ * {@code reverseOffsets[n + 1]} is the range of {@code reverseSources} holding the files that
+ * reference node {@code n}, and {@code fileNodes} lists the nodes declared in each file. Slicing
+ * against the edges ("who uses X") therefore costs the same as slicing along them.
+ * </p>
+ * <p>
+ * Once built, a slice query is a breadth-first search over these int arrays and needs neither the
+ * parser nor the symbol solver. The graph reflects the sources at the time it was built; it must be
+ * rebuilt after the code changes. The content hash of every file is recorded, so that outdated files
+ * can be detected.
+ * </p>
+ *
+ * <h3>File format:</h3>
+ * <p>
+ * The graph is kept in a single {@link ByteBuffer} in exactly the layout of the file, and every
+ * accessor reads directly from it. A saved graph is therefore memory-mapped instead of deserialized:
+ * opening it costs the same regardless of the size of the project, nothing is copied onto the heap,
+ * and several processes share the same pages of the operating system's cache. All numbers are
+ * big-endian ints, and all sections follow each other without padding:
+ * </p>
+ * <pre>{@code
+ * header          magic, version, rootCount, nodeCount, fileCount, edgeCount, stringDataSize
+ * stringOffsets   int[rootCount + nodeCount + fileCount + 1]  into stringData
+ * nodeFiles       int[nodeCount]
+ * edgeOffsets     int[fileCount + 1]                          into edgeTargets
+ * edgeTargets     int[edgeCount]                              node IDs
+ * reverseOffsets  int[nodeCount + 1]                          into reverseSources
+ * reverseSources  int[edgeCount]                              file IDs
+ * fileNodeOffsets int[fileCount + 1]                          into fileNodes
+ * fileNodes       int[nodeCount]                              node IDs
+ * fileHashes      byte[fileCount * 32]                        SHA-256 of each file
+ * stringData      byte[stringDataSize]                        UTF-8: source roots, node names, file paths
+ * }</pre>
+ * <p>
+ * Node names are sorted by their UTF-8 bytes, so the binary search compares the mapped bytes without
+ * decoding them.
+ * </p>
+ */
+class DependencyGraph {
+
+    /** The first int of a graph file ("CSLG"). */
+    private static final int MAGIC = 0x43534C47;
+    /** The version of the file format; bumped whenever the layout changes. */
+    private static final int VERSION = 3;
+    /** The size of the header in bytes. */
+    private static final int HEADER_SIZE = 7 * Integer.BYTES;
+    /** The size of a SHA-256 hash in bytes. */
+    private static final int HASH_SIZE = 32;
+
+    /** The graph in the layout of the file. */
+    private final ByteBuffer buffer;
+    /** The number of source roots. */
+    private final int rootCount;
+    /** The number of nodes. */
+    private final int nodeCount;
+    /** The number of source files. */
+    private final int fileCount;
+    /** The number of edges. */
+    private final int edgeCount;
+    /** The positions of the sections in {@link #buffer}. */
+    private final int stringOffsetsPosition, nodeFilesPosition, edgeOffsetsPosition, edgeTargetsPosition,
+            reverseOffsetsPosition, reverseSourcesPosition, fileNodeOffsetsPosition, fileNodesPosition,
+            fileHashesPosition, stringDataPosition;
+    /** The position after the last section. */
+    private final long endPosition;
+
+    /**
+     * Constructs a new DependencyGraph over a buffer holding the file layout.
+     *
+     * @param buffer The buffer, starting with the header.
+     */
+    private DependencyGraph(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.rootCount = buffer.getInt(2 * Integer.BYTES);
+        this.nodeCount = buffer.getInt(3 * Integer.BYTES);
+        this.fileCount = buffer.getInt(4 * Integer.BYTES);
+        this.edgeCount = buffer.getInt(5 * Integer.BYTES);
+        int stringDataSize = buffer.getInt(6 * Integer.BYTES);
+
+        this.stringOffsetsPosition = HEADER_SIZE;
+        this.nodeFilesPosition = stringOffsetsPosition + (rootCount + nodeCount + fileCount + 1) * Integer.BYTES;
+        this.edgeOffsetsPosition = nodeFilesPosition + nodeCount * Integer.BYTES;
+        this.edgeTargetsPosition = edgeOffsetsPosition + (fileCount + 1) * Integer.BYTES;
+        this.reverseOffsetsPosition = edgeTargetsPosition + edgeCount * Integer.BYTES;
+        this.reverseSourcesPosition = reverseOffsetsPosition + (nodeCount + 1) * Integer.BYTES;
+        this.fileNodeOffsetsPosition = reverseSourcesPosition + edgeCount * Integer.BYTES;
+        this.fileNodesPosition = fileNodeOffsetsPosition + (fileCount + 1) * Integer.BYTES;
+        this.fileHashesPosition = fileNodesPosition + nodeCount * Integer.BYTES;
+        this.stringDataPosition = fileHashesPosition + fileCount * HASH_SIZE;
+        this.endPosition = (long) stringDataPosition + stringDataSize;
+    }
+
+    /**
+     * Builds the graph from a source index and the resolved dependencies of every indexed file.
+     *
+     * @param sourcePaths  The source root directories, in lookup order.
+     * @param types        All indexed types, mapping fully qualified name to source file.
+     * @param sourceFiles  All indexed source files.
+     * @param dependencies The referenced type names of each source file. Files without an entry have no edges.
+     * @param hashes       The content hash of each source file, as returned by {@link DependencyCache#hash(Path)}.
+     * @return The built graph.
+     */
+    static DependencyGraph build(List<Path> sourcePaths, Map<String, Path> types, List<Path> sourceFiles,
+                                 Map<Path, Set<String>> dependencies, Map<Path, String> hashes) {
+        Map<Path, Integer> fileIds = new HashMap<>();
+        for (int i = 0; i < sourceFiles.size(); i++) {
+            fileIds.put(sourceFiles.get(i), i);
+        }
+
+        List<byte[]> names = new ArrayList<>();
+        for (String name : types.keySet()) {
+            names.add(name.getBytes(StandardCharsets.UTF_8));
+        }
+        names.sort(Arrays::compareUnsigned);
+        int[] nodeFiles = new int[names.size()];
+        Map<String, Integer> nodeIds = new HashMap<>();
+        for (int i = 0; i < nodeFiles.length; i++) {
+            String name = new String(names.get(i), StandardCharsets.UTF_8);
+            nodeFiles[i] = fileIds.get(types.get(name));
+            nodeIds.put(name, i);
+        }
+
+        int[] edgeOffsets = new int[sourceFiles.size() + 1];
+        List<int[]> fileEdges = new ArrayList<>();
+        int edgeCount = 0;
+        for (int f = 0; f < sourceFiles.size(); f++) {
+            edgeOffsets[f] = edgeCount;
+            int[] targets = dependencies.getOrDefault(sourceFiles.get(f), Collections.emptySet()).stream()
+                    .map(nodeIds::get)
+                    .filter(Objects::nonNull)
+                    .mapToInt(Integer::intValue)
+                    .sorted()
+                    .toArray();
+            fileEdges.add(targets);
+            edgeCount += targets.length;
+        }
+        edgeOffsets[sourceFiles.size()] = edgeCount;
+
+        // Invert the edges with a counting sort; the files referencing a node end up in file order.
+        int[] reverseOffsets = new int[nodeFiles.length + 1];
+        for (int[] targets : fileEdges) {
+            for (int target : targets) {
+                reverseOffsets[target + 1]++;
+            }
+        }
+        for (int n = 0; n < nodeFiles.length; n++) {
+            reverseOffsets[n + 1] += reverseOffsets[n];
+        }
+        int[] reverseSources = new int[edgeCount];
+        int[] reverseFill = Arrays.copyOf(reverseOffsets, nodeFiles.length);
+        for (int f = 0; f < fileEdges.size(); f++) {
+            for (int target : fileEdges.get(f)) {
+                reverseSources[reverseFill[target]++] = f;
+            }
+        }
+
+        int[] fileNodeOffsets = new int[sourceFiles.size() + 1];
+        for (int file : nodeFiles) {
+            fileNodeOffsets[file + 1]++;
+        }
+        for (int f = 0; f < sourceFiles.size(); f++) {
+            fileNodeOffsets[f + 1] += fileNodeOffsets[f];
+        }
+        int[] fileNodes = new int[nodeFiles.length];
+        int[] fileNodeFill = Arrays.copyOf(fileNodeOffsets, sourceFiles.size());
+        for (int n = 0; n < nodeFiles.length; n++) {
+            fileNodes[fileNodeFill[nodeFiles[n]]++] = n;
+        }
+
+        // The string table holds the source roots, then the node names, then the file paths.
+        List<byte[]> strings = new ArrayList<>();
+        for (Path sourcePath : sourcePaths) {
+            strings.add(sourcePath.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+        }
+        strings.addAll(names);
+        for (Path file : sourceFiles) {
+            strings.add(file.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+        }
+        int stringDataSize = strings.stream().mapToInt(s -> s.length).sum();
+
+        int size = HEADER_SIZE
+                + (strings.size() + 1) * Integer.BYTES
+                + nodeFiles.length * Integer.BYTES
+                + edgeOffsets.length * Integer.BYTES
+                + edgeCount * Integer.BYTES
+                + reverseOffsets.length * Integer.BYTES
+                + reverseSources.length * Integer.BYTES
+                + fileNodeOffsets.length * Integer.BYTES
+                + fileNodes.length * Integer.BYTES
+                + sourceFiles.size() * HASH_SIZE
+                + stringDataSize;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION)
+                .putInt(sourcePaths.size()).putInt(nodeFiles.length).putInt(sourceFiles.size()).putInt(edgeCount)
+                .putInt(stringDataSize);
+        int stringOffset = 0;
+        for (byte[] string : strings) {
+            buffer.putInt(stringOffset);
+            stringOffset += string.length;
+        }
+        buffer.putInt(stringOffset);
+        for (int file : nodeFiles) {
+            buffer.putInt(file);
+        }
+        for (int offset : edgeOffsets) {
+            buffer.putInt(offset);
+        }
+        for (int[] targets : fileEdges) {
+            for (int target : targets) {
+                buffer.putInt(target);
+            }
+        }
+        for (int[] section : Arrays.asList(reverseOffsets, reverseSources, fileNodeOffsets, fileNodes)) {
+            for (int value : section) {
+                buffer.putInt(value);
+            }
+        }
+        for (Path file : sourceFiles) {
+            buffer.put(parseHash(hashes.get(file)));
+        }
+        for (byte[] string : strings) {
+            buffer.put(string);
+        }
+        return new DependencyGraph(buffer);
+    }
+
+    /**
+     * Looks up the node ID of a type.
+     * <p>
+     * Binary names of nested classes (e.g. {@code com.example.Outer$Inner}) are accepted as well; if
+     * the nested name itself is not a node, the node of the outermost class is returned.
+     * </p>
+     *
+     * @param qualifiedName The fully qualified name of the type.
+     * @return The node ID, or {@code -1} if the type is not part of the graph.
+     */
+    int find(String qualifiedName) {
+        int node = search(qualifiedName);
+        if (node < 0 && qualifiedName.indexOf('$') >= 0) {
+            node = search(qualifiedName.replace('$', '.'));
+            if (node < 0) {
+                node = search(qualifiedName.split("\\$")[0]);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Binary searches the sorted node names for an exact match.
+     *
+     * @param qualifiedName The name to search for.
+     * @return The node ID, or {@code -1} if there is no such node.
+     */
+    private int search(String qualifiedName) {
+        byte[] key = qualifiedName.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = nodeCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareString(rootCount + mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the fully qualified name of a node.
+     *
+     * @param node The node ID.
+     * @return The fully qualified name.
+     */
+    String name(int node) {
+        return string(rootCount + node);
+    }
+
+    /**
+     * Returns the source file of a node.
+     *
+     * @param node The node ID.
+     * @return The path of the file declaring the type.
+     */
+    Path path(int node) {
+        return Paths.get(string(rootCount + nodeCount + nodeFile(node)));
+    }
+
+    /**
+     * Checks whether the source file of a node still has the content the graph was built from.
+     *
+     * @param node The node ID.
+     * @return {@code true} if the file is unchanged, {@code false} if it was changed or removed.
+     */
+    boolean isUpToDate(int node) {
+        byte[] current;
+        try {
+            current = parseHash(DependencyCache.hash(path(node)));
+        } catch (IOException e) {
+            return false;
+        }
+        int position = fileHashesPosition + nodeFile(node) * HASH_SIZE;
+        for (int i = 0; i < HASH_SIZE; i++) {
+            if (buffer.get(position + i) != current[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the source roots the graph was built from.
+     *
+     * @return The absolute paths of the source roots, in lookup order.
+     */
+    List<Path> sourceRoots() {
+        List<Path> roots = new ArrayList<>();
+        for (int i = 0; i < rootCount; i++) {
+            roots.add(Paths.get(string(i)));
+        }
+        return roots;
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return The number of nodes.
+     */
+    int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the number of edges.
+     *
+     * @return The number of edges.
+     */
+    int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Performs a breadth-first search from a root type and returns all types within the given depth.
+     * <p>
+     * In the {@link Direction#FORWARD} direction, this produces the same set of classes as the live
+     * traversal: every type reachable from the root in at most {@code maxDepth} steps through types
+     * accepted by the filter. {@link Direction#REVERSE} follows the edges backwards and finds every type
+     * declared in a file that references the current type, and {@link Direction#BOTH} follows both
+     * kinds of edges in each step.
+     * </p>
+     *
+     * @param root      The node ID of the root type.
+     * @param maxDepth  The maximum depth of the traversal.
+     * @param direction The direction in which edges are followed.
+     * @param follow    Decides by fully qualified name whether a type is followed.
+     * @return The reached types, mapping fully qualified name to depth, in BFS order.
+     */
+    Map<String, Integer> slice(int root, int maxDepth, Direction direction, Predicate<String> follow) {
+        int[] depths = new int[nodeCount];
+        Arrays.fill(depths, -1);
+        int[] queue = new int[nodeCount];
+        int head = 0;
+        int[] tail = {0};
+        depths[root] = 0;
+        queue[tail[0]++] = root;
+
+        Map<String, Integer> result = new LinkedHashMap<>();
+        while (head < tail[0]) {
+            int node = queue[head++];
+            result.put(name(node), depths[node]);
+            if (depths[node] == maxDepth) continue;
+
+            forEachNeighbor(node, direction, neighbor -> {
+                if (depths[neighbor] < 0 && follow.test(name(neighbor))) {
+                    depths[neighbor] = depths[node] + 1;
+                    queue[tail[0]++] = neighbor;
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Returns the names of the direct neighbors of a node.
+     *
+     * @param node      The node ID.
+     * @param direction The direction in which edges are followed.
+     * @return The fully qualified names of the neighbors, without duplicates.
+     */
+    Set<String> neighbors(int node, Direction direction) {
+        Set<String> neighbors = new LinkedHashSet<>();
+        forEachNeighbor(node, direction, neighbor -> neighbors.add(name(neighbor)));
+        return neighbors;
+    }
+
+    /**
+     * Calls an action for every direct neighbor of a node. A neighbor may be passed more than once
+     * when both directions are followed.
+     *
+     * @param node      The node ID.
+     * @param direction The direction in which edges are followed. {@link Direction#REVERSE} passes every
+     *                  type declared in a file that references the node.
+     * @param action    The action, called with the node ID of each neighbor.
+     */
+    void forEachNeighbor(int node, Direction direction, IntConsumer action) {
+        if (direction != Direction.REVERSE) {
+            int file = nodeFile(node);
+            int end = edgeOffset(file + 1);
+            for (int i = edgeOffset(file); i < end; i++) {
+                action.accept(intAt(edgeTargetsPosition, i));
+            }
+        }
+        if (direction != Direction.FORWARD) {
+            int end = intAt(reverseOffsetsPosition, node + 1);
+            for (int i = intAt(reverseOffsetsPosition, node); i < end; i++) {
+                int file = intAt(reverseSourcesPosition, i);
+                int fileEnd = intAt(fileNodeOffsetsPosition, file + 1);
+                for (int j = intAt(fileNodeOffsetsPosition, file); j < fileEnd; j++) {
+                    action.accept(intAt(fileNodesPosition, j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the graph to a file.
+     *
+     * @param file The file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    void write(Path file) throws IOException {
+        try (FileChannel out = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer content = buffer.duplicate();
+            content.clear();
+            while (content.hasRemaining()) {
+                out.write(content);
+            }
+        }
+    }
+
+    /**
+     * Opens a graph written by {@link #write(Path)} by mapping it into memory.
+     *
+     * @param file The file to open.
+     * @return The graph.
+     * @throws IOException if the file cannot be read or is not a dependency graph of this version.
+     */
+    static DependencyGraph read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a dependency graph: " + file);
+        }
+        if (buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Outdated dependency graph format (version " + buffer.getInt(Integer.BYTES)
+                    + ", expected " + VERSION + "). Build it again with -index: " + file);
+        }
+        DependencyGraph graph = new DependencyGraph(buffer);
+        if (graph.endPosition != buffer.capacity()) {
+            throw new IOException("Truncated dependency graph: " + file);
+        }
+        return graph;
+    }
+
+    /**
+     * Returns the file ID of a node.
+     *
+     * @param node The node ID.
+     * @return The file ID.
+     */
+    private int nodeFile(int node) {
+        return buffer.getInt(nodeFilesPosition + node * Integer.BYTES);
+    }
+
+    /**
+     * Returns the start of a file's edges.
+     *
+     * @param file The file ID, or the file count for the end of the last file's edges.
+     * @return The index of the file's first edge.
+     */
+    private int edgeOffset(int file) {
+        return intAt(edgeOffsetsPosition, file);
+    }
+
+    /**
+     * Reads an element of an int section.
+     *
+     * @param section The position of the section.
+     * @param index   The index of the element.
+     * @return The element.
+     */
+    private int intAt(int section, int index) {
+        return buffer.getInt(section + index * Integer.BYTES);
+    }
+
+    /**
+     * Decodes an entry of the string table.
+     *
+     * @param index The index of the string.
+     * @return The string.
+     */
+    private String string(int index) {
+        int start = buffer.getInt(stringOffsetsPosition + index * Integer.BYTES);
+        int end = buffer.getInt(stringOffsetsPosition + (index + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(stringDataPosition + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares an entry of the string table with a key by their unsigned UTF-8 bytes, without decoding the entry.
+     *
+     * @param index The index of the string.
+     * @param key   The UTF-8 bytes of the key.
+     * @return A negative number, zero or a positive number if the entry is less than, equal to or greater than the key.
+     */
+    private int compareString(int index, byte[] key) {
+        int start = buffer.getInt(stringOffsetsPosition + index * Integer.BYTES);
+        int length = buffer.getInt(stringOffsetsPosition + (index + 1) * Integer.BYTES) - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.toUnsignedInt(buffer.get(stringDataPosition + start + i)) - Byte.toUnsignedInt(key[i]);
+            if (cmp != 0) return cmp;
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Converts a hexadecimal hash to its bytes.
+     *
+     * @param hash The hash as a hexadecimal string, or {@code null} if the file could not be read.
+     * @return The hash bytes; all zero for {@code null}.
+     */
+    private static byte[] parseHash(String hash) {
+        byte[] bytes = new byte[HASH_SIZE];
+        if (hash == null) return bytes;
+        for (int i = 0; i < HASH_SIZE; i++) {
+            bytes[i] = (byte) Integer.parseInt(hash.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    /**
+     * The direction in which a slice follows the dependency edges.
+     */
+    enum Direction {
+        /** Follows the types a class references. */
+        FORWARD,
+        /** Follows the types that reference a class. */
+        REVERSE,
+        /** Follows both. */
+        BOTH
+    }
+}
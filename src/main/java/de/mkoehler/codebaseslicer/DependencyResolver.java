@@ -0,0 +1,176 @@
+package de.mkoehler.codebaseslicer;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.resolution.cache.Cache;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.cache.GuavaCache;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import com.google.common.cache.CacheBuilder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.Predicate;
+
+/**
+ * Parses a source file and resolves all type references in it to fully qualified names.
+ * <p>
+ * Each instance owns its own {@link JavaParser}, {@link ParserConfiguration} and type solver chain.
+ * Neither the parser nor the caches inside {@link JavaParserTypeSolver} are safe for concurrent use,
+ * so an instance must only be used by one thread at a time. The parallel traversal therefore keeps
+ * one resolver per worker thread instead of sharing the global {@code StaticJavaParser} configuration,
+ * and each {@link SlicerEngine} has its own set of resolvers.
+ * </p>
+ * <p>
+ * The type solvers and the analysis share one parser and one {@link ParsedFileCache}, so a file that
+ * was parsed to resolve a reference is not parsed again when the traversal reaches it, and vice versa.
+ * When the cache finds that a file has changed on disk, the types the type solvers found so far are
+ * forgotten as well, since they may be declared in the outdated syntax tree.
+ * </p>
+ */
+class DependencyResolver {
+
+    /** The time each thread spent parsing the files under analysis, in nanoseconds. */
+    private static final ThreadLocal<long[]> PARSE_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    /** The parser used for the files under analysis, configured with the symbol solver below. */
+    private final JavaParser parser;
+    /** The parsed files, shared with the type solvers. */
+    private final ParsedFileCache parsedFiles;
+    /** The caches of the type solvers that hold parsed directories and solved types. */
+    private final List<Cache<?, ?>> typeSolverCaches = new ArrayList<>();
+    /** The type resolutions shared with the other resolvers, see {@link TypeReferenceResolver}. */
+    private final Map<String, String> sharedResolutions;
+    /** Decides whether a qualified name is declared in the source directories. */
+    private final Predicate<String> isProjectType;
+    /** Decides whether a qualified name lies in an excluded package. */
+    private final Predicate<String> isExcludedPackage;
+
+    /**
+     * Constructs a new resolver with its own parser and type solver chain.
+     *
+     * @param languageLevel     The Java language level used for parsing.
+     * @param sourcePaths       The source root directories used to resolve project types.
+     * @param maxCacheWeight    The maximum total size of the source files whose syntax trees are cached, in bytes.
+     * @param sharedResolutions The type resolutions shared with the other resolvers. Must be safe for concurrent use.
+     * @param isProjectType     Decides whether a qualified name is declared in the source directories.
+     * @param isExcludedPackage Decides whether a qualified name lies in an excluded package.
+     */
+    DependencyResolver(ParserConfiguration.LanguageLevel languageLevel, List<Path> sourcePaths, long maxCacheWeight,
+                       Map<String, String> sharedResolutions, Predicate<String> isProjectType,
+                       Predicate<String> isExcludedPackage) {
+        ParserConfiguration configuration = new ParserConfiguration().setLanguageLevel(languageLevel);
+        this.parser = new JavaParser(configuration);
+        this.parsedFiles = new ParsedFileCache(maxCacheWeight, this::clearTypeSolverCaches);
+        this.sharedResolutions = sharedResolutions;
+        this.isProjectType = isProjectType;
+        this.isExcludedPackage = isExcludedPackage;
+
+        CombinedTypeSolver typeSolver = new CombinedTypeSolver();
+        // For JDK classes. The same packages tell the TypeReferenceResolver which imports it can resolve.
+        typeSolver.add(new ReflectionTypeSolver(PackageTrie.REFLECTION_PACKAGES::matches));
+        for (Path sourcePath : sourcePaths) {
+            // Parsed directories and solved types refer to syntax trees as well, so they are only held
+            // softly, as the type solver does by default. They must not keep evicted trees alive.
+            Cache<Path, List<CompilationUnit>> parsedDirectories = GuavaCache.create(CacheBuilder.newBuilder().softValues().build());
+            Cache<String, SymbolReference<ResolvedReferenceTypeDeclaration>> foundTypes =
+                    GuavaCache.create(CacheBuilder.newBuilder().softValues().build());
+            typeSolverCaches.add(parsedDirectories);
+            typeSolverCaches.add(foundTypes);
+            typeSolver.add(new JavaParserTypeSolver(sourcePath, parser, parsedFiles, parsedDirectories, foundTypes));
+        }
+        // The files parsed by the type solvers need the symbol solver as well, since the analysis reuses them.
+        configuration.setSymbolResolver(new JavaSymbolSolver(typeSolver));
+    }
+
+    /**
+     * Parses a source file and resolves every type it references.
+     * <p>
+     * This covers all direct class references (fields, variables, method signatures, generics, etc.)
+     * as well as extended classes and implemented interfaces. Types that cannot be resolved are ignored.
+     * Each distinct name is resolved only once per scope, see {@link TypeReferenceResolver}.
+     * </p>
+     *
+     * @param filePath          The source file to analyze.
+     * @param cancellationToken Checked before each reference is resolved.
+     * @return The fully qualified names of all resolvable referenced types, including JDK types.
+     * @throws IOException           if the source file cannot be read or parsed.
+     * @throws CancellationException if the token fired before all references were resolved.
+     */
+    Set<String> resolveReferencedTypes(Path filePath, CancellationToken cancellationToken) throws IOException {
+        CompilationUnit cu = parse(filePath);
+        TypeReferenceResolver resolver = new TypeReferenceResolver(cu, sharedResolutions, isProjectType, isExcludedPackage);
+        Set<String> referencedTypes = new HashSet<>();
+
+        // Find all class references (fields, variables, method calls, etc.), which includes the
+        // extended classes and implemented interfaces
+        for (ClassOrInterfaceType type : cu.findAll(ClassOrInterfaceType.class)) {
+            // A single resolution can take long, e.g. in a huge generated file, so the token is checked for each.
+            cancellationToken.throwIfCancelled();
+            resolver.resolve(type).ifPresent(referencedTypes::add);
+        }
+
+        return referencedTypes;
+    }
+
+    /**
+     * Forgets the directories and types the type solvers have found, after a parsed file turned out to
+     * have changed.
+     */
+    private void clearTypeSolverCaches() {
+        typeSolverCaches.forEach(Cache::removeAll);
+    }
+
+    /**
+     * Returns the time the current thread has spent parsing files under analysis. Files that the type
+     * solvers parse while resolving references are not included, and neither are cache hits.
+     *
+     * @return The total parse time of the current thread, in nanoseconds.
+     */
+    static long parseNanos() {
+        return PARSE_NANOS.get()[0];
+    }
+
+    /**
+     * Returns the parsed form of a source file, from the cache if a type solver or an earlier analysis
+     * already parsed it.
+     *
+     * @param filePath The source file to parse.
+     * @return The parsed {@link CompilationUnit}.
+     * @throws IOException if the file cannot be read or contains syntax errors.
+     */
+    private CompilationUnit parse(Path filePath) throws IOException {
+        Optional<Optional<CompilationUnit>> cached = parsedFiles.get(filePath);
+        if (cached.isPresent()) {
+            Optional<CompilationUnit> cu = cached.get();
+            if (!cu.isPresent() || cu.get().getParsed() == Node.Parsedness.UNPARSABLE) {
+                throw new IOException("Parse error in " + filePath);
+            }
+            return cu.get();
+        }
+
+        long start = System.nanoTime();
+        ParseResult<CompilationUnit> result = parser.parse(filePath);
+        PARSE_NANOS.get()[0] += System.nanoTime() - start;
+        parsedFiles.put(filePath, result.getResult());
+        if (!result.isSuccessful() || !result.getResult().isPresent()) {
+            throw new IOException("Parse error in " + filePath + ": " + result.getProblems());
+        }
+        return result.getResult().get();
+    }
+}
@@ -0,0 +1,324 @@
+package de.mkoehler.codebaseslicer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A lightweight, tokenizer-level scanner for Java source files.
+ * <p>
+ * Building a full AST is far too expensive when all that is needed is the package and the names of
+ * the types a file declares. This scanner walks the source text once, skipping comments, string,
+ * text block and character literals, and recognizes type declarations ({@code class}, {@code interface},
+ * {@code enum}, {@code record} and {@code @interface}) together with their nesting. It does not validate
+ * the source; for malformed input it simply returns whatever it could recognize.
+ * </p>
+ */
+final class JavaSourceScanner {
+
+    private JavaSourceScanner() {
+    }
+
+    /**
+     * Scans a source file and returns its package, imports and declared types.
+     * <p>
+     * Member types are reported with their enclosing types, separated by dots (e.g. {@code Order.Line}),
+     * exactly as they appear in fully qualified names. Local and anonymous classes are not reported,
+     * because they cannot be referenced by name from other files.
+     * </p>
+     *
+     * @param source The content of the source file.
+     * @return The {@link ScanResult} of the file.
+     */
+    static ScanResult scan(String source) {
+        Tokenizer tokenizer = new Tokenizer(source);
+        String packageName = "";
+        List<String> imports = new ArrayList<>();
+        List<String> typeNames = new ArrayList<>();
+
+        // The enclosing types (each holding its full dotted name), innermost on top, with the brace depth of their bodies.
+        Deque<String> typeStack = new ArrayDeque<>();
+        Deque<Integer> bodyDepthStack = new ArrayDeque<>();
+        int braceDepth = 0;
+        String pendingType = null;
+        String previous = "";
+
+        String token;
+        while ((token = tokenizer.next()) != null) {
+            switch (token) {
+                case "{":
+                    braceDepth++;
+                    if (pendingType != null) {
+                        typeStack.push(pendingType);
+                        bodyDepthStack.push(braceDepth);
+                        pendingType = null;
+                    }
+                    break;
+                case "}":
+                    if (!bodyDepthStack.isEmpty() && bodyDepthStack.peek() == braceDepth) {
+                        typeStack.pop();
+                        bodyDepthStack.pop();
+                    }
+                    braceDepth--;
+                    break;
+                case ";":
+                    // A ';' before the body means the keyword did not start a type declaration after all.
+                    pendingType = null;
+                    break;
+                case "package":
+                    if (braceDepth == 0 && typeStack.isEmpty()) {
+                        packageName = readQualifiedName(tokenizer);
+                    }
+                    break;
+                case "import":
+                    if (braceDepth == 0 && typeStack.isEmpty()) {
+                        if ("static".equals(tokenizer.peek(0))) {
+                            tokenizer.next();
+                        }
+                        imports.add(readQualifiedName(tokenizer));
+                    }
+                    break;
+                case "class":
+                case "interface":
+                case "enum":
+                case "record":
+                    if (!".".equals(previous) && pendingType == null && isTypeBodyScope(braceDepth, bodyDepthStack)
+                            && isDeclaration(token, tokenizer)) {
+                        String name = tokenizer.next();
+                        pendingType = typeStack.isEmpty() ? name : typeStack.peek() + "." + name;
+                        typeNames.add(pendingType);
+                        token = name;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            previous = token;
+        }
+        return new ScanResult(packageName, imports, typeNames);
+    }
+
+    /**
+     * Returns whether a declaration at the given brace depth is a top-level or member declaration.
+     *
+     * @param braceDepth     The current brace depth.
+     * @param bodyDepthStack The brace depths of the bodies of the enclosing types.
+     * @return {@code true} if the declaration is directly inside a compilation unit or a type body.
+     */
+    private static boolean isTypeBodyScope(int braceDepth, Deque<Integer> bodyDepthStack) {
+        return bodyDepthStack.isEmpty() ? braceDepth == 0 : bodyDepthStack.peek() == braceDepth;
+    }
+
+    /**
+     * Checks whether a type keyword actually starts a declaration, i.e. whether it is followed by a
+     * type name. Since {@code record} is only a contextual keyword, a record name must additionally
+     * be followed by a record header, which rules out variables that happen to be named "record".
+     *
+     * @param keyword   The keyword that was just read.
+     * @param tokenizer The tokenizer, positioned after the keyword.
+     * @return {@code true} if the keyword starts a type declaration.
+     */
+    private static boolean isDeclaration(String keyword, Tokenizer tokenizer) {
+        String name = tokenizer.peek(0);
+        if (name == null || !isIdentifier(name)) return false;
+        if (!"record".equals(keyword)) return true;
+        String next = tokenizer.peek(1);
+        return "(".equals(next) || "<".equals(next);
+    }
+
+    /**
+     * Reads a dotted name, such as a package name or an import, up to the terminating {@code ;}.
+     *
+     * @param tokenizer The tokenizer, positioned at the start of the name.
+     * @return The dotted name.
+     */
+    private static String readQualifiedName(Tokenizer tokenizer) {
+        StringBuilder sb = new StringBuilder();
+        String token;
+        while ((token = tokenizer.next()) != null && !";".equals(token)) {
+            sb.append(token);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns whether a token is a Java identifier.
+     *
+     * @param token The token to check.
+     * @return {@code true} if the token starts with a Java identifier start character.
+     */
+    static boolean isIdentifier(String token) {
+        return !token.isEmpty() && Character.isJavaIdentifierStart(token.charAt(0));
+    }
+
+    /**
+     * The result of scanning a single source file.
+     */
+    static class ScanResult {
+        /** The declared package, or an empty string for the default package. */
+        final String packageName;
+        /** The imported names, static or not, with a trailing {@code .*} for on-demand imports. */
+        final List<String> imports;
+        /** The declared top-level and member types, relative to the package (e.g. {@code Order.Line}). */
+        final List<String> typeNames;
+
+        /**
+         * Constructs a new ScanResult.
+         *
+         * @param packageName The declared package.
+         * @param imports     The imported names.
+         * @param typeNames   The declared types.
+         */
+        ScanResult(String packageName, List<String> imports, List<String> typeNames) {
+            this.packageName = packageName;
+            this.imports = imports;
+            this.typeNames = typeNames;
+        }
+
+        /**
+         * Returns the fully qualified name of a declared type.
+         *
+         * @param typeName A type name relative to the package, as found in {@link #typeNames}.
+         * @return The fully qualified name.
+         */
+        String qualify(String typeName) {
+            return packageName.isEmpty() ? typeName : packageName + "." + typeName;
+        }
+    }
+
+    /**
+     * Splits Java source text into identifiers, numbers and single-character symbols. Whitespace,
+     * comments and the contents of string, text block and character literals are skipped.
+     */
+    static class Tokenizer {
+        /** The source text. */
+        private final String source;
+        /** The position of the next character to read. */
+        private int pos;
+        /** Tokens that have been peeked but not yet consumed. */
+        private final List<String> lookahead = new ArrayList<>();
+
+        /**
+         * Constructs a new Tokenizer.
+         *
+         * @param source The source text to tokenize.
+         */
+        Tokenizer(String source) {
+            this.source = source;
+        }
+
+        /**
+         * Returns an upcoming token without consuming it.
+         *
+         * @param offset The number of tokens to look past; 0 returns the next token.
+         * @return The token, or {@code null} if the input ends before it.
+         */
+        String peek(int offset) {
+            while (lookahead.size() <= offset) {
+                String token = read();
+                if (token == null) return null;
+                lookahead.add(token);
+            }
+            return lookahead.get(offset);
+        }
+
+        /**
+         * Consumes and returns the next token.
+         *
+         * @return The next token, or {@code null} at the end of the input.
+         */
+        String next() {
+            return lookahead.isEmpty() ? read() : lookahead.remove(0);
+        }
+
+        /**
+         * Reads the next token from the source text.
+         *
+         * @return The next token, or {@code null} at the end of the input.
+         */
+        private String read() {
+            int length = source.length();
+            while (pos < length) {
+                char c = source.charAt(pos);
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (c == '/' && pos + 1 < length && source.charAt(pos + 1) == '/') {
+                    int end = source.indexOf('\n', pos);
+                    pos = end < 0 ? length : end + 1;
+                } else if (c == '/' && pos + 1 < length && source.charAt(pos + 1) == '*') {
+                    int end = source.indexOf("*/", pos + 2);
+                    pos = end < 0 ? length : end + 2;
+                } else if (c == '"') {
+                    skipStringLiteral();
+                } else if (c == '\'') {
+                    skipQuoted('\'');
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    int start = pos++;
+                    while (pos < length && Character.isJavaIdentifierPart(source.charAt(pos))) pos++;
+                    return source.substring(start, pos);
+                } else if (Character.isDigit(c)) {
+                    int start = pos++;
+                    while (pos < length && (Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '_')) pos++;
+                    return source.substring(start, pos);
+                } else {
+                    pos++;
+                    return String.valueOf(c);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Skips a string literal or text block starting at the current position.
+         */
+        private void skipStringLiteral() {
+            if (source.startsWith("\"\"\"", pos)) {
+                int end = pos + 3;
+                while (true) {
+                    end = source.indexOf("\"\"\"", end);
+                    if (end < 0) {
+                        pos = source.length();
+                        return;
+                    }
+                    if (!isEscaped(end)) {
+                        pos = end + 3;
+                        return;
+                    }
+                    end++;
+                }
+            }
+            skipQuoted('"');
+        }
+
+        /**
+         * Skips a single-line literal delimited by the given quote character, honoring escapes.
+         *
+         * @param quote The quote character.
+         */
+        private void skipQuoted(char quote) {
+            int length = source.length();
+            pos++;
+            while (pos < length) {
+                char c = source.charAt(pos++);
+                if (c == '\\') {
+                    pos++;
+                } else if (c == quote || c == '\n') {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns whether the character at the given position is preceded by an odd number of backslashes.
+         *
+         * @param index The position to check.
+         * @return {@code true} if the character is escaped.
+         */
+        private boolean isEscaped(int index) {
+            int backslashes = 0;
+            for (int i = index - 1; i >= 0 && source.charAt(i) == '\\'; i--) backslashes++;
+            return backslashes % 2 == 1;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package de.mkoehler.codebaseslicer;
+
+import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.PackageTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Extracts dependencies with the JDK's own compiler, for {@code -mode javac}.
+ * <p>
+ * Each file is parsed and attributed by a {@link JavacTask} with the source directories on the
+ * source path, so javac loads the other project files it needs on demand, exactly as a compilation
+ * would. Every identifier and member select that javac attributes to a type is reported. Missing
+ * libraries cause compile errors, which are ignored: javac still attributes everything it can.
+ * </p>
+ * <p>
+ * Entering a source file makes javac resolve the signatures of its members, which loads further
+ * source files, so the cost of a file grows with the part of the project reachable from it. With
+ * {@code -classes}, the class directories are put on the class path, and javac reads up-to-date class
+ * files instead of parsing their sources ({@code -Xprefer:newer}). javac completes these classes
+ * recursively, so on a densely connected project the stack of a worker thread is not deep enough.
+ * Each calling thread therefore hands its files to a thread of its own with a large stack, which is
+ * kept until {@link #close()}.
+ * </p>
+ * <p>
+ * Like the {@link ClassFileIndex}, and unlike the symbol solver, this also reports types that are
+ * only used as qualifiers of static members. Imports and annotations are skipped, as in the other
+ * engines. The engine needs a JDK; on a JRE, {@link #isAvailable()} returns {@code false}.
+ * </p>
+ */
+class JavacDependencyExtractor implements DependencyExtractor {
+
+    /** The compiler of the running JDK, or {@code null} on a JRE. */
+    private static final JavaCompiler COMPILER = ToolProvider.getSystemJavaCompiler();
+    /** The stack size of the threads running javac, in bytes. Only the used part is committed. */
+    private static final long STACK_SIZE = 512L * 1024 * 1024;
+
+    /** The compiler options, with the source directories on the source path. */
+    private final List<String> options;
+    /** One file manager per javac thread, since file managers are not thread-safe. */
+    private final ThreadLocal<StandardJavaFileManager> fileManagers;
+    /** The javac thread of each calling thread. */
+    private final ThreadLocal<ExecutorService> executors;
+    /** All javac threads, to stop them on {@link #close()}. */
+    private final Set<ExecutorService> allExecutors = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs a new JavacDependencyExtractor.
+     *
+     * @param sourcePaths      The source directories of the project.
+     * @param classDirectories The directories of compiled classes, or {@code null} if there are none.
+     */
+    JavacDependencyExtractor(List<Path> sourcePaths, List<Path> classDirectories) {
+        List<String> options = new ArrayList<>(Arrays.asList("-proc:none", "-implicit:none", "-nowarn", "-Xlint:none",
+                "-sourcepath", joinPaths(sourcePaths)));
+        if (classDirectories != null) {
+            options.addAll(Arrays.asList("-classpath", joinPaths(classDirectories), "-Xprefer:newer"));
+        }
+        this.options = options;
+        this.fileManagers = ThreadLocal.withInitial(() -> COMPILER.getStandardFileManager(null, null, StandardCharsets.UTF_8));
+        this.executors = ThreadLocal.withInitial(() -> {
+            ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+                // Like the worker threads, idle javac threads must never keep the JVM alive.
+                Thread thread = new Thread(null, runnable, "slicer-javac", STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            });
+            allExecutors.add(executor);
+            return executor;
+        });
+    }
+
+    /**
+     * Joins directories into a path for the compiler options.
+     *
+     * @param paths The directories.
+     * @return The directories, separated by the platform's path separator.
+     */
+    private static String joinPaths(List<Path> paths) {
+        return paths.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator));
+    }
+
+    /**
+     * Checks whether the running Java installation includes a compiler.
+     *
+     * @return {@code true} on a JDK.
+     */
+    static boolean isAvailable() {
+        return COMPILER != null;
+    }
+
+    @Override
+    public Set<String> extract(Path file) throws IOException {
+        Future<Set<String>> result = executors.get().submit(() -> analyze(file));
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while analyzing " + file, e);
+        } catch (ExecutionException e) {
+            // Includes errors such as a StackOverflowError, which must not end the traversal.
+            throw new IOException("javac failed on " + file + ": " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * Stops the javac threads.
+     */
+    @Override
+    public void close() {
+        allExecutors.forEach(ExecutorService::shutdown);
+    }
+
+    /**
+     * Parses and attributes a file and collects the types it refers to. Runs on a javac thread.
+     *
+     * @param file The source file.
+     * @return The qualified names of the referenced types.
+     * @throws IOException if the file cannot be read.
+     */
+    private Set<String> analyze(Path file) throws IOException {
+        StandardJavaFileManager fileManager = fileManagers.get();
+        Set<String> referencedTypes = new HashSet<>();
+        JavacTask task = (JavacTask) COMPILER.getTask(null, fileManager, diagnostic -> { }, options, null,
+                fileManager.getJavaFileObjects(file.toFile()));
+        Iterable<? extends CompilationUnitTree> units = task.parse();
+        task.analyze();
+
+        Trees trees = Trees.instance(task);
+        for (CompilationUnitTree unit : units) {
+            new TypeCollector(trees, referencedTypes).scan(unit, null);
+        }
+        return referencedTypes;
+    }
+
+    /**
+     * Collects the qualified names of all types that names in a compilation unit are attributed to.
+     */
+    private static class TypeCollector extends TreePathScanner<Void, Void> {
+        /** The attribution of the task. */
+        private final Trees trees;
+        /** Receives the qualified names of the referenced types. */
+        private final Set<String> referencedTypes;
+
+        /**
+         * Constructs a new TypeCollector.
+         *
+         * @param trees           The attribution of the task.
+         * @param referencedTypes Receives the qualified names of the referenced types.
+         */
+        TypeCollector(Trees trees, Set<String> referencedTypes) {
+            this.trees = trees;
+            this.referencedTypes = referencedTypes;
+        }
+
+        @Override
+        public Void visitIdentifier(IdentifierTree node, Void unused) {
+            addType();
+            return super.visitIdentifier(node, unused);
+        }
+
+        @Override
+        public Void visitMemberSelect(MemberSelectTree node, Void unused) {
+            addType();
+            return super.visitMemberSelect(node, unused);
+        }
+
+        @Override
+        public Void visitImport(ImportTree node, Void unused) {
+            // Imports are not references themselves; an unused import must not add a dependency.
+            return null;
+        }
+
+        @Override
+        public Void visitPackage(PackageTree node, Void unused) {
+            return null;
+        }
+
+        @Override
+        public Void visitAnnotation(AnnotationTree node, Void unused) {
+            return null;
+        }
+
+        /**
+         * Adds the type the current name is attributed to, if it is a type with a qualified name.
+         */
+        private void addType() {
+            Element element = trees.getElement(getCurrentPath());
+            if (element instanceof TypeElement) {
+                // Local and anonymous classes have no qualified name and cannot be depended on from outside.
+                String name = ((TypeElement) element).getQualifiedName().toString();
+                if (!name.isEmpty()) {
+                    referencedTypes.add(name);
+                }
+            }
+        }
+    }
+}
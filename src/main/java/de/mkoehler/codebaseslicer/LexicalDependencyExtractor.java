@@ -0,0 +1,212 @@
+package de.mkoehler.codebaseslicer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Extracts the project types a source file refers to from its tokens alone, for {@code -mode fast}.
+ * <p>
+ * Instead of building an AST and running the symbol solver, the file is split by the
+ * {@link JavaSourceScanner.Tokenizer}, and every name is looked up the way the compiler would look
+ * up a simple type name, with the {@link SourceIndex} standing in for the type solvers:
+ * </p>
+ * <ol>
+ *   <li>types declared in the file itself are skipped,</li>
+ *   <li>single-type imports,</li>
+ *   <li>types in the file's own package,</li>
+ *   <li>types in the packages of on-demand imports.</li>
+ * </ol>
+ * <p>
+ * Names that are written out in full ({@code com.example.Order}) are matched against the index by
+ * their longest known prefix, and a known type followed by member names ({@code Order.Line}) is
+ * reported together with the indexed member types it names. Only indexed types are reported, so JDK and
+ * third-party types never appear in the result.
+ * </p>
+ * <p>
+ * This is much faster, but less precise than the symbol solver: a variable, method or type parameter
+ * that has the name of a project type is taken for that type, and inherited member types are not
+ * found. Names of types used as qualifiers of static members ({@code Util.format(...)}) are reported,
+ * while the accurate mode only reports names in type positions. Annotations are skipped in both modes.
+ * </p>
+ */
+final class LexicalDependencyExtractor {
+
+    private LexicalDependencyExtractor() {
+    }
+
+    /**
+     * Reads a source file and extracts the project types it refers to.
+     *
+     * @param filePath The source file.
+     * @param index    The index of all project types.
+     * @return The fully qualified names of the referenced project types.
+     * @throws IOException if the file cannot be read.
+     */
+    static Set<String> extract(Path filePath, SourceIndex index) throws IOException {
+        return extract(Files.readString(filePath, StandardCharsets.UTF_8), index);
+    }
+
+    /**
+     * Extracts the project types a piece of source code refers to.
+     *
+     * @param source The content of a source file.
+     * @param index  The index of all project types.
+     * @return The fully qualified names of the referenced project types.
+     */
+    static Set<String> extract(String source, SourceIndex index) {
+        // The declared types are only needed to recognize references to the file itself.
+        Set<String> declaredNames = new HashSet<>();
+        for (String typeName : JavaSourceScanner.scan(source).typeNames) {
+            declaredNames.addAll(Arrays.asList(typeName.split("\\.")));
+        }
+
+        List<String> tokens = new ArrayList<>();
+        JavaSourceScanner.Tokenizer tokenizer = new JavaSourceScanner.Tokenizer(source);
+        for (String token = tokenizer.next(); token != null; token = tokenizer.next()) {
+            tokens.add(token);
+        }
+
+        String packageName = "";
+        Map<String, String> singleTypeImports = new HashMap<>();
+        List<String> onDemandPackages = new ArrayList<>();
+        Map<String, Optional<String>> simpleNames = new HashMap<>();
+        Set<String> referencedTypes = new HashSet<>();
+
+        int braceDepth = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if ("{".equals(token)) {
+                braceDepth++;
+                continue;
+            } else if ("}".equals(token)) {
+                braceDepth--;
+                continue;
+            }
+            if (braceDepth == 0 && ("package".equals(token) || "import".equals(token))) {
+                int end = i + 1;
+                StringBuilder name = new StringBuilder();
+                boolean isStatic = end < tokens.size() && "static".equals(tokens.get(end));
+                for (end = isStatic ? end + 1 : end; end < tokens.size() && !";".equals(tokens.get(end)); end++) {
+                    name.append(tokens.get(end));
+                }
+                String declaration = name.toString();
+                if ("package".equals(token)) {
+                    packageName = declaration;
+                } else if (!isStatic && declaration.endsWith(".*")) {
+                    onDemandPackages.add(declaration.substring(0, declaration.length() - 2));
+                } else if (!isStatic) {
+                    singleTypeImports.put(declaration.substring(declaration.lastIndexOf('.') + 1), declaration);
+                }
+                // Imports are not references themselves; an unused import must not add a dependency.
+                i = end;
+                continue;
+            }
+            if (!JavaSourceScanner.isIdentifier(token) || i > 0 && (".".equals(tokens.get(i - 1)) || "@".equals(tokens.get(i - 1)))) {
+                continue;
+            }
+
+            // Collect a dotted name such as Order.Line or com.example.Order.
+            int end = i;
+            while (end + 2 < tokens.size() && ".".equals(tokens.get(end + 1)) && JavaSourceScanner.isIdentifier(tokens.get(end + 2))) {
+                end += 2;
+            }
+            if (!declaredNames.contains(token)) {
+                String finalPackageName = packageName;
+                Optional<String> type = simpleNames.computeIfAbsent(token,
+                        key -> resolveSimpleName(key, finalPackageName, singleTypeImports, onDemandPackages, index));
+                if (type.isPresent()) {
+                    addMemberTypes(type.get(), tokens, i, end, index, referencedTypes);
+                } else {
+                    String qualifiedName = findQualifiedName(tokens, i, end, index);
+                    if (qualifiedName != null) {
+                        referencedTypes.add(qualifiedName);
+                    }
+                }
+            }
+            i = end;
+        }
+        return referencedTypes;
+    }
+
+    /**
+     * Looks up a simple type name in the imports, the file's package and the on-demand imports.
+     *
+     * @param simpleName        The simple name.
+     * @param packageName       The package of the file.
+     * @param singleTypeImports The single-type imports, by simple name.
+     * @param onDemandPackages  The packages imported on demand.
+     * @param index             The index of all project types.
+     * @return The qualified name of the project type, or empty if the name is not a project type.
+     */
+    private static Optional<String> resolveSimpleName(String simpleName, String packageName, Map<String, String> singleTypeImports,
+                                                      List<String> onDemandPackages, SourceIndex index) {
+        String imported = singleTypeImports.get(simpleName);
+        if (imported != null) {
+            // A single-type import shadows every other type of the same name, including project types.
+            return index.find(imported) != null ? Optional.of(imported) : Optional.empty();
+        }
+        String samePackage = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        if (index.find(samePackage) != null) {
+            return Optional.of(samePackage);
+        }
+        for (String onDemandPackage : onDemandPackages) {
+            String candidate = onDemandPackage + "." + simpleName;
+            if (index.find(candidate) != null) {
+                return Optional.of(candidate);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Adds a known type and follows the member names after it as long as they name indexed member
+     * types. Like the symbol solver, which resolves the qualifier of {@code Order.Line} as a type of
+     * its own, every type along the way is added.
+     *
+     * @param type            The qualified name of the type the first token resolved to.
+     * @param tokens          All tokens of the file.
+     * @param start           The index of the first token of the dotted name.
+     * @param end             The index of the last token of the dotted name.
+     * @param index           The index of all project types.
+     * @param referencedTypes Receives the type and its referenced member types.
+     */
+    private static void addMemberTypes(String type, List<String> tokens, int start, int end, SourceIndex index,
+                                       Set<String> referencedTypes) {
+        String resolved = type;
+        referencedTypes.add(resolved);
+        for (int i = start + 2; i <= end; i += 2) {
+            resolved = resolved + "." + tokens.get(i);
+            if (index.find(resolved) == null) break;
+            referencedTypes.add(resolved);
+        }
+    }
+
+    /**
+     * Matches a dotted name that is written out in full against the index.
+     *
+     * @param tokens All tokens of the file.
+     * @param start  The index of the first token of the dotted name.
+     * @param end    The index of the last token of the dotted name.
+     * @param index  The index of all project types.
+     * @return The longest prefix of the name that is an indexed type, or {@code null} if there is none.
+     */
+    private static String findQualifiedName(List<String> tokens, int start, int end, SourceIndex index) {
+        if (start == end) {
+            return null;
+        }
+        String found = null;
+        StringBuilder name = new StringBuilder(tokens.get(start));
+        for (int i = start + 2; i <= end; i += 2) {
+            name.append('.').append(tokens.get(i));
+            if (index.find(name.toString()) != null) {
+                found = name.toString();
+            } else if (found != null) {
+                break;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,149 @@
+package de.mkoehler.codebaseslicer;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Compares the dependency extraction backends on the files of a project, for {@code -benchmark <files>}.
+ * <p>
+ * All backends extract the dependencies of the same evenly spaced sample of source files. The
+ * benchmark reports the time per file of each backend, and the precision and recall of each
+ * alternative backend, taking the accurate mode as the truth. Only edges between two different
+ * project files are compared, since those are the edges the traversal follows. The accurate mode
+ * runs first and cold, as in a real run. The other backends run twice, and only the second run is
+ * timed, so that they are not penalized for warming up the JIT.
+ * </p>
+ */
+class ModeBenchmark {
+
+    /** The maximum number of missed and extra edges that are listed as examples. */
+    private static final int EXAMPLES = 10;
+
+    /** The index of all project types. */
+    private final SourceIndex index;
+    /** The number of files to analyze. */
+    private final int sampleSize;
+
+    /**
+     * Constructs a new ModeBenchmark.
+     *
+     * @param index      The index of all project types.
+     * @param sampleSize The number of files to analyze.
+     */
+    ModeBenchmark(SourceIndex index, int sampleSize) {
+        this.index = index;
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Runs all backends on the sample and prints the comparison.
+     *
+     * @param accurate     The accurate engine, which the others are compared with.
+     * @param alternatives The other engines, by name.
+     * @param isRelevant   Decides whether a referenced type is followed by the traversal.
+     */
+    void run(DependencyExtractor accurate, Map<String, DependencyExtractor> alternatives, Predicate<String> isRelevant) {
+        List<Path> allFiles = index.files();
+        List<Path> files = new ArrayList<>();
+        int size = Math.min(sampleSize, allFiles.size());
+        for (int i = 0; i < size; i++) {
+            files.add(allFiles.get((int) ((long) i * allFiles.size() / size)));
+        }
+        System.out.printf("%nBenchmarking dependency extraction on %d of %d files...%n", files.size(), allFiles.size());
+
+        Map<Path, Set<String>> accurateEdges = new HashMap<>();
+        long accurateNanos = extractAll(accurate, files, isRelevant, accurateEdges);
+        System.out.printf("Accurate mode: %d ms (%.2f ms per file), %d edges.%n", accurateNanos / 1_000_000,
+                accurateNanos / 1e6 / files.size(), accurateEdges.values().stream().mapToInt(Set::size).sum());
+
+        for (Map.Entry<String, DependencyExtractor> alternative : alternatives.entrySet()) {
+            extractAll(alternative.getValue(), files, isRelevant, new HashMap<>());
+            Map<Path, Set<String>> edges = new HashMap<>();
+            long nanos = extractAll(alternative.getValue(), files, isRelevant, edges);
+            System.out.printf("%s: %d ms (%.2f ms per file). %.1fx faster.%n", alternative.getKey(), nanos / 1_000_000,
+                    nanos / 1e6 / files.size(), (double) accurateNanos / Math.max(1, nanos));
+            compare(accurateEdges, edges);
+        }
+    }
+
+    /**
+     * Prints the precision and recall of an alternative backend, with examples of its mistakes.
+     *
+     * @param accurateEdges The edges found by the accurate mode, by file.
+     * @param edges         The edges found by the alternative backend, by file.
+     */
+    private static void compare(Map<Path, Set<String>> accurateEdges, Map<Path, Set<String>> edges) {
+        long truePositives = 0;
+        long accurateCount = 0;
+        long count = 0;
+        List<String> missed = new ArrayList<>();
+        List<String> extra = new ArrayList<>();
+        for (Map.Entry<Path, Set<String>> entry : edges.entrySet()) {
+            Path file = entry.getKey();
+            Set<String> expected = accurateEdges.get(file);
+            Set<String> actual = entry.getValue();
+            if (expected == null) continue;
+            accurateCount += expected.size();
+            count += actual.size();
+            for (String type : actual) {
+                if (expected.contains(type)) {
+                    truePositives++;
+                } else if (extra.size() < EXAMPLES) {
+                    extra.add(file.getFileName() + " -> " + type);
+                }
+            }
+            for (String type : expected) {
+                if (!actual.contains(type) && missed.size() < EXAMPLES) {
+                    missed.add(file.getFileName() + " -> " + type);
+                }
+            }
+        }
+
+        System.out.printf("  %d edges on %d files. Precision: %.2f%% of its edges are correct. Recall: %.2f%% of the accurate edges are found.%n",
+                count, edges.size(), count == 0 ? 100.0 : 100.0 * truePositives / count,
+                accurateCount == 0 ? 100.0 : 100.0 * truePositives / accurateCount);
+        if (!missed.isEmpty()) {
+            System.out.println("  Examples of missed edges:");
+            missed.forEach(edge -> System.out.println("    -> " + edge));
+        }
+        if (!extra.isEmpty()) {
+            System.out.println("  Examples of extra edges:");
+            extra.forEach(edge -> System.out.println("    -> " + edge));
+        }
+    }
+
+    /**
+     * Extracts the dependencies of all files with one backend.
+     *
+     * @param extractor  The engine.
+     * @param files      The source files.
+     * @param isRelevant Decides whether a referenced type is followed by the traversal.
+     * @param edges      Receives the referenced project types of each file, without the file itself.
+     * @return The time the extraction took, in nanoseconds.
+     */
+    private long extractAll(DependencyExtractor extractor, List<Path> files, Predicate<String> isRelevant, Map<Path, Set<String>> edges) {
+        long nanos = 0;
+        for (Path file : files) {
+            long start = System.nanoTime();
+            Set<String> referencedTypes;
+            try {
+                referencedTypes = extractor.extract(file);
+            } catch (Exception e) {
+                System.err.println("Could not resolve or parse: " + file + ". Skipping. Error: " + e.getMessage());
+                continue;
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+            Set<String> projectTypes = new HashSet<>();
+            for (String type : referencedTypes) {
+                Path target = index.find(type);
+                if (target != null && !target.equals(file) && isRelevant.test(type)) {
+                    projectTypes.add(type);
+                }
+            }
+            edges.put(file, projectTypes);
+        }
+        return nanos;
+    }
+}
@@ -0,0 +1,117 @@
+package de.mkoehler.codebaseslicer;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Matches qualified names against a set of package prefixes.
+ * <p>
+ * The prefixes are stored in a trie of name segments, so a lookup costs one map access per segment
+ * of the name, however many prefixes there are. Prefixes match whole segments only: {@code java.}
+ * matches {@code java.util.List}, but not {@code javafx.scene.Node}. The trailing dot is optional.
+ * </p>
+ * <p>
+ * Instances are immutable and safe for concurrent use.
+ * </p>
+ */
+class PackageTrie {
+
+    /** The prefixes that are excluded when no {@code -exclude-packages} flag is given: the JDK. */
+    static final String DEFAULT_PREFIXES = "java.,javax.";
+
+    /**
+     * The packages whose types the type solvers resolve without sources, through reflection. This is
+     * what the type solvers can see, independent of what {@code -exclude-packages} excludes.
+     */
+    static final PackageTrie REFLECTION_PACKAGES = parse("java.,javax.");
+
+    /** The root of the trie. */
+    private final Node root = new Node();
+    /** The prefixes, without trailing dots, sorted. */
+    private final List<String> prefixes;
+
+    /**
+     * Constructs a new PackageTrie.
+     *
+     * @param prefixes The package prefixes, with or without trailing dots.
+     */
+    private PackageTrie(Collection<String> prefixes) {
+        this.prefixes = prefixes.stream().sorted().collect(Collectors.toList());
+        for (String prefix : this.prefixes) {
+            Node node = root;
+            for (String segment : prefix.split("\\.")) {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+            node.terminal = true;
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of package prefixes.
+     *
+     * @param list The list, e.g. {@code java.,javax.,org.springframework.}. Blank entries are ignored.
+     * @return The trie.
+     * @throws IllegalArgumentException if a prefix is not a dot-separated sequence of names.
+     */
+    static PackageTrie parse(String list) {
+        Set<String> prefixes = new HashSet<>();
+        for (String entry : list.split(",")) {
+            String prefix = entry.trim();
+            if (prefix.endsWith(".")) {
+                prefix = prefix.substring(0, prefix.length() - 1);
+            }
+            if (prefix.isEmpty()) continue;
+            if (prefix.startsWith(".") || prefix.contains("..")) {
+                throw new IllegalArgumentException("Invalid package prefix: " + entry.trim());
+            }
+            prefixes.add(prefix);
+        }
+        return new PackageTrie(prefixes);
+    }
+
+    /**
+     * Checks whether a qualified name lies under one of the prefixes.
+     *
+     * @param qualifiedName The qualified name of a type or package.
+     * @return {@code true} if a prefix matches.
+     */
+    boolean matches(String qualifiedName) {
+        Node node = root;
+        int start = 0;
+        while (true) {
+            int dot = qualifiedName.indexOf('.', start);
+            String segment = dot < 0 ? qualifiedName.substring(start) : qualifiedName.substring(start, dot);
+            node = node.children.get(segment);
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+            if (dot < 0) {
+                return false;
+            }
+            start = dot + 1;
+        }
+    }
+
+    /**
+     * Returns the prefixes in a canonical form, so that equal sets of prefixes are described equally.
+     *
+     * @return The sorted prefixes, each with a trailing dot, separated by commas.
+     */
+    @Override
+    public String toString() {
+        return prefixes.stream().map(prefix -> prefix + ".").collect(Collectors.joining(","));
+    }
+
+    /**
+     * A node of the trie, standing for one name segment.
+     */
+    private static class Node {
+        /** The child nodes, by the next segment. */
+        final Map<String, Node> children = new HashMap<>();
+        /** Whether a prefix ends at this node. */
+        boolean terminal;
+    }
+}
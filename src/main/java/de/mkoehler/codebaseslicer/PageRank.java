@@ -0,0 +1,202 @@
+package de.mkoehler.codebaseslicer;
+
+import java.util.*;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Ranks the types of a {@link DependencyGraph} by personalized PageRank.
+ * <p>
+ * A random walker starts at the seed classes (the root and the explicitly included classes), follows
+ * a random dependency edge in either direction with probability {@value #DAMPING}, and otherwise
+ * jumps back to a seed. The probability of finding the walker at a class measures how tightly it is
+ * coupled to the seeds. Since utility classes used all over the project collect probability from
+ * everywhere, the score of each class is divided by its number of edges: a hub ranks below a domain
+ * class that is reached through the same number of walks but has fewer edges.
+ * </p>
+ * <p>
+ * The scores are computed by power iteration. Each iteration computes the new probability of every
+ * node from its neighbors only, so the nodes are split across all cores without any locking. The
+ * edges are copied once into a symmetric adjacency list on the heap, so that the iterations do not
+ * decode the mapped graph over and over.
+ * </p>
+ * <p>
+ * Floating-point addition is not associative, so the sums over all nodes are taken over chunks of a
+ * fixed size, and the chunk sums are added in index order. The scores, and therefore the ranking, are
+ * the same on every machine regardless of the number of cores.
+ * </p>
+ */
+class PageRank {
+
+    /** The probability of following an edge instead of jumping back to a seed. */
+    static final double DAMPING = 0.85;
+    /** The iteration stops once the total change of all probabilities falls below this value. */
+    private static final double TOLERANCE = 1e-9;
+    /** The maximum number of iterations. */
+    private static final int MAX_ITERATIONS = 100;
+    /** The number of nodes whose terms are added up sequentially by one task of a parallel sum. */
+    private static final int CHUNK_SIZE = 4096;
+
+    /** The degree-normalized score of each node. */
+    private final double[] scores;
+    /** The number of iterations until convergence. */
+    private final int iterations;
+    /** The time the computation took, in milliseconds. */
+    private final long millis;
+
+    /**
+     * Constructs a new PageRank result.
+     *
+     * @param scores     The degree-normalized score of each node.
+     * @param iterations The number of iterations until convergence.
+     * @param millis     The time the computation took, in milliseconds.
+     */
+    private PageRank(double[] scores, int iterations, long millis) {
+        this.scores = scores;
+        this.iterations = iterations;
+        this.millis = millis;
+    }
+
+    /**
+     * Computes the personalized PageRank of all nodes of a graph.
+     *
+     * @param graph The dependency graph.
+     * @param seeds The node IDs of the seed classes. Must not be empty.
+     * @return The ranking.
+     */
+    static PageRank compute(DependencyGraph graph, Collection<Integer> seeds) {
+        long start = System.nanoTime();
+        int nodeCount = graph.nodeCount();
+
+        // Collect every edge in both directions into a symmetric adjacency list in CSR form.
+        int[] offsets = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            int source = node;
+            graph.forEachNeighbor(node, DependencyGraph.Direction.FORWARD, target -> {
+                if (target != source) {
+                    offsets[source + 1]++;
+                    offsets[target + 1]++;
+                }
+            });
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        int[] neighbors = new int[offsets[nodeCount]];
+        int[] fill = Arrays.copyOf(offsets, nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            int source = node;
+            graph.forEachNeighbor(node, DependencyGraph.Direction.FORWARD, target -> {
+                if (target != source) {
+                    neighbors[fill[source]++] = target;
+                    neighbors[fill[target]++] = source;
+                }
+            });
+        }
+
+        double[] teleport = new double[nodeCount];
+        Set<Integer> distinctSeeds = new HashSet<>(seeds);
+        for (int seed : distinctSeeds) {
+            teleport[seed] = 1.0 / distinctSeeds.size();
+        }
+
+        double[] rank = teleport.clone();
+        double[] next = new double[nodeCount];
+        int iterations = 0;
+        double change = Double.MAX_VALUE;
+        while (change > TOLERANCE && iterations < MAX_ITERATIONS) {
+            double[] current = rank;
+            // Walkers on isolated nodes have nowhere to go and jump back to the seeds.
+            double stuck = sum(nodeCount, node -> offsets[node] == offsets[node + 1] ? current[node] : 0);
+            double[] updated = next;
+            change = sum(nodeCount, node -> {
+                double incoming = 0;
+                for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                    int neighbor = neighbors[i];
+                    incoming += current[neighbor] / (offsets[neighbor + 1] - offsets[neighbor]);
+                }
+                updated[node] = (1 - DAMPING + DAMPING * stuck) * teleport[node] + DAMPING * incoming;
+                return Math.abs(updated[node] - current[node]);
+            });
+            next = rank;
+            rank = updated;
+            iterations++;
+        }
+
+        double[] scores = new double[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            scores[node] = rank[node] / Math.max(1, offsets[node + 1] - offsets[node]);
+        }
+        return new PageRank(scores, iterations, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Adds up a term for every node in parallel, with a result that does not depend on the number of
+     * threads: each task sums one chunk of {@value #CHUNK_SIZE} nodes in order, and the chunk sums are
+     * added in index order.
+     *
+     * @param nodeCount The number of nodes.
+     * @param term      The term of a node. Called exactly once per node.
+     * @return The sum of all terms.
+     */
+    private static double sum(int nodeCount, IntToDoubleFunction term) {
+        double[] chunkSums = new double[(nodeCount + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        IntStream.range(0, chunkSums.length).parallel().forEach(chunk -> {
+            double sum = 0;
+            int end = Math.min(nodeCount, (chunk + 1) * CHUNK_SIZE);
+            for (int node = chunk * CHUNK_SIZE; node < end; node++) {
+                sum += term.applyAsDouble(node);
+            }
+            chunkSums[chunk] = sum;
+        });
+        double total = 0;
+        for (double chunkSum : chunkSums) {
+            total += chunkSum;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the score of a node.
+     *
+     * @param node The node ID.
+     * @return The degree-normalized personalized PageRank of the node.
+     */
+    double score(int node) {
+        return scores[node];
+    }
+
+    /**
+     * Returns the nodes with the highest scores.
+     *
+     * @param limit The maximum number of nodes.
+     * @return The node IDs of the best-ranked nodes with a positive score, best first.
+     */
+    List<Integer> top(int limit) {
+        return IntStream.range(0, scores.length)
+                .filter(node -> scores[node] > 0)
+                .boxed()
+                .sorted((a, b) -> Double.compare(scores[b], scores[a]))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the number of iterations until convergence.
+     *
+     * @return The number of iterations.
+     */
+    int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Returns the time the computation took.
+     *
+     * @return The time in milliseconds.
+     */
+    long getMillis() {
+        return millis;
+    }
+}
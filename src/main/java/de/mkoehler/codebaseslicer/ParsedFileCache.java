@@ -0,0 +1,314 @@
+package de.mkoehler.codebaseslicer;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.resolution.cache.Cache;
+import com.github.javaparser.resolution.cache.CacheStats;
+import com.github.javaparser.symbolsolver.cache.DefaultCacheStats;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of parsed source files, shared by a {@link DependencyResolver} and the
+ * {@link com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver}s of its
+ * type solver chain.
+ * <p>
+ * Without it, every file is parsed at least twice: once by the type solver that resolves a reference
+ * to one of its types, and once more when the traversal reaches the file and analyzes it. With the
+ * cache, whichever side parses a file first leaves the {@link CompilationUnit} for the other.
+ * </p>
+ * <p>
+ * The cache is bounded by weight rather than by entry count, since source files differ in size by
+ * orders of magnitude. The weight of an entry is the size of its source file in bytes. The most
+ * recently used entries are held strongly up to the maximum weight; older entries are demoted to
+ * {@link SoftReference}s, so that they can still be served until the garbage collector needs the
+ * memory. Cleared soft references are purged through a {@link ReferenceQueue}, so the cache does not
+ * grow with every file a long-lived engine has ever seen.
+ * </p>
+ * <p>
+ * An engine outlives edits to the files it analyzed, e.g. in the daemon, in watch mode or through the
+ * library API. Each entry therefore records the modification time and size of its file when it was
+ * added, and an entry whose file has changed since is dropped instead of served. Since the syntax
+ * trees held by the type solvers may refer to the outdated tree, the callback passed to the
+ * constructor is run whenever that happens, so that the owner can clear them as well.
+ * </p>
+ * <p>
+ * A syntax tree must not be used by more than one thread, so, like the resolver it belongs to, an
+ * instance must only be used by one thread at a time. The hit and miss counters of all instances are
+ * also added up in process-wide totals, see {@link #totals()}.
+ * </p>
+ */
+class ParsedFileCache implements Cache<Path, Optional<CompilationUnit>> {
+
+    /** The rough size of a syntax tree on the heap, relative to the size of its source file. */
+    private static final int AST_BYTES_PER_SOURCE_BYTE = 20;
+    /** The share of the maximum heap size that all parse caches together may hold strongly. */
+    private static final int HEAP_FRACTION = 4;
+
+    /** The number of hits of all instances. */
+    private static final LongAdder TOTAL_HITS = new LongAdder();
+    /** The number of hits of all instances that were served from a soft reference. */
+    private static final LongAdder TOTAL_SOFT_HITS = new LongAdder();
+    /** The number of misses of all instances. */
+    private static final LongAdder TOTAL_MISSES = new LongAdder();
+    /** The number of entries of all instances that were demoted to soft references. */
+    private static final LongAdder TOTAL_EVICTIONS = new LongAdder();
+
+    /** The maximum total weight of the strongly held entries. */
+    private final long maxWeight;
+    /** The strongly held entries, in access order. */
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    /** The entries that were demoted because the maximum weight was exceeded. */
+    private final Map<Path, SoftEntry> softEntries = new HashMap<>();
+    /** The queue the garbage collector adds the cleared soft references to. */
+    private final ReferenceQueue<Entry> clearedEntries = new ReferenceQueue<>();
+    /** Called whenever an entry is dropped because its file has changed. */
+    private final Runnable onChange;
+    /** The total weight of the strongly held entries. */
+    private long weight;
+    /** The number of hits of this instance. */
+    private long hits;
+    /** The number of misses of this instance. */
+    private long misses;
+    /** The number of entries of this instance that were demoted to soft references. */
+    private long evictions;
+
+    /**
+     * Constructs a new, empty ParsedFileCache.
+     *
+     * @param maxWeight The maximum total size of the source files whose syntax trees are held strongly, in bytes.
+     * @param onChange  Called whenever an entry is dropped because its file has changed on disk.
+     */
+    ParsedFileCache(long maxWeight, Runnable onChange) {
+        this.maxWeight = maxWeight;
+        this.onChange = onChange;
+    }
+
+    /**
+     * Returns the maximum weight for each cache when one cache is kept per thread.
+     *
+     * @param threads The number of threads that analyze files concurrently.
+     * @return The maximum weight of each cache, in bytes of source code.
+     */
+    static long maxWeightPerThread(int threads) {
+        return Runtime.getRuntime().maxMemory() / HEAP_FRACTION / AST_BYTES_PER_SOURCE_BYTE / threads;
+    }
+
+    @Override
+    public void put(Path key, Optional<CompilationUnit> value) {
+        Path path = normalize(key);
+        purgeClearedEntries();
+        softEntries.remove(path);
+        Entry entry = newEntry(path, value);
+        Entry previous = entries.put(path, entry);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += entry.weight;
+
+        // Demote the least recently used entries, but always keep the one that was just added.
+        Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator();
+        while (weight > maxWeight && entries.size() > 1) {
+            Map.Entry<Path, Entry> eldest = iterator.next();
+            iterator.remove();
+            weight -= eldest.getValue().weight;
+            softEntries.put(eldest.getKey(), new SoftEntry(eldest.getKey(), eldest.getValue(), clearedEntries));
+            evictions++;
+            TOTAL_EVICTIONS.increment();
+        }
+    }
+
+    @Override
+    public Optional<Optional<CompilationUnit>> get(Path key) {
+        Path path = normalize(key);
+        purgeClearedEntries();
+        Entry entry = entries.get(path);
+        boolean soft = false;
+        if (entry == null) {
+            SoftEntry reference = softEntries.remove(path);
+            entry = reference != null ? reference.get() : null;
+            soft = true;
+        }
+        if (entry != null && !entry.isCurrent(path)) {
+            remove(path);
+            entry = null;
+            onChange.run();
+        }
+        if (entry == null) {
+            misses++;
+            TOTAL_MISSES.increment();
+            return Optional.empty();
+        }
+        if (soft) {
+            TOTAL_SOFT_HITS.increment();
+            put(path, entry.value);
+        }
+        hits++;
+        TOTAL_HITS.increment();
+        return Optional.of(entry.value);
+    }
+
+    @Override
+    public void remove(Path key) {
+        Path path = normalize(key);
+        Entry entry = entries.remove(path);
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+        softEntries.remove(path);
+    }
+
+    @Override
+    public void removeAll() {
+        entries.clear();
+        softEntries.clear();
+        weight = 0;
+    }
+
+    @Override
+    public boolean contains(Path key) {
+        Path path = normalize(key);
+        if (entries.containsKey(path)) {
+            return true;
+        }
+        SoftEntry reference = softEntries.get(path);
+        return reference != null && reference.get() != null;
+    }
+
+    @Override
+    public long size() {
+        purgeClearedEntries();
+        return entries.size() + softEntries.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return new DefaultCacheStats(hits, misses, 0, 0, 0, evictions);
+    }
+
+    /**
+     * Returns the counters of all instances added up.
+     *
+     * @return The number of hits, hits served from soft references, misses, and evictions, in this order.
+     */
+    static long[] totals() {
+        return new long[]{TOTAL_HITS.sum(), TOTAL_SOFT_HITS.sum(), TOTAL_MISSES.sum(), TOTAL_EVICTIONS.sum()};
+    }
+
+    /**
+     * Removes the soft references that the garbage collector has cleared.
+     */
+    private void purgeClearedEntries() {
+        SoftEntry reference;
+        while ((reference = (SoftEntry) clearedEntries.poll()) != null) {
+            // The file may have been added again since, under a new reference.
+            softEntries.remove(reference.path, reference);
+        }
+    }
+
+    /**
+     * Creates an entry for a parsed file. Its weight is the size of the source in bytes.
+     *
+     * @param path  The source file.
+     * @param value The parsed file, or empty.
+     * @return The entry, with the current modification time and size of the file.
+     */
+    private static Entry newEntry(Path path, Optional<CompilationUnit> value) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new Entry(value, attributes.lastModifiedTime(), attributes.size());
+        } catch (IOException e) {
+            // An unreadable file has no stamp, so the entry is dropped on the next lookup.
+            return new Entry(value, null, 1);
+        }
+    }
+
+    /**
+     * Returns the key of a file. The type solvers and the traversal reach the same file through
+     * differently written paths, so all keys are absolute and normalized.
+     *
+     * @param path The path of the file.
+     * @return The key.
+     */
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    /**
+     * A cached parse result with the state of its file when it was parsed.
+     */
+    private static class Entry {
+        /** The parsed file, or empty if the file could not be parsed. */
+        final Optional<CompilationUnit> value;
+        /** The modification time of the file, or {@code null} if it could not be read. */
+        final FileTime lastModified;
+        /** The size of the file in bytes. */
+        final long size;
+        /** The weight of the entry. */
+        final long weight;
+
+        /**
+         * Constructs a new Entry.
+         *
+         * @param value        The parsed file, or empty.
+         * @param lastModified The modification time of the file, or {@code null}.
+         * @param size         The size of the file in bytes, which is also the weight of the entry.
+         */
+        Entry(Optional<CompilationUnit> value, FileTime lastModified, long size) {
+            this.value = value;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.weight = Math.max(1, size);
+        }
+
+        /**
+         * Checks whether the file is still in the state it was parsed in.
+         *
+         * @param path The source file.
+         * @return {@code true} if the modification time and size of the file are unchanged.
+         */
+        boolean isCurrent(Path path) {
+            if (lastModified == null) {
+                return false;
+            }
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return attributes.lastModifiedTime().equals(lastModified) && attributes.size() == size;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * A demoted entry, which remembers its key so that it can be purged once it was cleared.
+     */
+    private static class SoftEntry extends SoftReference<Entry> {
+        /** The key of the entry. */
+        final Path path;
+
+        /**
+         * Constructs a new SoftEntry.
+         *
+         * @param path  The key of the entry.
+         * @param entry The entry.
+         * @param queue The queue to add the reference to once it was cleared.
+         */
+        SoftEntry(Path path, Entry entry, ReferenceQueue<Entry> queue) {
+            super(entry, queue);
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package de.mkoehler.codebaseslicer;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.CompactConstructorDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.EnumConstantDeclaration;
+import com.github.javaparser.ast.body.InitializerDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Renders the API of a source file without its implementation.
+ * <p>
+ * The stripped form keeps the package declaration, the imports, all type declarations with their
+ * fields, and the signatures of all methods and constructors. Method bodies are dropped (leaving a
+ * {@code ;} after the signature), constructor bodies are emptied, and initializer blocks and all
+ * comments are removed. Annotations are kept. The result stays valid Java syntax:
+ * </p>
+ * <ul>
+ *   <li>Default, static and private methods of interfaces must have a body, so theirs is emptied.</li>
+ *   <li>Methods of anonymous classes and enum constant bodies are kept as they are. They implement
+ *       the API of another type rather than declaring one, and the bodies they sit in are part of a
+ *       field or constant declaration.</li>
+ * </ul>
+ * <p>
+ * This is used for the classes at the edge of a slice, where only the API matters. The renderer only
+ * parses; it does not resolve symbols, so it is much cheaper than the dependency analysis. It parses
+ * the file itself instead of taking the syntax tree from a {@link ParsedFileCache}: those caches
+ * belong to the worker threads, the rendered files are mostly frontier files that were never parsed,
+ * and the tree is modified while rendering. Like the parser it owns, an instance must only be used by
+ * one thread at a time.
+ * </p>
+ */
+class SignatureRenderer {
+
+    /** The comment that starts every stripped file, so that readers know the bodies are missing. */
+    private static final String NOTICE = "// Signatures only: method bodies omitted.\n";
+
+    /** The parser, without a symbol resolver. */
+    private final JavaParser parser;
+
+    /**
+     * Constructs a new SignatureRenderer.
+     *
+     * @param languageLevel The Java language level used for parsing.
+     */
+    SignatureRenderer(ParserConfiguration.LanguageLevel languageLevel) {
+        this.parser = new JavaParser(new ParserConfiguration().setLanguageLevel(languageLevel));
+    }
+
+    /**
+     * Parses a source file and renders its stripped form.
+     *
+     * @param filePath The source file.
+     * @return The stripped source code.
+     * @throws IOException if the file cannot be read or contains syntax errors.
+     */
+    String render(Path filePath) throws IOException {
+        ParseResult<CompilationUnit> result = parser.parse(filePath);
+        if (!result.isSuccessful() || !result.getResult().isPresent()) {
+            throw new IOException("Parse error in " + filePath + ": " + result.getProblems());
+        }
+        CompilationUnit cu = result.getResult().get();
+
+        for (MethodDeclaration method : cu.findAll(MethodDeclaration.class)) {
+            if (method.findAncestor(ObjectCreationExpr.class).isPresent()
+                    || method.findAncestor(EnumConstantDeclaration.class).isPresent()) {
+                continue;
+            }
+            if (method.getBody().isPresent() && isInInterface(method)) {
+                method.setBody(new BlockStmt());
+            } else {
+                method.removeBody();
+            }
+        }
+        cu.findAll(ConstructorDeclaration.class).forEach(constructor -> constructor.setBody(new BlockStmt()));
+        cu.findAll(CompactConstructorDeclaration.class).forEach(constructor -> constructor.setBody(new BlockStmt()));
+        cu.findAll(InitializerDeclaration.class).forEach(Node::remove);
+        cu.getAllContainedComments().forEach(Comment::remove);
+        return NOTICE + cu;
+    }
+
+    /**
+     * Checks whether a method is declared directly in an interface.
+     *
+     * @param method The method.
+     * @return {@code true} if the enclosing type is an interface.
+     */
+    private static boolean isInInterface(MethodDeclaration method) {
+        return method.getParentNode()
+                .filter(parent -> parent instanceof ClassOrInterfaceDeclaration)
+                .map(parent -> ((ClassOrInterfaceDeclaration) parent).isInterface())
+                .orElse(false);
+    }
+}
@@ -0,0 +1,127 @@
+package de.mkoehler.codebaseslicer;
+
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The outcome of one {@link SliceSession}: which classes and files ended up in the slice, and where
+ * it was written. Instances are immutable.
+ */
+public final class SliceResult {
+
+    /** The fully qualified name of the class the slice started from. */
+    private final String rootClassName;
+    /** The source file of every class in the slice, sorted by class name. */
+    private final Map<String, Path> classes;
+    /** The distinct source files of the slice, in output order. */
+    private final List<Path> files;
+    /** The number of files that were written as signatures only. */
+    private final int signatureFiles;
+    /** The output file. */
+    private final Path outputPath;
+    /** The time the slice took, including the output, in nanoseconds. */
+    private final long nanos;
+    /** Whether the traversal was stopped by a cancellation token. */
+    private final boolean cutOff;
+    /** The depth up to which a cut-off slice is complete, or -1. */
+    private final int completeDepth;
+
+    /**
+     * Constructs a new SliceResult.
+     *
+     * @param rootClassName  The fully qualified name of the class the slice started from.
+     * @param classes        The source file of every class in the slice.
+     * @param files          The distinct source files of the slice, in output order.
+     * @param signatureFiles The number of files that were written as signatures only.
+     * @param outputPath     The output file.
+     * @param nanos          The time the slice took, in nanoseconds.
+     * @param cutOff         Whether the traversal was stopped by a cancellation token.
+     * @param completeDepth  The depth up to which a cut-off slice is complete, or -1.
+     */
+    SliceResult(String rootClassName, Map<String, Path> classes, List<Path> files, int signatureFiles, Path outputPath,
+                long nanos, boolean cutOff, int completeDepth) {
+        this.rootClassName = rootClassName;
+        this.classes = Collections.unmodifiableMap(new TreeMap<>(classes));
+        this.files = Collections.unmodifiableList(new ArrayList<>(files));
+        this.signatureFiles = signatureFiles;
+        this.outputPath = outputPath;
+        this.nanos = nanos;
+        this.cutOff = cutOff;
+        this.completeDepth = completeDepth;
+    }
+
+    /**
+     * Returns the fully qualified name of the class the slice started from.
+     *
+     * @return The root class.
+     */
+    public String getRootClassName() {
+        return rootClassName;
+    }
+
+    /**
+     * Returns the classes of the slice. Nested and secondary classes map to the file declaring them.
+     *
+     * @return The source file of every class, sorted by class name.
+     */
+    public Map<String, Path> getClasses() {
+        return classes;
+    }
+
+    /**
+     * Returns the source files of the slice.
+     *
+     * @return The distinct source files, in the order they were written.
+     */
+    public List<Path> getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the number of files that were written as signatures only, see {@code -full-depth}.
+     *
+     * @return The number of files reduced to signatures.
+     */
+    public int getSignatureFiles() {
+        return signatureFiles;
+    }
+
+    /**
+     * Returns the file the slice was written to.
+     *
+     * @return The output file.
+     */
+    public Path getOutputPath() {
+        return outputPath;
+    }
+
+    /**
+     * Returns how long the slice took, from the start of the traversal to the end of the output.
+     *
+     * @return The duration in milliseconds.
+     */
+    public long getMillis() {
+        return nanos / 1_000_000;
+    }
+
+    /**
+     * Returns whether the traversal was stopped early by its {@link CancellationToken}, e.g. at a
+     * deadline. A cut-off slice is still a valid slice, only a smaller one.
+     *
+     * @return {@code true} if the slice was cut off.
+     */
+    public boolean isCutOff() {
+        return cutOff;
+    }
+
+    /**
+     * Returns the depth up to which a cut-off breadth-first slice is complete: it holds exactly the
+     * classes a maximum depth of this value would have produced.
+     *
+     * @return The complete depth, or -1 if the slice was not cut off or was cut off during a
+     *         token-budgeted traversal, which has no depth order.
+     */
+    public int getCompleteDepth() {
+        return completeDepth;
+    }
+}
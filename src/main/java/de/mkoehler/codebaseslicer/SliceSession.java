@@ -0,0 +1,1185 @@
+package de.mkoehler.codebaseslicer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * The traversal state of a single slice.
+ * <p>
+ * A session performs the breadth-first dependency search for one root class and writes the result.
+ * All state that belongs to one slice (the work queue, the discovered and processed classes and the
+ * final file set) lives here, while the expensive shared state (the source index, the dependency
+ * cache and the per-thread resolvers) is owned by the {@link SlicerEngine}. Separate sessions can
+ * therefore run concurrently on one engine, e.g. for the entries of a batch manifest or for the
+ * requests of a service that embeds the slicer. A session itself is used by one thread and run once.
+ * </p>
+ * <p>
+ * A session created with a precomputed {@link DependencyGraph} answers the traversal from the graph
+ * instead, without parsing anything.
+ * </p>
+ * <p>
+ * With a token budget (see {@link #setMaxTokens(long)}), the breadth-first search is replaced by a
+ * relevance-ordered one: candidates wait in a priority queue and the most relevant one is added next,
+ * until the estimated size of the slice reaches the budget.
+ * </p>
+ * <p>
+ * With a {@link CancellationToken} (see {@link #setCancellationToken(CancellationToken)}), the
+ * traversal stops when the token fires and the slice found so far is written. The breadth-first
+ * search then cuts the slice back to the last depth it has completely discovered, so a cut-off slice
+ * is exactly the slice that a smaller {@code -depth} would have produced.
+ * </p>
+ */
+public class SliceSession {
+
+    /** The average number of bytes per token, used to estimate the size of a slice. */
+    private static final int BYTES_PER_TOKEN = 4;
+    /** The number of best-ranked classes listed in the PageRank report. */
+    private static final int REPORT_SIZE = 25;
+
+    /** The fully qualified name of the class where the analysis starts. */
+    private final String rootClassName;
+    /** The maximum depth for the dependency traversal. 0 means only the root class. */
+    private final int maxDepth;
+    /** Classes to include without following their dependencies. */
+    private final List<String> explicitlyIncludedClasses;
+    /** The engine that locates and analyzes the source files, or {@code null} for a session on a graph. */
+    private final SlicerEngine engine;
+    /** The configuration of the engine, or of the run that built the graph. */
+    private final SlicerEngine.Config config;
+    /** The path to the output file where the summary will be saved. */
+    private final Path outputPath;
+    /** The source root directories, used to compute the relative paths shown in the output. */
+    private final List<Path> sourcePaths;
+    /** The worker pool for the parallel traversal, or {@code null} to traverse on the calling thread. */
+    private final ExecutorService workerPool;
+    /** The precomputed dependency graph to traverse, or {@code null} to analyze the source files. */
+    private final DependencyGraph graph;
+    /** The direction in which the dependency edges are followed. Only forward without a graph. */
+    private final DependencyGraph.Direction direction;
+
+    /** The token budget of the slice, or 0 for no budget. */
+    private long maxTokens;
+    /** The estimated number of tokens of the files added so far. Only tracked with a token budget. */
+    private long usedTokens;
+    /** The maximum depth of classes written with their full source; deeper ones are written as signatures only. -1 for no limit. */
+    private int fullSourceDepth = -1;
+    /** The number of source files whose dependencies were resolved. */
+    private int resolvedFiles;
+    /** The time spent resolving dependencies, summed over all threads, in nanoseconds. */
+    private long resolveNanos;
+    /** The number of classes at the maximum depth, whose files were located but not analyzed. */
+    private int frontierClasses;
+    /** The distinct source files written by the last {@link #writeOutput()}, in output order. */
+    private List<Path> writtenFiles = Collections.emptyList();
+    /** The number of files written as signatures only by the last {@link #writeOutput()}. */
+    private int signatureFiles;
+    /** The number of bytes written by the last {@link #writeOutput()}. */
+    private long bytesWritten;
+    /** The number of classes whose source file could not be found. */
+    private int missingClasses;
+    /** The number of source files that could not be parsed or resolved. */
+    private int failedFiles;
+    /** Collects the timings and counters for {@code -stats}, or {@code null} to collect nothing. */
+    private SliceStats stats;
+
+    /** Stops the traversal early; {@link CancellationToken#NONE} to always finish. */
+    private CancellationToken cancellationToken = CancellationToken.NONE;
+    /** Whether the traversal was stopped by the cancellation token. */
+    private boolean cutOff;
+    /** The depth up to which the slice is complete after a cut-off, or -1 if it is not complete to any depth. */
+    private int completeDepth = -1;
+
+    /** Whether the budgeted traversal ranks candidates by personalized PageRank instead of fan-in and distance. */
+    private boolean rankByPageRank;
+
+    /** The minimum depth at which each class has been discovered so far. A class is queued whenever this improves. */
+    private final Map<String, Integer> discoveredDepths = new HashMap<>();
+    /** The depth at which each class has been processed, to avoid cycles and redundant work. */
+    private final Map<String, Integer> processedDepths = new HashMap<>();
+    /** A queue for the breadth-first search, holding classes that need to be analyzed. */
+    private final Queue<WorkItem> workQueue = new ArrayDeque<>();
+    /** The final set of files to be included in the output, mapping qualified name to file path. */
+    private final Map<String, Path> finalFileSet = new HashMap<>();
+
+    /**
+     * Constructs a new SliceSession that analyzes the source files. Use {@link SlicerEngine#newSession}
+     * outside of this package.
+     *
+     * @param engine                    The engine that locates and analyzes the source files.
+     * @param rootClassName             The fully qualified name of the class to start from.
+     * @param maxDepth                  The maximum depth of the dependency traversal.
+     * @param explicitlyIncludedClasses Classes to include without following their dependencies.
+     * @param outputPath                The output file.
+     * @param workerPool                The worker pool for the parallel traversal, or {@code null}.
+     */
+    SliceSession(SlicerEngine engine, String rootClassName, int maxDepth, List<String> explicitlyIncludedClasses,
+                 Path outputPath, ExecutorService workerPool) {
+        this(engine, engine.getConfig(), rootClassName, maxDepth, explicitlyIncludedClasses, outputPath,
+                engine.getConfig().getSourcePaths(), workerPool, null, DependencyGraph.Direction.FORWARD);
+    }
+
+    /**
+     * Constructs a new SliceSession that traverses a precomputed dependency graph.
+     *
+     * @param config                    The configuration, for the language level and the excluded packages.
+     * @param rootClassName             The fully qualified name of the class to start from.
+     * @param maxDepth                  The maximum depth of the dependency traversal.
+     * @param explicitlyIncludedClasses Classes to include without following their dependencies.
+     * @param outputPath                The output file.
+     * @param graph                     The precomputed dependency graph.
+     * @param direction                 The direction in which the dependency edges are followed.
+     */
+    SliceSession(SlicerEngine.Config config, String rootClassName, int maxDepth, List<String> explicitlyIncludedClasses,
+                 Path outputPath, DependencyGraph graph, DependencyGraph.Direction direction) {
+        this(null, config, rootClassName, maxDepth, explicitlyIncludedClasses, outputPath, graph.sourceRoots(), null,
+                graph, direction);
+    }
+
+    /**
+     * Constructs a new SliceSession.
+     *
+     * @param engine                    The engine, or {@code null} for a session on a graph.
+     * @param config                    The configuration.
+     * @param rootClassName             The fully qualified name of the class to start from.
+     * @param maxDepth                  The maximum depth of the dependency traversal.
+     * @param explicitlyIncludedClasses Classes to include without following their dependencies.
+     * @param outputPath                The output file.
+     * @param sourcePaths               The source root directories.
+     * @param workerPool                The worker pool for the parallel traversal, or {@code null}.
+     * @param graph                     The precomputed dependency graph, or {@code null}.
+     * @param direction                 The direction in which the dependency edges are followed.
+     */
+    private SliceSession(SlicerEngine engine, SlicerEngine.Config config, String rootClassName, int maxDepth,
+                         List<String> explicitlyIncludedClasses, Path outputPath, List<Path> sourcePaths,
+                         ExecutorService workerPool, DependencyGraph graph, DependencyGraph.Direction direction) {
+        this.engine = engine;
+        this.config = config;
+        this.rootClassName = rootClassName;
+        this.maxDepth = maxDepth;
+        this.explicitlyIncludedClasses = explicitlyIncludedClasses;
+        this.outputPath = outputPath;
+        this.sourcePaths = sourcePaths;
+        this.workerPool = workerPool;
+        this.graph = graph;
+        this.direction = direction;
+    }
+
+    /**
+     * Runs the slice: traverses the dependencies of the root class, adds the explicitly included
+     * classes and writes the collected source files to the output file.
+     *
+     * @return The classes and files of the slice.
+     * @throws IOException if there is an error reading source files or writing the output file.
+     */
+    public SliceResult run() throws IOException {
+        System.out.println("\nStarting analysis...");
+        long traversalStart = System.nanoTime();
+        long[] parseCacheBefore = ParsedFileCache.totals();
+        long[] resolutionsBefore = TypeReferenceResolver.totals();
+        long[] classFilesBefore = ClassFileIndex.totals();
+        long[] dependencyCacheBefore = DependencyCache.totals();
+        if (maxTokens > 0) {
+            traverseWithBudget();
+        } else if (graph != null) {
+            traverseGraph();
+        } else if (workerPool != null) {
+            addWork(rootClassName, 0);
+            traverseInParallel();
+        } else {
+            addWork(rootClassName, 0);
+            while (!workQueue.isEmpty()) {
+                WorkItem item = workQueue.poll();
+                if (cancellationToken.isCancelled()) {
+                    // All classes of this depth were discovered by the previous depth, but none deeper were analyzed.
+                    cutOffAt(item.depth);
+                    break;
+                }
+                if (!startProcessing(item)) continue;
+
+                try {
+                    findDependencies(item);
+                } catch (Exception e) {
+                    failedFiles++;
+                    System.err.println("Could not resolve or parse: " + item.qualifiedName + ". Skipping. Error: " + e.getMessage());
+                }
+                if (cutOff) break;
+            }
+        }
+
+        long includesStart = System.nanoTime();
+        // --- NEW: Process the explicitly included classes without recursion ---
+        if (!explicitlyIncludedClasses.isEmpty()) {
+            System.out.println("\nProcessing explicitly included classes...");
+            for (String className : explicitlyIncludedClasses) {
+                // Check if it was already found by the dependency traversal
+                if (finalFileSet.containsKey(className)) {
+                    System.out.println("  -> " + className + " was already included by the dependency tree. Skipping.");
+                    continue;
+                }
+                Path filePath = locate(className);
+                if (filePath != null) {
+                    System.out.println("  -> Adding: " + className);
+                    finalFileSet.put(className, filePath);
+                } else {
+                    System.err.println("  -> Could not find source file for explicitly included class: " + className);
+                    missingClasses++;
+                }
+            }
+        }
+
+        long outputStart = System.nanoTime();
+        writeOutput();
+        long outputEnd = System.nanoTime();
+        printPhaseTimings(outputStart - traversalStart, outputEnd - outputStart, parseCacheBefore, resolutionsBefore,
+                classFilesBefore);
+        if (stats != null) {
+            stats.phase("traversal", includesStart - traversalStart);
+            stats.phase("includes", outputStart - includesStart);
+            stats.phase("output", outputEnd - outputStart);
+            collectStats(parseCacheBefore, resolutionsBefore, classFilesBefore, dependencyCacheBefore);
+        }
+        return new SliceResult(rootClassName, finalFileSet, writtenFiles, signatureFiles, outputPath,
+                System.nanoTime() - traversalStart, cutOff, completeDepth);
+    }
+
+    /**
+     * Prints how long the traversal and the output took, and how much time skipping the analysis of
+     * the frontier classes saved. The cache and resolver counters are kept per process, so while other
+     * sessions run concurrently, their work is included.
+     *
+     * @param traversalNanos    The duration of the traversal, including the explicitly included classes.
+     * @param outputNanos       The duration of writing the output.
+     * @param parseCacheBefore  The counters of the parse caches when the traversal started.
+     * @param resolutionsBefore The counters of the type reference resolvers when the traversal started.
+     * @param classFilesBefore  The counters of the class file index when the traversal started.
+     */
+    private void printPhaseTimings(long traversalNanos, long outputNanos, long[] parseCacheBefore, long[] resolutionsBefore,
+                                   long[] classFilesBefore) {
+        System.out.printf("%nPhase timings: traversal %d ms, output %d ms.%n", traversalNanos / 1_000_000, outputNanos / 1_000_000);
+        if (graph == null) {
+            long averageNanos = resolvedFiles == 0 ? 0 : resolveNanos / resolvedFiles;
+            System.out.printf("  Resolved %d files in %d ms%s. Located %d frontier classes without analyzing them (~%d ms saved).%n",
+                    resolvedFiles, resolveNanos / 1_000_000, workerPool != null ? " (summed over all threads)" : "",
+                    frontierClasses, frontierClasses * averageNanos / 1_000_000);
+        }
+        if (graph == null && engine.usesClassFiles()) {
+            long[] classFiles = ClassFileIndex.totals();
+            System.out.printf("  Class files: %d files read from class files, %d fell back to the source.%n",
+                    classFiles[0] - classFilesBefore[0], classFiles[1] - classFilesBefore[1]);
+        }
+        if (graph == null && engine.usesSymbolSolver()) {
+            long[] parseCache = ParsedFileCache.totals();
+            System.out.printf("  Parse cache: %d hits (%d from soft references), %d misses, %d evicted.%n",
+                    parseCache[0] - parseCacheBefore[0], parseCache[1] - parseCacheBefore[1],
+                    parseCache[2] - parseCacheBefore[2], parseCache[3] - parseCacheBefore[3]);
+            long[] resolutions = TypeReferenceResolver.totals();
+            System.out.printf("  Type references: %d solved, %d from the per-file memo, %d from the cross-file cache (%d known unresolvable), %d skipped as external, %d skipped as excluded packages.%n",
+                    resolutions[0] - resolutionsBefore[0], resolutions[1] - resolutionsBefore[1],
+                    resolutions[2] - resolutionsBefore[2], resolutions[3] - resolutionsBefore[3],
+                    resolutions[4] - resolutionsBefore[4], resolutions[5] - resolutionsBefore[5]);
+        }
+    }
+
+    /**
+     * Fills the stats with the shape of the slice and the counters of this run. The counters are
+     * differences of the per-process totals, like those of {@link #printPhaseTimings}.
+     *
+     * @param parseCacheBefore      The counters of the parse caches when the traversal started.
+     * @param resolutionsBefore     The counters of the type reference resolvers when the traversal started.
+     * @param classFilesBefore      The counters of the class file index when the traversal started.
+     * @param dependencyCacheBefore The counters of the dependency cache when the traversal started.
+     */
+    private void collectStats(long[] parseCacheBefore, long[] resolutionsBefore, long[] classFilesBefore,
+                              long[] dependencyCacheBefore) {
+        stats.rootClassName = rootClassName;
+        stats.mode = graph != null ? "graph" : config.getMode();
+        stats.threads = config.threads;
+        stats.cutOff = cutOff;
+        for (String className : finalFileSet.keySet()) {
+            Integer depth = processedDepths.get(className);
+            if (depth != null) {
+                stats.classesByDepth.merge(depth, 1, Integer::sum);
+            } else {
+                stats.includedClasses++;
+            }
+        }
+
+        stats.count("slice", "classes", finalFileSet.size());
+        stats.count("slice", "analyzedFiles", resolvedFiles);
+        stats.count("slice", "frontierClasses", frontierClasses);
+        stats.count("slice", "completeDepth", completeDepth);
+        stats.count("output", "files", writtenFiles.size());
+        stats.count("output", "signatureFiles", signatureFiles);
+        stats.count("output", "bytes", bytesWritten);
+
+        long[] resolutions = TypeReferenceResolver.totals();
+        stats.count("failures", "missingClasses", missingClasses);
+        stats.count("failures", "failedFiles", failedFiles);
+        stats.count("failures", "unresolvedReferences", resolutions[6] - resolutionsBefore[6]);
+        if (graph != null) {
+            return;
+        }
+
+        long[] dependencyCache = DependencyCache.totals();
+        stats.count("dependencyCache", "hits", dependencyCache[0] - dependencyCacheBefore[0]);
+        stats.count("dependencyCache", "misses", dependencyCache[1] - dependencyCacheBefore[1]);
+        if (engine.usesClassFiles()) {
+            long[] classFiles = ClassFileIndex.totals();
+            stats.count("classFiles", "read", classFiles[0] - classFilesBefore[0]);
+            stats.count("classFiles", "fallbacks", classFiles[1] - classFilesBefore[1]);
+        }
+        if (engine.usesSymbolSolver()) {
+            long[] parseCache = ParsedFileCache.totals();
+            stats.count("parseCache", "hits", parseCache[0] - parseCacheBefore[0]);
+            stats.count("parseCache", "misses", parseCache[2] - parseCacheBefore[2]);
+            stats.count("parseCache", "softHits", parseCache[1] - parseCacheBefore[1]);
+            stats.count("parseCache", "evictions", parseCache[3] - parseCacheBefore[3]);
+            long memoHits = resolutions[1] - resolutionsBefore[1];
+            long sharedHits = resolutions[2] - resolutionsBefore[2];
+            // A reference answered from the memo or the shared map did not need the symbol solver.
+            stats.count("typeReferences", "hits", memoHits + sharedHits);
+            stats.count("typeReferences", "misses", resolutions[0] - resolutionsBefore[0]);
+            stats.count("typeReferences", "memoHits", memoHits);
+            stats.count("typeReferences", "sharedHits", sharedHits);
+            stats.count("typeReferences", "negativeHits", resolutions[3] - resolutionsBefore[3]);
+            stats.count("typeReferences", "external", resolutions[4] - resolutionsBefore[4]);
+            stats.count("typeReferences", "excluded", resolutions[5] - resolutionsBefore[5]);
+        }
+    }
+
+    /**
+     * Records the analysis of a class for {@code -stats}.
+     *
+     * @param className  The fully qualified name of the class.
+     * @param depth      The depth of the class.
+     * @param parseNanos The time spent parsing the file of the class, in nanoseconds.
+     * @param nanos      The total time of the analysis, in nanoseconds.
+     * @param failed     Whether the file could not be parsed or resolved.
+     */
+    private void recordAnalysis(String className, int depth, long parseNanos, long nanos, boolean failed) {
+        if (stats != null) {
+            stats.analyzed(className, depth, parseNanos, nanos, failed);
+        }
+    }
+
+    /**
+     * Makes the session collect timings and counters. Must be called before {@link #run()}.
+     *
+     * @param stats The stats to fill; the caller adds its own phases, such as the setup.
+     */
+    void setStats(SliceStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Sets a token budget for the slice. Must be called before {@link #run()}.
+     *
+     * @param maxTokens The maximum estimated number of tokens of the slice, or 0 for no budget.
+     */
+    public void setMaxTokens(long maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+
+    /**
+     * Limits the depth up to which classes are written with their full source. Classes deeper in the
+     * slice are written as signatures only, see {@link SignatureRenderer}. Must be called before
+     * {@link #writeOutput()}.
+     *
+     * @param fullSourceDepth The maximum depth of classes written in full, or -1 for no limit.
+     */
+    public void setFullSourceDepth(int fullSourceDepth) {
+        this.fullSourceDepth = fullSourceDepth;
+    }
+
+    /**
+     * Sets a token that stops the traversal early, e.g. at a deadline. Must be called before {@link #run()}.
+     *
+     * @param cancellationToken The token.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Makes the budgeted traversal rank candidates by personalized PageRank. Requires a dependency
+     * graph and a token budget. Must be called before {@link #run()}.
+     *
+     * @param rankByPageRank Whether to rank by personalized PageRank.
+     */
+    void setRankByPageRank(boolean rankByPageRank) {
+        this.rankByPageRank = rankByPageRank;
+    }
+
+    /**
+     * Returns the source files of the slice. Only meaningful after {@link #run()}.
+     *
+     * @return The distinct source files of the slice.
+     */
+    Set<Path> getFiles() {
+        return new HashSet<>(finalFileSet.values());
+    }
+
+    /**
+     * Returns the source files whose dependencies the traversal followed, i.e. the files with a class
+     * above the maximum depth. Files at the maximum depth and explicitly included files are part of the
+     * slice, but their dependencies are not. Only meaningful after {@link #run()}.
+     *
+     * @return The distinct source files whose dependencies were followed.
+     */
+    Set<Path> getExpandedFiles() {
+        Set<Path> files = new HashSet<>();
+        finalFileSet.forEach((className, filePath) -> {
+            Integer depth = processedDepths.get(className);
+            if (depth != null && depth < maxDepth) {
+                files.add(filePath);
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Traverses a parsed Java file to find all referenced types and adds them to the work queue.
+     * <p>
+     * This is the core analysis step for a single file. It resolves all type references within the file,
+     * including extended classes, implemented interfaces, field types, and method signatures.
+     * Any new, relevant types are added to the work queue for subsequent processing. Classes at the
+     * maximum depth are only located, since none of their dependencies could be added.
+     * </p>
+     *
+     * @param item The {@link WorkItem} representing the class to analyze.
+     * @throws IOException if the source file cannot be read or parsed.
+     */
+    private void findDependencies(WorkItem item) throws IOException {
+        Path filePath = engine.convertQualifiedNameToPath(item.qualifiedName);
+        if (filePath == null) {
+            System.err.println("  -> Could not find source file for: " + item.qualifiedName);
+            missingClasses++;
+            return;
+        }
+
+        finalFileSet.put(item.qualifiedName, filePath);
+        if (item.depth == maxDepth) {
+            // The dependencies of a frontier class would lie beyond the maximum depth, so its file is not analyzed.
+            frontierClasses++;
+            return;
+        }
+        if (cancellationToken.isCancelled()) {
+            // The dependencies of this class are not needed for a slice that ends at its depth.
+            cutOffAt(item.depth);
+            return;
+        }
+
+        long start = System.nanoTime();
+        long parseStart = DependencyResolver.parseNanos();
+        Set<String> referencedTypes = null;
+        boolean cancelled = false;
+        try {
+            referencedTypes = engine.resolveReferencedTypes(filePath, cancellationToken);
+        } catch (CancellationException e) {
+            cancelled = true;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            resolveNanos += nanos;
+            if (!cancelled) {
+                resolvedFiles++;
+                recordAnalysis(item.qualifiedName, item.depth, DependencyResolver.parseNanos() - parseStart, nanos, referencedTypes == null);
+            }
+        }
+        if (cancelled) {
+            // The token fired in the middle of the file, so its dependencies are incomplete.
+            cutOffAt(item.depth);
+            return;
+        }
+        addDependencies(referencedTypes, item.depth + 1);
+    }
+
+    /**
+     * Processes the work queue level by level, analyzing all classes of one depth concurrently.
+     * <p>
+     * When a level starts, the work queue holds exactly the classes of that depth. They are analyzed
+     * by a pool of worker threads, each using its own {@link DependencyResolver}. Once every class of
+     * the level is done, the results are merged on the calling thread in queue order, which fills the
+     * work queue with the next level. Because a class is always reached first at its minimum depth,
+     * the resulting {@link #finalFileSet} is exactly the same as that of the serial traversal.
+     * </p>
+     * <p>
+     * The worker pool belongs to the engine, so the resolvers of its threads stay warm across slices.
+     * </p>
+     * <p>
+     * When the cancellation token fires, the workers skip the files they have not started yet, and
+     * the calling thread stops waiting for the ones they are still parsing.
+     * </p>
+     */
+    private void traverseInParallel() {
+        while (!workQueue.isEmpty()) {
+            if (cancellationToken.isCancelled()) {
+                cutOffAt(workQueue.peek().depth);
+                return;
+            }
+            List<WorkItem> level = new ArrayList<>();
+            List<Future<AnalysisResult>> results = new ArrayList<>();
+            while (!workQueue.isEmpty()) {
+                WorkItem item = workQueue.poll();
+                if (!startProcessing(item)) continue;
+                level.add(item);
+                if (item.depth == maxDepth) {
+                    // Frontier classes are only located, which is a hash lookup and not worth a task.
+                    Path filePath = engine.convertQualifiedNameToPath(item.qualifiedName);
+                    results.add(CompletableFuture.completedFuture(new AnalysisResult(filePath, Collections.emptySet(), null, 0)));
+                } else {
+                    results.add(workerPool.submit(() -> analyze(item)));
+                }
+            }
+
+            for (int i = 0; i < level.size(); i++) {
+                WorkItem item = level.get(i);
+                AnalysisResult result;
+                try {
+                    result = await(results.get(i));
+                    if (result == null) {
+                        // The classes of this level are all located, but their dependencies are incomplete.
+                        cutOffAt(item.depth);
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    System.err.println("Interrupted while processing: " + item.qualifiedName + ". Stopping analysis.");
+                    return;
+                } catch (ExecutionException e) {
+                    failedFiles++;
+                    System.err.println("Could not resolve or parse: " + item.qualifiedName + ". Skipping. Error: " + e.getCause().getMessage());
+                    continue;
+                }
+
+                if (result.filePath == null) {
+                    System.err.println("  -> Could not find source file for: " + item.qualifiedName);
+                    missingClasses++;
+                    continue;
+                }
+                finalFileSet.put(item.qualifiedName, result.filePath);
+                if (item.depth == maxDepth) {
+                    frontierClasses++;
+                    continue;
+                }
+                resolveNanos += result.nanos;
+                resolvedFiles++;
+                recordAnalysis(item.qualifiedName, item.depth, result.parseNanos, result.nanos, result.error != null);
+                if (result.error != null) {
+                    failedFiles++;
+                    System.err.println("Could not resolve or parse: " + item.qualifiedName + ". Skipping. Error: " + result.error.getMessage());
+                    continue;
+                }
+                addDependencies(result.referencedTypes, item.depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Waits for the analysis of a class on a worker thread, as long as the cancellation token allows.
+     *
+     * @param future The pending analysis.
+     * @return The result, or {@code null} if the token fired before the analysis was done or while
+     *         the worker skipped it.
+     * @throws InterruptedException if the calling thread is interrupted.
+     * @throws ExecutionException   if the analysis failed unexpectedly.
+     */
+    private AnalysisResult await(Future<AnalysisResult> future) throws InterruptedException, ExecutionException {
+        while (true) {
+            try {
+                // Waits in short steps, since the token may also be cancelled from another thread.
+                AnalysisResult result = future.get(50, TimeUnit.MILLISECONDS);
+                return result.skipped ? null : result;
+            } catch (TimeoutException e) {
+                if (cancellationToken.isCancelled()) {
+                    // The worker stops at its next check of the token; parsers must not be interrupted.
+                    future.cancel(false);
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the breadth-first search at a depth whose classes have all been discovered: the
+     * discovered classes up to that depth are located, and nothing deeper is kept. The result is the
+     * slice that a maximum depth of {@code depth} would have produced.
+     *
+     * @param depth The depth that was being processed when the cancellation token fired.
+     */
+    private void cutOffAt(int depth) {
+        finalFileSet.keySet().removeIf(className -> processedDepths.getOrDefault(className, 0) > depth);
+        List<String> remaining = discoveredDepths.entrySet().stream()
+                .filter(entry -> entry.getValue() <= depth && !finalFileSet.containsKey(entry.getKey()))
+                .map(Map.Entry::getKey)
+                .sorted()
+                .collect(Collectors.toList());
+        for (String className : remaining) {
+            processedDepths.put(className, discoveredDepths.get(className));
+            Path filePath = locate(className);
+            if (filePath != null) {
+                finalFileSet.put(className, filePath);
+            }
+        }
+        if (depth >= maxDepth) {
+            // Only frontier classes were left, and they are never analyzed: the slice is complete.
+            return;
+        }
+        cutOff = true;
+        completeDepth = depth;
+        System.out.printf("%nTraversal cut off. The slice is complete up to depth %d (%d classes located without analysis).%n",
+                depth, remaining.size());
+    }
+
+    /**
+     * Traverses the dependencies in order of relevance until the token budget is used up.
+     * <p>
+     * Every discovered class is a candidate in a priority queue. Its relevance is its fan-in (the
+     * number of classes already in the slice that reference it) divided by its distance from the root,
+     * so classes that many parts of the slice depend on come first, and nearby classes win ties. The
+     * most relevant candidate is added if its file still fits into the budget; otherwise it is skipped
+     * and its dependencies are not followed. When a candidate's fan-in or distance improves, it is
+     * queued again with the new relevance and the old entry is ignored when it comes up.
+     * </p>
+     * <p>
+     * When ranking by {@link PageRank}, the relevance of a candidate is instead its personalized
+     * PageRank, seeded at the root and the explicitly included classes, and a report of the ranking
+     * is printed at the end.
+     * </p>
+     * <p>
+     * The size of a file is estimated from its length on disk (see {@link #estimateTokens(Path)}), so
+     * checking the budget never reads a file. The explicitly included classes are charged first. This
+     * traversal is inherently sequential and runs on the calling thread.
+     * </p>
+     */
+    private void traverseWithBudget() {
+        Set<Path> chargedFiles = new HashSet<>();
+        for (String className : explicitlyIncludedClasses) {
+            Path filePath = locate(className);
+            if (filePath != null && chargedFiles.add(filePath)) {
+                usedTokens += estimateTokens(filePath);
+            }
+        }
+
+        PageRank ranking = null;
+        if (rankByPageRank && graph != null) {
+            List<Integer> seeds = new ArrayList<>();
+            for (String seed : concat(rootClassName, explicitlyIncludedClasses)) {
+                int node = graph.find(seed);
+                if (node >= 0) seeds.add(node);
+            }
+            if (!seeds.isEmpty()) {
+                ranking = PageRank.compute(graph, seeds);
+            }
+        }
+
+        Map<String, Integer> fanIns = new HashMap<>();
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        long sequence = 0;
+        int skipped = 0;
+        discoveredDepths.put(rootClassName, 0);
+        candidates.add(new Candidate(rootClassName, 0, 0, Double.POSITIVE_INFINITY, sequence++));
+
+        while (!candidates.isEmpty()) {
+            if (cancellationToken.isCancelled()) {
+                // The most relevant classes come first, so the slice so far is the best one for its size.
+                cutOff = true;
+                System.out.printf("%nTraversal cut off with %d candidates left.%n", candidates.size());
+                break;
+            }
+            Candidate candidate = candidates.poll();
+            String className = candidate.qualifiedName;
+            if (processedDepths.containsKey(className)
+                    || candidate.depth != discoveredDepths.get(className)
+                    || candidate.fanIn != fanIns.getOrDefault(className, 0)) {
+                continue; // Already decided, or queued again with a better relevance.
+            }
+            processedDepths.put(className, candidate.depth);
+
+            Path filePath = locate(className);
+            if (filePath == null) {
+                System.err.println("  -> Could not find source file for: " + className);
+                missingClasses++;
+                continue;
+            }
+            if (!chargedFiles.contains(filePath)) {
+                long tokens = estimateTokens(filePath);
+                // The root is always added, even if it alone exceeds the budget.
+                if (candidate.depth > 0 && usedTokens + tokens > maxTokens) {
+                    System.out.printf("Skipping: %s (Depth: %d, ~%d tokens, over budget)%n", className, candidate.depth, tokens);
+                    skipped++;
+                    continue;
+                }
+                usedTokens += tokens;
+                chargedFiles.add(filePath);
+            }
+
+            System.out.printf("Processing: %s (Depth: %d, Relevance: %.3g)%n", className, candidate.depth, candidate.relevance);
+            finalFileSet.put(className, filePath);
+            if (candidate.depth == maxDepth) {
+                frontierClasses++;
+                continue;
+            }
+
+            Set<String> referencedTypes;
+            long start = System.nanoTime();
+            long parseStart = DependencyResolver.parseNanos();
+            try {
+                referencedTypes = graph != null
+                        ? graph.neighbors(graph.find(className), direction)
+                        : engine.resolveReferencedTypes(filePath, cancellationToken);
+                resolveNanos += System.nanoTime() - start;
+                resolvedFiles++;
+                recordAnalysis(className, candidate.depth, DependencyResolver.parseNanos() - parseStart, System.nanoTime() - start, false);
+            } catch (CancellationException e) {
+                // The class stays in the slice, but its dependencies are not followed; the loop stops next.
+                continue;
+            } catch (Exception e) {
+                failedFiles++;
+                recordAnalysis(className, candidate.depth, DependencyResolver.parseNanos() - parseStart, System.nanoTime() - start, true);
+                System.err.println("Could not resolve or parse: " + className + ". Skipping. Error: " + e.getMessage());
+                continue;
+            }
+            for (String type : referencedTypes) {
+                if (!isRelevantDependency(type) || processedDepths.containsKey(type)) continue;
+                int fanIn = fanIns.merge(type, 1, Integer::sum);
+                int depth = Math.min(discoveredDepths.getOrDefault(type, Integer.MAX_VALUE), candidate.depth + 1);
+                discoveredDepths.put(type, depth);
+                double relevance = (double) fanIn / depth;
+                if (ranking != null) {
+                    int node = graph.find(type);
+                    relevance = node >= 0 ? ranking.score(node) : 0;
+                }
+                candidates.add(new Candidate(type, depth, fanIn, relevance, sequence++));
+            }
+        }
+        System.out.printf("Token budget: ~%d of %d tokens used, %d classes skipped.%n", usedTokens, maxTokens, skipped);
+        if (ranking != null) {
+            printRankingReport(ranking);
+        }
+    }
+
+    /**
+     * Prints the best-ranked classes of a PageRank ranking and whether each made it into the slice.
+     *
+     * @param ranking The ranking.
+     */
+    private void printRankingReport(PageRank ranking) {
+        System.out.println("\nPageRank report:");
+        System.out.printf("  Personalized PageRank over %d classes converged after %d iterations in %d ms.%n",
+                graph.nodeCount(), ranking.getIterations(), ranking.getMillis());
+        int rank = 1;
+        for (int node : ranking.top(REPORT_SIZE)) {
+            String className = graph.name(node);
+            String status = finalFileSet.containsKey(className) ? "in slice"
+                    : processedDepths.containsKey(className) ? "skipped" : "not reached";
+            System.out.printf("  %3d. %-70s %.3e  %s%n", rank++, className, ranking.score(node), status);
+        }
+    }
+
+    /**
+     * Returns a list consisting of one element followed by the elements of another list.
+     *
+     * @param first The first element.
+     * @param rest  The remaining elements.
+     * @return The combined list.
+     */
+    private static List<String> concat(String first, List<String> rest) {
+        List<String> list = new ArrayList<>();
+        list.add(first);
+        list.addAll(rest);
+        return list;
+    }
+
+    /**
+     * Estimates the number of tokens a source file adds to the slice, including its delimiters.
+     * <p>
+     * Source code averages roughly four bytes per token, so the estimate only needs the file length,
+     * which the file system returns without reading the file.
+     * </p>
+     *
+     * @param filePath The source file.
+     * @return The estimated number of tokens.
+     */
+    static long estimateTokens(Path filePath) {
+        long delimiterBytes = 2 * (filePath.toString().length() + 24);
+        try {
+            return (Files.size(filePath) + delimiterBytes) / BYTES_PER_TOKEN;
+        } catch (IOException e) {
+            return delimiterBytes / BYTES_PER_TOKEN;
+        }
+    }
+
+    /**
+     * Answers the traversal from the precomputed dependency graph.
+     * <p>
+     * The graph search follows the same edges as the live traversal, so the resulting
+     * {@link #finalFileSet} is the same as long as the graph is up to date.
+     * </p>
+     */
+    private void traverseGraph() {
+        int root = graph.find(rootClassName);
+        if (root < 0) {
+            System.err.println("  -> Could not find source file for: " + rootClassName);
+            missingClasses++;
+            return;
+        }
+        graph.slice(root, maxDepth, direction, this::isRelevantDependency).forEach((className, depth) -> {
+            processedDepths.put(className, depth);
+            finalFileSet.put(className, locate(className));
+        });
+        System.out.println("Found " + finalFileSet.size() + " classes in the dependency graph.");
+
+        Set<Path> changedFiles = new TreeSet<>();
+        for (String className : finalFileSet.keySet()) {
+            int node = graph.find(className);
+            if (!graph.isUpToDate(node)) {
+                changedFiles.add(graph.path(node));
+            }
+        }
+        if (!changedFiles.isEmpty()) {
+            System.err.println("Warning: " + changedFiles.size() + " files of the slice changed since the dependency graph was built."
+                    + " Their dependencies may be outdated; build the graph again with -index.");
+            changedFiles.forEach(file -> System.err.println("  -> " + file));
+        }
+    }
+
+    /**
+     * Locates the source file of a class, using the dependency graph if there is one.
+     *
+     * @param qualifiedName The fully qualified name of the class.
+     * @return The source file, or {@code null} if the class is unknown.
+     */
+    private Path locate(String qualifiedName) {
+        if (graph == null) {
+            return engine.convertQualifiedNameToPath(qualifiedName);
+        }
+        int node = graph.find(qualifiedName);
+        return node < 0 ? null : graph.path(node);
+    }
+
+    /**
+     * Locates and analyzes the source file of a single class without touching the shared traversal state.
+     * This is the part of {@link #findDependencies(WorkItem)} that worker threads run concurrently.
+     *
+     * @param item The {@link WorkItem} representing the class to analyze.
+     * @return The {@link AnalysisResult} holding the file path and its referenced types or the error.
+     */
+    private AnalysisResult analyze(WorkItem item) {
+        Path filePath = engine.convertQualifiedNameToPath(item.qualifiedName);
+        if (filePath == null) {
+            return new AnalysisResult(null, null, null, 0);
+        }
+        if (cancellationToken.isCancelled()) {
+            return AnalysisResult.skipped(filePath);
+        }
+        long start = System.nanoTime();
+        long parseStart = DependencyResolver.parseNanos();
+        try {
+            Set<String> referencedTypes = engine.resolveReferencedTypes(filePath, cancellationToken);
+            return new AnalysisResult(filePath, referencedTypes, null, System.nanoTime() - start,
+                    DependencyResolver.parseNanos() - parseStart);
+        } catch (CancellationException e) {
+            return AnalysisResult.skipped(filePath);
+        } catch (Exception e) {
+            return new AnalysisResult(filePath, null, e, System.nanoTime() - start, DependencyResolver.parseNanos() - parseStart);
+        }
+    }
+
+    /**
+     * Adds the relevant types referenced by an analyzed class to the work queue.
+     *
+     * @param referencedTypes The fully qualified names of the referenced types.
+     * @param depth           The depth the referenced types are found at.
+     */
+    private void addDependencies(Set<String> referencedTypes, int depth) {
+        for (String type : referencedTypes) {
+            if (isRelevantDependency(type)) {
+                addWork(type, depth);
+            }
+        }
+    }
+
+    /**
+     * Decides whether a referenced type is followed by the traversal.
+     *
+     * @param qualifiedName The fully qualified name of the referenced type.
+     * @return {@code false} for classes in excluded packages (by default the JDK), {@code true} otherwise.
+     */
+    private boolean isRelevantDependency(String qualifiedName) {
+        return !config.isExcludedPackage(qualifiedName);
+    }
+
+    /**
+     * Adds a new work item to the processing queue if it meets the criteria.
+     * <p>
+     * A work item is added only if its depth does not exceed the maximum allowed depth and the class
+     * has not yet been discovered at the same or a shallower depth. All checks are hash lookups, so
+     * the cost of adding work does not grow with the size of the queue. If a class shows up again at
+     * a shallower depth than before, it is queued again with that depth so its own dependencies are
+     * followed as far as the shallower depth allows.
+     * </p>
+     *
+     * @param qualifiedName The fully qualified name of the class to potentially add.
+     * @param depth         The dependency depth of this class relative to the root.
+     */
+    private void addWork(String qualifiedName, int depth) {
+        if (depth > maxDepth) return;
+
+        Integer knownDepth = discoveredDepths.get(qualifiedName);
+        if (knownDepth == null || depth < knownDepth) {
+            discoveredDepths.put(qualifiedName, depth);
+            workQueue.add(new WorkItem(qualifiedName, depth));
+        }
+    }
+
+    /**
+     * Decides whether a work item taken from the queue still needs to be processed and, if so, marks it
+     * as processed at its depth.
+     * <p>
+     * An item is skipped if the class has since been queued again at a shallower depth (the item is
+     * stale) or if it has already been processed at the same or a shallower depth.
+     * </p>
+     *
+     * @param item The {@link WorkItem} taken from the queue.
+     * @return {@code true} if the item must be processed now, {@code false} if it can be skipped.
+     */
+    private boolean startProcessing(WorkItem item) {
+        if (item.depth > maxDepth || item.depth != discoveredDepths.get(item.qualifiedName)) return false;
+
+        Integer processedDepth = processedDepths.get(item.qualifiedName);
+        if (processedDepth != null && processedDepth <= item.depth) return false;
+
+        System.out.printf("Processing: %s (Depth: %d)%n", item.qualifiedName, item.depth);
+        processedDepths.put(item.qualifiedName, item.depth);
+        return true;
+    }
+
+    /**
+     * Gathers the source code from all collected files and writes them to the final output file.
+     * <p>
+     * The files are sorted alphabetically for a consistent and predictable output. Each file's
+     * content is enclosed in a 'START FILE' and 'END FILE' block for easy parsing. The output is
+     * streamed with a {@link SliceWriter}, so the slice is never held in memory as a whole.
+     * The watch mode calls this again when only the content of files in the slice has changed.
+     * </p>
+     * <p>
+     * If a full source depth is set, files whose classes are all deeper than that depth are parsed
+     * again and written as signatures only. A file is written in full if any of its classes is
+     * shallow enough, and explicitly included classes are always written in full.
+     * </p>
+     *
+     * @return The number of source files written.
+     * @throws IOException If an error occurs while writing to the output file.
+     */
+    int writeOutput() throws IOException {
+        // Nested classes map to the same file as their enclosing class, so each file is written only once.
+        List<Path> sortedFiles = finalFileSet.values().stream().distinct().sorted().collect(Collectors.toList());
+        Map<Path, Integer> fileDepths = new HashMap<>();
+        finalFileSet.forEach((className, filePath) ->
+                fileDepths.merge(filePath, processedDepths.getOrDefault(className, 0), Math::min));
+        SignatureRenderer renderer = null;
+        signatureFiles = 0;
+
+        try (SliceWriter writer = new SliceWriter(outputPath)) {
+            List<String> settings = new ArrayList<>();
+            if (maxDepth != Integer.MAX_VALUE) {
+                settings.add("Depth: " + maxDepth);
+            }
+            if (direction != DependencyGraph.Direction.FORWARD) {
+                settings.add("Direction: " + direction.name().toLowerCase(Locale.ROOT));
+            }
+            if (maxTokens > 0) {
+                settings.add("Max tokens: " + maxTokens);
+            }
+            if (fullSourceDepth >= 0) {
+                settings.add("Full source up to depth: " + fullSourceDepth);
+            }
+            if (cutOff) {
+                settings.add(completeDepth >= 0 ? "Cut off, complete up to depth: " + completeDepth : "Cut off");
+            }
+            writer.write(String.format("### Codebase Slice starting from root: %s (%s) ###%n%n", rootClassName, String.join(", ", settings)));
+
+            for (Path filePath : sortedFiles) {
+                String relativePath = filePath.toString(); // Fallback to absolute path
+                for (Path sourceRoot : sourcePaths) {
+                    if (filePath.toAbsolutePath().startsWith(sourceRoot.toAbsolutePath())) {
+                        relativePath = sourceRoot.toAbsolutePath().relativize(filePath.toAbsolutePath()).toString().replace('\\', '/');
+                        break;
+                    }
+                }
+                if (fullSourceDepth >= 0 && fileDepths.get(filePath) > fullSourceDepth) {
+                    if (renderer == null) {
+                        renderer = new SignatureRenderer(config.getLanguageLevel());
+                    }
+                    try {
+                        writer.writeContent(relativePath, renderer.render(filePath));
+                        signatureFiles++;
+                        continue;
+                    } catch (IOException e) {
+                        System.err.println("Could not reduce " + relativePath + " to signatures. Writing full source. Error: " + e.getMessage());
+                    }
+                }
+                writer.writeFile(relativePath, filePath);
+            }
+            bytesWritten = writer.getBytesWritten();
+        }
+        if (fullSourceDepth >= 0) {
+            System.out.printf("Wrote %d files, %d of them as signatures only.%n", sortedFiles.size(), signatureFiles);
+        }
+        writtenFiles = sortedFiles;
+        return sortedFiles.size();
+    }
+
+    /**
+     * A simple data structure to hold information about a class to be processed.
+     * <p>
+     * This is used by the breadth-first search queue to track not only the class to process
+     * but also its depth in the dependency graph relative to the root class.
+     * </p>
+     */
+    static class WorkItem {
+        /** The fully qualified name of the class. */
+        String qualifiedName;
+        /** The dependency depth of this class. The root is at depth 0. */
+        int depth;
+
+        /**
+         * Constructs a new WorkItem.
+         *
+         * @param qualifiedName The fully qualified name of the class.
+         * @param depth The dependency depth of the class.
+         */
+        WorkItem(String qualifiedName, int depth) {
+            this.qualifiedName = qualifiedName;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * The outcome of analyzing a single class on a worker thread during the parallel traversal.
+     */
+    static class AnalysisResult {
+        /** The source file of the class, or {@code null} if it could not be found. */
+        final Path filePath;
+        /** The referenced types of the file, or {@code null} if the analysis failed. */
+        final Set<String> referencedTypes;
+        /** The error that occurred while parsing or resolving, or {@code null} on success. */
+        final Exception error;
+        /** The time the analysis took on the worker thread, in nanoseconds. */
+        final long nanos;
+        /** The part of {@link #nanos} spent parsing the file, in nanoseconds. */
+        final long parseNanos;
+        /** Whether the analysis was skipped because the cancellation token had fired. */
+        final boolean skipped;
+
+        /**
+         * Constructs a new AnalysisResult.
+         *
+         * @param filePath        The source file of the class.
+         * @param referencedTypes The referenced types of the file.
+         * @param error           The error that occurred, if any.
+         * @param nanos           The time the analysis took, in nanoseconds.
+         */
+        AnalysisResult(Path filePath, Set<String> referencedTypes, Exception error, long nanos) {
+            this(filePath, referencedTypes, error, nanos, 0, false);
+        }
+
+        /**
+         * Constructs a new AnalysisResult with the time spent parsing.
+         *
+         * @param filePath        The source file of the class.
+         * @param referencedTypes The referenced types of the file.
+         * @param error           The error that occurred, if any.
+         * @param nanos           The time the analysis took, in nanoseconds.
+         * @param parseNanos      The part of the time spent parsing the file, in nanoseconds.
+         */
+        AnalysisResult(Path filePath, Set<String> referencedTypes, Exception error, long nanos, long parseNanos) {
+            this(filePath, referencedTypes, error, nanos, parseNanos, false);
+        }
+
+        /**
+         * Constructs a new AnalysisResult.
+         *
+         * @param filePath        The source file of the class.
+         * @param referencedTypes The referenced types of the file.
+         * @param error           The error that occurred, if any.
+         * @param nanos           The time the analysis took, in nanoseconds.
+         * @param parseNanos      The part of the time spent parsing the file, in nanoseconds.
+         * @param skipped         Whether the analysis was skipped.
+         */
+        private AnalysisResult(Path filePath, Set<String> referencedTypes, Exception error, long nanos, long parseNanos,
+                               boolean skipped) {
+            this.filePath = filePath;
+            this.referencedTypes = referencedTypes;
+            this.error = error;
+            this.nanos = nanos;
+            this.parseNanos = parseNanos;
+            this.skipped = skipped;
+        }
+
+        /**
+         * Creates the result of an analysis that was skipped because the cancellation token had fired.
+         *
+         * @param filePath The source file of the class.
+         * @return The result.
+         */
+        static AnalysisResult skipped(Path filePath) {
+            return new AnalysisResult(filePath, null, null, 0, 0, true);
+        }
+    }
+
+    /**
+     * A class waiting in the priority queue of the budgeted traversal.
+     * <p>
+     * Candidates are ordered by descending relevance, then by ascending depth, then by discovery
+     * order, so that the traversal is deterministic.
+     * </p>
+     */
+    static class Candidate implements Comparable<Candidate> {
+        /** The fully qualified name of the class. */
+        final String qualifiedName;
+        /** The distance of the class from the root. */
+        final int depth;
+        /** The number of classes in the slice that reference this class. */
+        final int fanIn;
+        /** The relevance of the class; higher comes first. */
+        final double relevance;
+        /** The position in discovery order. */
+        final long sequence;
+
+        /**
+         * Constructs a new Candidate.
+         *
+         * @param qualifiedName The fully qualified name of the class.
+         * @param depth         The distance of the class from the root.
+         * @param fanIn         The number of classes in the slice that reference this class.
+         * @param relevance     The relevance of the class.
+         * @param sequence      The position in discovery order.
+         */
+        Candidate(String qualifiedName, int depth, int fanIn, double relevance, long sequence) {
+            this.qualifiedName = qualifiedName;
+            this.depth = depth;
+            this.fanIn = fanIn;
+            this.relevance = relevance;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int cmp = Double.compare(other.relevance, relevance);
+            if (cmp == 0) cmp = Integer.compare(depth, other.depth);
+            if (cmp == 0) cmp = Long.compare(sequence, other.sequence);
+            return cmp;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package de.mkoehler.codebaseslicer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Collects the timings and counters of one slice and writes them as JSON, for {@code -stats <file>}.
+ * <p>
+ * The report is meant for trend dashboards, so its layout is stable and all values are plain numbers:
+ * durations in milliseconds with three decimals, counts as integers, rates between 0 and 1. It covers
+ * the wall time of each phase, the number of classes in the slice at every depth, the parse and
+ * resolve time of every analyzed class, failures, cache hit rates and the size of the output.
+ * </p>
+ * <p>
+ * The cache and resolver counters are kept per process (see {@link ParsedFileCache#totals()}), so they
+ * are exact for a single slice from the command line, but include the work of other sessions when
+ * several run concurrently. The JSON is written by hand, since the slicer has no JSON library.
+ * </p>
+ */
+class SliceStats {
+
+    /** The wall time of each phase in nanoseconds, in the order the phases ran. */
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    /** The counters of each group, e.g. {@code "parseCache" -> {"hits" -> 12}}, in the order they were added. */
+    private final Map<String, Map<String, Long>> counters = new LinkedHashMap<>();
+    /** The analyzed classes, in the order they were analyzed. */
+    private final List<Analysis> analyses = new ArrayList<>();
+
+    /** The fully qualified name of the root class. */
+    String rootClassName;
+    /** The dependency extraction mode, see {@link DependencyExtractor#MODES}, or {@code "graph"}. */
+    String mode;
+    /** The number of worker threads. */
+    int threads;
+    /** The number of classes in the slice at each depth. Explicitly included classes have no depth. */
+    SortedMap<Integer, Integer> classesByDepth = new TreeMap<>();
+    /** The number of explicitly included classes that were not reached by the traversal. */
+    int includedClasses;
+    /** Whether the traversal was cut off, see {@link CancellationToken}. */
+    boolean cutOff;
+
+    /**
+     * Records the wall time of a phase. A phase that is recorded twice adds up.
+     *
+     * @param name  The name of the phase, e.g. {@code "traversal"}.
+     * @param nanos The duration in nanoseconds.
+     */
+    void phase(String name, long nanos) {
+        phases.merge(name, nanos, Long::sum);
+    }
+
+    /**
+     * Records a counter.
+     *
+     * @param group The group of the counter, e.g. {@code "parseCache"}.
+     * @param name  The name of the counter, e.g. {@code "hits"}.
+     * @param value The value.
+     */
+    void count(String group, String name, long value) {
+        counters.computeIfAbsent(group, key -> new LinkedHashMap<>()).put(name, value);
+    }
+
+    /**
+     * Records the analysis of a class. Only called by the thread that merges the traversal results.
+     *
+     * @param className  The fully qualified name of the class.
+     * @param depth      The depth of the class.
+     * @param parseNanos The time spent parsing the file of the class, in nanoseconds.
+     * @param nanos      The total time of the analysis, including parsing, in nanoseconds.
+     * @param failed     Whether the file could not be parsed or resolved.
+     */
+    void analyzed(String className, int depth, long parseNanos, long nanos, boolean failed) {
+        analyses.add(new Analysis(className, depth, parseNanos, nanos, failed));
+    }
+
+    /**
+     * Writes the report to a file.
+     *
+     * @param path The file.
+     * @throws IOException if the file cannot be written.
+     */
+    void write(Path path) throws IOException {
+        Files.write(path, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the report as a JSON object.
+     *
+     * @return The JSON text, ending with a line break.
+     */
+    String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"root\": ").append(quote(rootClassName)).append(",\n");
+        json.append("  \"mode\": ").append(quote(mode)).append(",\n");
+        json.append("  \"threads\": ").append(threads).append(",\n");
+        json.append("  \"cutOff\": ").append(cutOff).append(",\n");
+
+        json.append("  \"phases\": {");
+        long total = 0;
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            json.append("\n    ").append(quote(phase.getKey() + "Millis")).append(": ").append(millis(phase.getValue())).append(',');
+            total += phase.getValue();
+        }
+        json.append("\n    \"totalMillis\": ").append(millis(total)).append("\n  },\n");
+
+        json.append("  \"depths\": [");
+        String separator = "";
+        for (Map.Entry<Integer, Integer> depth : classesByDepth.entrySet()) {
+            json.append(separator).append("\n    {\"depth\": ").append(depth.getKey()).append(", \"classes\": ").append(depth.getValue()).append('}');
+            separator = ",";
+        }
+        json.append(classesByDepth.isEmpty() ? "],\n" : "\n  ],\n");
+        json.append("  \"includedClasses\": ").append(includedClasses).append(",\n");
+
+        for (Map.Entry<String, Map<String, Long>> group : counters.entrySet()) {
+            json.append("  ").append(quote(group.getKey())).append(": {");
+            separator = "";
+            for (Map.Entry<String, Long> counter : group.getValue().entrySet()) {
+                json.append(separator).append("\n    ").append(quote(counter.getKey())).append(": ").append(counter.getValue());
+                separator = ",";
+            }
+            Long hits = group.getValue().get("hits");
+            Long misses = group.getValue().get("misses");
+            if (hits != null && misses != null) {
+                json.append(",\n    \"hitRate\": ").append(rate(hits, hits + misses));
+            }
+            json.append("\n  },\n");
+        }
+
+        json.append("  \"analyses\": [");
+        separator = "";
+        for (Analysis analysis : analyses) {
+            json.append(separator).append("\n    {\"class\": ").append(quote(analysis.className))
+                    .append(", \"depth\": ").append(analysis.depth)
+                    .append(", \"parseMillis\": ").append(millis(analysis.parseNanos))
+                    .append(", \"resolveMillis\": ").append(millis(analysis.nanos - analysis.parseNanos))
+                    .append(", \"failed\": ").append(analysis.failed).append('}');
+            separator = ",";
+        }
+        json.append(analyses.isEmpty() ? "]\n" : "\n  ]\n");
+        return json.append("}\n").toString();
+    }
+
+    /**
+     * Formats a duration in milliseconds with three decimals, independent of the default locale.
+     *
+     * @param nanos The duration in nanoseconds.
+     * @return The formatted number.
+     */
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /**
+     * Formats a ratio with four decimals. A ratio of nothing is 0.
+     *
+     * @param part  The numerator.
+     * @param whole The denominator.
+     * @return The formatted number.
+     */
+    private static String rate(long part, long whole) {
+        return String.format(Locale.ROOT, "%.4f", whole == 0 ? 0.0 : (double) part / whole);
+    }
+
+    /**
+     * Quotes a string as a JSON string literal.
+     *
+     * @param value The string, or {@code null}.
+     * @return The literal, or {@code null} as a JSON null.
+     */
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * The parse and resolve time of one analyzed class.
+     */
+    private static class Analysis {
+        /** The fully qualified name of the class. */
+        final String className;
+        /** The depth of the class. */
+        final int depth;
+        /** The time spent parsing the file of the class, in nanoseconds. */
+        final long parseNanos;
+        /** The total time of the analysis, in nanoseconds. */
+        final long nanos;
+        /** Whether the file could not be parsed or resolved. */
+        final boolean failed;
+
+        /**
+         * Constructs a new Analysis.
+         *
+         * @param className  The fully qualified name of the class.
+         * @param depth      The depth of the class.
+         * @param parseNanos The time spent parsing the file of the class, in nanoseconds.
+         * @param nanos      The total time of the analysis, in nanoseconds.
+         * @param failed     Whether the file could not be parsed or resolved.
+         */
+        Analysis(String className, int depth, long parseNanos, long nanos, boolean failed) {
+            this.className = className;
+            this.depth = depth;
+            this.parseNanos = parseNanos;
+            this.nanos = nanos;
+            this.failed = failed;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package de.mkoehler.codebaseslicer;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Keeps one or more slices up to date while the source files change.
+ * <p>
+ * After creating the slices once, the watcher registers every directory below the source roots with
+ * a {@link WatchService}. Events are collected until the file system has been quiet for a short
+ * moment, so that saving several files at once triggers a single update. Then:
+ * </p>
+ * <ul>
+ *   <li>Every modified source file whose dependencies some slice follows is analyzed again, and its new
+ *       dependencies are compared with the ones recorded in the {@link DependencyCache}. No other file
+ *       is parsed. Files at the maximum depth of every slice containing them are not analyzed at all,
+ *       since their dependencies cannot change any slice.</li>
+ *   <li>A slice that follows the dependencies of a modified file whose dependencies changed is
+ *       traversed again from its root. The traversal is not patched in place, but all unchanged files
+ *       are answered from the cache, so only the changed file is resolved again.</li>
+ *   <li>A slice whose files only changed in content is written again without any traversal.</li>
+ *   <li>Slices that contain none of the modified files are left untouched.</li>
+ * </ul>
+ * <p>
+ * When source files are created or deleted, the source index is rebuilt and all slices are traversed
+ * again, since a new file can satisfy a reference anywhere in the slice.
+ * </p>
+ */
+class SliceWatcher {
+
+    /** How long the file system must be quiet before an update is run. */
+    private static final long QUIET_PERIOD_MILLIS = 300;
+
+    /** The engine whose source directories are watched. */
+    private final SlicerEngine engine;
+    /** The slices to keep up to date. */
+    private final List<BatchRunner.Entry> entries;
+    /** The shared dependency cache holding the last known dependencies of every analyzed file. */
+    private final DependencyCache dependencyCache;
+    /** The most recent session of each slice, in entry order. */
+    private final List<SliceSession> sessions = new ArrayList<>();
+    /** The source files of each slice, as absolute, normalized paths, in entry order. */
+    private final List<Set<Path>> sliceFiles = new ArrayList<>();
+    /** The source files whose dependencies each slice followed, see {@link SliceSession#getExpandedFiles()}. */
+    private final List<Set<Path>> expandedFiles = new ArrayList<>();
+
+    /**
+     * Constructs a new SliceWatcher.
+     *
+     * @param engine  The engine whose source directories are watched. Must have a dependency cache.
+     * @param entries The slices to keep up to date.
+     */
+    SliceWatcher(SlicerEngine engine, List<BatchRunner.Entry> entries) {
+        this.engine = engine;
+        this.entries = entries;
+        this.dependencyCache = engine.getDependencyCache();
+    }
+
+    /**
+     * Creates all slices, then watches the source roots and updates the slices until the process is stopped.
+     *
+     * @throws IOException if the source roots cannot be watched or a slice cannot be written.
+     */
+    void run() throws IOException {
+        for (int i = 0; i < entries.size(); i++) {
+            sessions.add(null);
+            sliceFiles.add(Collections.emptySet());
+            expandedFiles.add(Collections.emptySet());
+            traverse(i);
+        }
+        engine.saveCache();
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+            for (Path sourcePath : engine.getConfig().getSourcePaths()) {
+                if (Files.isDirectory(sourcePath)) {
+                    registerRecursively(sourcePath, watchService, watchedDirectories);
+                }
+            }
+            System.out.println("\nWatching " + watchedDirectories.size() + " directories for changes. Press Ctrl+C to stop.");
+
+            while (true) {
+                WatchKey key = watchService.take();
+                Set<Path> modified = new LinkedHashSet<>();
+                Set<Path> createdOrDeleted = new LinkedHashSet<>();
+                boolean structural = false;
+                // Collect events until the file system has been quiet for a moment.
+                while (key != null) {
+                    Path directory = watchedDirectories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW || directory == null) {
+                            structural = true;
+                            continue;
+                        }
+                        Path path = directory.resolve((Path) event.context());
+                        if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                            registerRecursively(path, watchService, watchedDirectories);
+                            structural = true;
+                        } else if (path.toString().endsWith(".java")) {
+                            (event.kind() == ENTRY_MODIFY ? modified : createdOrDeleted).add(path);
+                        }
+                    }
+                    if (!key.reset()) {
+                        watchedDirectories.remove(key);
+                    }
+                    key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                // Editors often save by replacing the file. A known file that still exists was only modified.
+                for (Path path : createdOrDeleted) {
+                    if (engine.isIndexedFile(path) && Files.isRegularFile(path)) {
+                        modified.add(path);
+                    } else {
+                        structural = true;
+                    }
+                }
+                update(modified, structural);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Brings the slices up to date after a set of changes.
+     *
+     * @param modified   The source files whose content was modified.
+     * @param structural Whether source files or directories were created or deleted.
+     * @throws IOException if a slice cannot be written.
+     */
+    private void update(Set<Path> modified, boolean structural) throws IOException {
+        long start = System.nanoTime();
+        if (structural) {
+            System.out.println("\nSource files were added or removed. Rebuilding the index and all slices...");
+            engine.reload();
+            for (int i = 0; i < entries.size(); i++) {
+                traverse(i);
+            }
+        } else {
+            // The type solvers may still hold the old versions of the modified files.
+            engine.resetResolvers();
+
+            Set<Path> expanded = new HashSet<>();
+            expandedFiles.forEach(expanded::addAll);
+            Set<Path> changedContent = new HashSet<>();
+            Set<Path> changedDependencies = new HashSet<>();
+            for (Path file : modified) {
+                if (!Files.isRegularFile(file)) continue;
+                Path normalized = normalize(file);
+                changedContent.add(normalized);
+                if (!expanded.contains(normalized)) {
+                    // Only at the maximum depth or explicitly included, so no slice follows its dependencies.
+                    continue;
+                }
+                Set<String> before = dependencyCache.lastKnown(file);
+                Set<String> after;
+                try {
+                    after = engine.resolveReferencedTypes(file);
+                } catch (Exception e) {
+                    System.err.println("Could not resolve or parse: " + file + ". Error: " + e.getMessage());
+                    after = null;
+                }
+                // Without a recorded entry the old dependencies are unknown, so they count as changed.
+                if (before == null || !before.equals(after)) {
+                    changedDependencies.add(normalized);
+                }
+            }
+
+            for (int i = 0; i < entries.size(); i++) {
+                Set<Path> files = sliceFiles.get(i);
+                if (!Collections.disjoint(expandedFiles.get(i), changedDependencies)) {
+                    System.out.println("\nDependencies changed in slice of " + entries.get(i).root + ". Updating...");
+                    traverse(i);
+                } else if (!Collections.disjoint(files, changedContent)) {
+                    sessions.get(i).writeOutput();
+                    System.out.println("Rewrote slice of " + entries.get(i).root + " to " + entries.get(i).output);
+                }
+            }
+        }
+        engine.saveCache();
+        System.out.printf("Update finished in %d ms.%n", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Creates a slice from scratch and records its files.
+     *
+     * @param index The index of the slice's entry.
+     * @throws IOException if the slice cannot be written.
+     */
+    private void traverse(int index) throws IOException {
+        BatchRunner.Entry entry = entries.get(index);
+        SliceSession session = engine.newSession(entry.root, entry.depth, entry.includes, entry.output);
+        session.run();
+        Set<Path> files = new HashSet<>();
+        for (Path file : session.getFiles()) {
+            files.add(normalize(file));
+        }
+        Set<Path> expanded = new HashSet<>();
+        for (Path file : session.getExpandedFiles()) {
+            expanded.add(normalize(file));
+        }
+        sessions.set(index, session);
+        sliceFiles.set(index, files);
+        expandedFiles.set(index, expanded);
+        System.out.println("Slice of " + entry.root + " with " + files.size() + " files saved to " + entry.output);
+    }
+
+    /**
+     * Registers a directory and all its subdirectories with the watch service.
+     *
+     * @param directory          The directory to register.
+     * @param watchService       The watch service.
+     * @param watchedDirectories The registered directories, by watch key.
+     * @throws IOException if a directory cannot be registered.
+     */
+    private static void registerRecursively(Path directory, WatchService watchService, Map<WatchKey, Path> watchedDirectories) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path dir : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                watchedDirectories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+            }
+        }
+    }
+
+    /**
+     * Returns the absolute, normalized form of a path, so that paths from the index and from watch
+     * events can be compared.
+     *
+     * @param path The path.
+     * @return The absolute, normalized path.
+     */
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
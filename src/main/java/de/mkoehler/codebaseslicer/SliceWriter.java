@@ -0,0 +1,102 @@
+package de.mkoehler.codebaseslicer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams a slice directly to the output file.
+ * <p>
+ * Delimiters are encoded and written as they are produced, and the content of each source file is
+ * copied with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, which
+ * lets the operating system move the bytes without copying them through the Java heap. Memory use is
+ * therefore independent of the size of the slice, and output reaches the disk while the slice is
+ * still being written.
+ * </p>
+ */
+class SliceWriter implements Closeable {
+
+    /** The channel of the output file. */
+    private final FileChannel out;
+    /** The number of bytes written so far. */
+    private long bytesWritten;
+
+    /**
+     * Opens the output file for writing, replacing any existing content.
+     *
+     * @param outputPath The output file.
+     * @throws IOException if the file cannot be opened.
+     */
+    SliceWriter(Path outputPath) throws IOException {
+        this.out = FileChannel.open(outputPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Writes a piece of text, encoded as UTF-8.
+     *
+     * @param text The text to write.
+     * @throws IOException if writing fails.
+     */
+    void write(String text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            bytesWritten += out.write(buffer);
+        }
+    }
+
+    /**
+     * Writes a source file enclosed in 'START FILE' and 'END FILE' delimiters. The file content is
+     * copied unchanged.
+     *
+     * @param relativePath The path shown in the delimiters.
+     * @param filePath     The source file to copy.
+     * @throws IOException if the source file cannot be read or writing fails.
+     */
+    void writeFile(String relativePath, Path filePath) throws IOException {
+        write("--- START FILE: " + relativePath + " ---\n");
+        try (FileChannel in = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            bytesWritten += size;
+        }
+        write("\n--- END FILE: " + relativePath + " ---\n\n");
+    }
+
+    /**
+     * Writes generated content enclosed in the same delimiters as {@link #writeFile(String, Path)}.
+     *
+     * @param relativePath The path shown in the delimiters.
+     * @param content      The content to write.
+     * @throws IOException if writing fails.
+     */
+    void writeContent(String relativePath, String content) throws IOException {
+        write("--- START FILE: " + relativePath + " ---\n" + content + "\n--- END FILE: " + relativePath + " ---\n\n");
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     *
+     * @return The number of bytes written.
+     */
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Closes the output file.
+     *
+     * @throws IOException if closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
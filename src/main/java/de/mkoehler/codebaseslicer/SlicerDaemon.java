@@ -0,0 +1,321 @@
+package de.mkoehler.codebaseslicer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * A long-running slicer process that answers slice requests over loopback HTTP.
+ * <p>
+ * The daemon is started with {@code -daemon <port>} and keeps everything that is expensive to set up
+ * in memory between requests: the source index, the type solvers of the worker threads (including
+ * the JDK reflection solver) and the resolved dependencies of every file analyzed so far. A request
+ * for an unchanged part of the codebase is therefore answered without parsing anything. Requests are
+ * handled concurrently by as many threads as the engine has ({@code -threads}), so a slow slice does
+ * not hold up the others; each handler thread keeps its own resolver warm.
+ * </p>
+ * <p>
+ * The server only binds to the loopback interface. It understands the following requests:
+ * </p>
+ * <ul>
+ *   <li>{@code POST /slice?root=<class>&depth=<n>&output=<file>[&include=<class1,class2,...>][&max-tokens=<n>][&full-depth=<n>][&timeout=<ms>]}
+ *       creates a slice, taking the same parameters as the command line. {@code depth} may be omitted
+ *       when {@code max-tokens} is given. With {@code timeout}, the slice found when the timeout
+ *       passes is written, and the response says up to which depth it is complete. The output path
+ *       is resolved against the output directory ({@code -output-dir}, by default the daemon's working
+ *       directory) and must not lead out of it.</li>
+ *   <li>{@code POST /reload} rebuilds the source index and the type solvers after files were added,
+ *       removed or changed in a way that affects other files.</li>
+ *   <li>{@code POST /shutdown} stops the daemon.</li>
+ * </ul>
+ * <p>
+ * Binding to loopback does not keep out web pages that the developer visits: a browser can send
+ * requests to {@code localhost}, and through DNS rebinding a page on another domain can even read the
+ * responses. Therefore every request has to be a POST, the {@code Host} header must name the loopback
+ * interface, and requests that carry an {@code Origin} header, which browsers add to cross-origin
+ * POSTs, are rejected. Since a slice writes a file, its output is confined to the output directory.
+ * </p>
+ *
+ * <h3>Example:</h3>
+ * <pre>{@code
+ * curl -X POST "http://localhost:8765/slice?root=com.myproject.services.OrderService&depth=2&output=order_slice.txt"
+ * }</pre>
+ */
+class SlicerDaemon {
+
+    /** The engine shared by all requests. */
+    private final SlicerEngine engine;
+    /** The port to listen on, or 0 for any free port. */
+    private final int port;
+    /** The directory that all output paths are resolved against, absolute and normalized. */
+    private final Path outputDirectory;
+    /** Released when a shutdown is requested. */
+    private final CountDownLatch shutdown = new CountDownLatch(1);
+    /** The running server, or {@code null} before {@link #start()}. */
+    private HttpServer server;
+    /** The threads that handle the requests, or {@code null} before {@link #start()}. */
+    private ExecutorService handlerThreads;
+
+    /**
+     * Constructs a new SlicerDaemon.
+     *
+     * @param engine          The engine shared by all requests.
+     * @param port            The loopback port to listen on, or 0 for any free port.
+     * @param outputDirectory The directory that output paths are resolved against and confined to.
+     */
+    SlicerDaemon(SlicerEngine engine, int port, Path outputDirectory) {
+        this.engine = engine;
+        this.port = port;
+        this.outputDirectory = outputDirectory.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Starts the server and blocks until a shutdown is requested.
+     *
+     * @throws IOException if the server cannot be started.
+     */
+    void run() throws IOException {
+        start();
+        try {
+            shutdown.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stop();
+    }
+
+    /**
+     * Starts the server without blocking.
+     *
+     * @return The port the server listens on.
+     * @throws IOException if the server cannot be started.
+     */
+    int start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/slice", exchange -> handle(exchange, this::handleSlice));
+        server.createContext("/reload", exchange -> handle(exchange, this::handleReload));
+        server.createContext("/shutdown", exchange -> handle(exchange, this::handleShutdown));
+        handlerThreads = Executors.newFixedThreadPool(engine.getConfig().threads);
+        server.setExecutor(handlerThreads);
+        server.start();
+        System.out.println("\nSlicer daemon listening on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+                + ", writing slices to " + outputDirectory);
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server.
+     */
+    void stop() {
+        server.stop(0);
+        handlerThreads.shutdown();
+        System.out.println("Slicer daemon stopped.");
+    }
+
+    /**
+     * Rejects requests that may come from a browser, and passes all others to their handler.
+     *
+     * @param exchange The HTTP exchange.
+     * @param handler  The handler of the request.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "Use POST.");
+            return;
+        }
+        if (!isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+            // A request for another host name reached the loopback interface, e.g. through DNS rebinding.
+            respond(exchange, 403, "Invalid Host header.");
+            return;
+        }
+        if (exchange.getRequestHeaders().containsKey("Origin")) {
+            respond(exchange, 403, "Requests from web pages are not accepted.");
+            return;
+        }
+        handler.handle(exchange);
+    }
+
+    /**
+     * Checks whether a {@code Host} header names the loopback interface and the port of this daemon.
+     *
+     * @param host The value of the header, or {@code null}.
+     * @return {@code true} for {@code localhost}, {@code 127.0.0.1} or {@code [::1]} with the daemon's port.
+     */
+    private boolean isLoopbackHost(String host) {
+        if (host == null) return false;
+        String suffix = ":" + server.getAddress().getPort();
+        String name = host.endsWith(suffix) ? host.substring(0, host.length() - suffix.length()) : host;
+        return "localhost".equalsIgnoreCase(name) || "127.0.0.1".equals(name) || "[::1]".equals(name);
+    }
+
+    /**
+     * Resolves a requested output path against the output directory.
+     *
+     * @param output The requested path.
+     * @return The resolved path, or {@code null} if it leads out of the output directory.
+     * @throws IOException if the real path of an existing parent directory cannot be determined.
+     */
+    private Path resolveOutput(String output) throws IOException {
+        Path resolved;
+        try {
+            resolved = outputDirectory.resolve(output).normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        if (!resolved.startsWith(outputDirectory) || resolved.equals(outputDirectory)) {
+            return null;
+        }
+        // A symbolic link inside the output directory must not lead out of it either.
+        Path parent = resolved.getParent();
+        if (Files.exists(parent) && !parent.toRealPath().startsWith(outputDirectory.toRealPath())) {
+            return null;
+        }
+        return resolved;
+    }
+
+    /**
+     * Handles a {@code /slice} request.
+     *
+     * @param exchange The HTTP exchange.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void handleSlice(HttpExchange exchange) throws IOException {
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        String root = params.get("root");
+        String depth = params.get("depth");
+        String output = params.get("output");
+        String maxTokens = params.get("max-tokens");
+        String fullDepth = params.get("full-depth");
+        String timeout = params.get("timeout");
+        if (root == null || (depth == null && maxTokens == null) || output == null) {
+            respond(exchange, 400, "Missing parameter. Required: root, depth, output. Optional: include, max-tokens, full-depth, timeout.");
+            return;
+        }
+
+        List<String> includes = Collections.emptyList();
+        String include = params.get("include");
+        if (include != null && !include.trim().isEmpty()) {
+            includes = Arrays.stream(include.split(",")).map(String::trim).collect(Collectors.toList());
+        }
+
+        Path outputPath = resolveOutput(output);
+        if (outputPath == null) {
+            respond(exchange, 400, "The output path must lie inside " + outputDirectory + ".");
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            long timeoutMillis = timeout != null ? Long.parseLong(timeout) : 0;
+            if (timeout != null && timeoutMillis <= 0) {
+                respond(exchange, 400, "The timeout must be a positive number of milliseconds.");
+                return;
+            }
+            // The deadline counts from the arrival of the request, not from the end of a preceding slice.
+            CancellationToken token = timeout != null ? CancellationToken.withTimeout(timeoutMillis) : CancellationToken.NONE;
+            SliceResult result = engine.slice(root, depth != null ? Integer.parseInt(depth) : Integer.MAX_VALUE, includes,
+                    outputPath, maxTokens != null ? Long.parseLong(maxTokens) : 0,
+                    fullDepth != null ? Integer.parseInt(fullDepth) : -1, token);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            String cutOff = !result.isCutOff() ? ""
+                    : result.getCompleteDepth() >= 0 ? " Cut off at the timeout, complete up to depth " + result.getCompleteDepth() + "."
+                    : " Cut off at the timeout.";
+            respond(exchange, 200, "Slice of " + root + " with " + result.getFiles().size() + " files saved to " + outputPath
+                    + " in " + millis + " ms." + cutOff);
+        } catch (NumberFormatException e) {
+            respond(exchange, 400, "Invalid number in depth, max-tokens, full-depth or timeout.");
+        } catch (Exception e) {
+            respond(exchange, 500, "Could not create slice of " + root + ". Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles a {@code /reload} request.
+     *
+     * @param exchange The HTTP exchange.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void handleReload(HttpExchange exchange) throws IOException {
+        try {
+            engine.reload();
+        } catch (Exception e) {
+            respond(exchange, 500, "Could not reload. Error: " + e.getMessage());
+            return;
+        }
+        respond(exchange, 200, "Source index and type solvers reloaded.");
+    }
+
+    /**
+     * Handles a {@code /shutdown} request.
+     *
+     * @param exchange The HTTP exchange.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void handleShutdown(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "Shutting down.");
+        shutdown.countDown();
+    }
+
+    /**
+     * Handles one kind of request after the checks of {@link #handle(HttpExchange, Handler)}.
+     */
+    private interface Handler {
+        /**
+         * Handles the request.
+         *
+         * @param exchange The HTTP exchange.
+         * @throws IOException if the response cannot be sent.
+         */
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * Sends a plain-text response and closes the exchange.
+     *
+     * @param exchange The HTTP exchange.
+     * @param status   The HTTP status code.
+     * @param message  The response body.
+     * @throws IOException if the response cannot be sent.
+     */
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Parses a raw URL query string into a map of decoded parameters.
+     *
+     * @param rawQuery The raw query, or {@code null}.
+     * @return The decoded parameters.
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+}
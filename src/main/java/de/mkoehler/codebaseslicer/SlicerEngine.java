@@ -0,0 +1,684 @@
+package de.mkoehler.codebaseslicer;
+
+import com.github.javaparser.ParserConfiguration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * The shared, read-mostly state of the slicer for one codebase, usable as a library.
+ * <p>
+ * An engine is created once from an immutable {@link Config}. It builds the source index, the class
+ * file index and the dependency cache, and it owns the per-thread resolvers and the worker pool.
+ * Slices are created by {@link SliceSession}s, one per request, which keep all traversal state to
+ * themselves. Any number of sessions may run concurrently on one engine:
+ * </p>
+ * <pre>{@code
+ * SlicerEngine.Config config = SlicerEngine.Config.builder(List.of(Paths.get("src/main/java")))
+ *         .mode("fast")
+ *         .build();
+ * try (SlicerEngine engine = new SlicerEngine(config)) {
+ *     SliceResult result = engine.newSession("com.example.OrderService", 2, List.of(), Paths.get("order.txt")).run();
+ *     System.out.println(result.getFiles());
+ * }
+ * }</pre>
+ * <p>
+ * The source index and the resolvers are only replaced as a whole, by {@link #reload()} and
+ * {@link #resetResolvers()}. A session that runs during a reload keeps working on whichever version
+ * it reads, so it never sees a half-built index.
+ * </p>
+ */
+public final class SlicerEngine implements AutoCloseable {
+
+    /** The configuration the engine was created with. */
+    private final Config config;
+    /** The maximum weight of each resolver's {@link ParsedFileCache}, in bytes of source code. */
+    private final long parseCacheWeight;
+    /** The dependency cache, or {@code null} if none is configured. */
+    private final DependencyCache dependencyCache;
+    /** The index of all types declared in the source directories. */
+    private volatile SourceIndex sourceIndex;
+    /** The class files of the project, or {@code null} if dependencies are only taken from the sources. */
+    private volatile ClassFileIndex classFileIndex;
+    /** One {@link DependencyResolver} per thread, since parsers and type solvers must not be shared. */
+    private volatile ThreadLocal<DependencyResolver> resolvers;
+    /** The engine chosen by the mode, used for all files that are not answered from class files. */
+    private final DependencyExtractor extractor;
+    /** The worker pool for the parallel traversal, created on first use. {@code null} until then, or with one thread. */
+    private ExecutorService workerPool;
+
+    /**
+     * Creates an engine: indexes the source directories and class directories and loads the
+     * dependency cache.
+     *
+     * @param config The configuration.
+     * @throws IOException if a directory cannot be walked or the cache cannot be read.
+     */
+    public SlicerEngine(Config config) throws IOException {
+        this.config = config;
+        this.parseCacheWeight = ParsedFileCache.maxWeightPerThread(config.threads);
+
+        for (Path sourcePath : config.sourcePaths) {
+            System.out.println("Adding source directory to solver: " + sourcePath);
+        }
+        sourceIndex = SourceIndex.build(config.sourcePaths);
+        if (!config.classDirectories.isEmpty()) {
+            classFileIndex = ClassFileIndex.build(config.classDirectories, sourceIndex);
+        }
+
+        String fingerprint = fingerprint();
+        if (config.cacheDirectory != null) {
+            dependencyCache = DependencyCache.load(config.cacheDirectory, fingerprint);
+        } else if (config.inMemoryCache) {
+            dependencyCache = DependencyCache.inMemory(fingerprint);
+        } else {
+            dependencyCache = null;
+        }
+        resolvers = newResolvers();
+        extractor = extractorFor(config.mode);
+    }
+
+    /**
+     * Returns the configuration the engine was created with.
+     *
+     * @return The configuration.
+     */
+    public Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Creates a session for one slice. The session uses the engine's worker pool if the engine was
+     * configured with more than one thread.
+     *
+     * @param root                      The fully qualified name of the class to start from.
+     * @param depth                     The maximum depth of the dependency traversal.
+     * @param explicitlyIncludedClasses Classes to include without following their dependencies.
+     * @param output                    The output file.
+     * @return The session, ready to {@link SliceSession#run()}.
+     */
+    public SliceSession newSession(String root, int depth, List<String> explicitlyIncludedClasses, Path output) {
+        return new SliceSession(this, root, depth, explicitlyIncludedClasses, output, workerPool());
+    }
+
+    /**
+     * Creates a single slice, writes it to the output file and saves the dependency cache.
+     *
+     * @param root                      The fully qualified name of the class to start from.
+     * @param depth                     The maximum depth of the dependency traversal.
+     * @param explicitlyIncludedClasses Classes to include without following their dependencies.
+     * @param output                    The output file.
+     * @param maxTokens                 The token budget of the slice, or 0 for no budget.
+     * @param fullSourceDepth           The maximum depth of classes written with their full source, or -1 for no limit.
+     * @return The result of the slice.
+     * @throws IOException if there is an error reading source files or writing the output file.
+     */
+    public SliceResult slice(String root, int depth, List<String> explicitlyIncludedClasses, Path output, long maxTokens,
+                             int fullSourceDepth) throws IOException {
+        return slice(root, depth, explicitlyIncludedClasses, output, maxTokens, fullSourceDepth, CancellationToken.NONE);
+    }
+
+    /**
+     * Creates a single slice that stops early when a token fires, writes the slice found so far to the
+     * output file and saves the dependency cache.
+     *
+     * @param root                      The fully qualified name of the class to start from.
+     * @param depth                     The maximum depth of the dependency traversal.
+     * @param explicitlyIncludedClasses Classes to include without following their dependencies.
+     * @param output                    The output file.
+     * @param maxTokens                 The token budget of the slice, or 0 for no budget.
+     * @param fullSourceDepth           The maximum depth of classes written with their full source, or -1 for no limit.
+     * @param cancellationToken         Stops the traversal, e.g. {@link CancellationToken#withTimeout(long)}.
+     * @return The result of the slice, see {@link SliceResult#isCutOff()}.
+     * @throws IOException if there is an error reading source files or writing the output file.
+     */
+    public SliceResult slice(String root, int depth, List<String> explicitlyIncludedClasses, Path output, long maxTokens,
+                             int fullSourceDepth, CancellationToken cancellationToken) throws IOException {
+        SliceSession session = newSession(root, depth, explicitlyIncludedClasses, output);
+        session.setMaxTokens(maxTokens);
+        session.setFullSourceDepth(fullSourceDepth);
+        session.setCancellationToken(cancellationToken);
+        SliceResult result = session.run();
+        saveCache();
+        return result;
+    }
+
+    /**
+     * Rebuilds the source index and the class file index and discards all per-thread resolvers, so
+     * that the next slice sees files that were added, removed or changed since the engine was created.
+     *
+     * @throws IOException if a source root or class directory cannot be walked.
+     */
+    public synchronized void reload() throws IOException {
+        SourceIndex index = SourceIndex.build(config.sourcePaths);
+        if (!config.classDirectories.isEmpty()) {
+            classFileIndex = ClassFileIndex.build(config.classDirectories, index);
+        }
+        sourceIndex = index;
+        resolvers = newResolvers();
+    }
+
+    /**
+     * Stops the worker pool and the threads of the extraction engine. Sessions must not be run afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        if (workerPool != null) {
+            workerPool.shutdown();
+        }
+        extractor.close();
+    }
+
+    /**
+     * Computes the fingerprint of the dependency cache for this configuration.
+     *
+     * @return The fingerprint.
+     */
+    private String fingerprint() {
+        return DependencyCache.fingerprint(config.sourcePaths, config.languageLevel.name(),
+                config.mode + (config.classDirectories.isEmpty() ? "" : "+classes"), config.excludedPackages.toString());
+    }
+
+    /**
+     * Discards all per-thread resolvers, so that the next analysis does not see outdated versions of
+     * files that the type solvers parsed earlier. Used by the watch mode after files were modified.
+     */
+    void resetResolvers() {
+        resolvers = newResolvers();
+    }
+
+    /**
+     * Saves the dependency cache to disk, if one is configured. Entries of files that are no longer
+     * in the source index are dropped first.
+     *
+     * @throws IOException if the cache file cannot be written.
+     */
+    void saveCache() throws IOException {
+        if (dependencyCache != null) {
+            dependencyCache.retainFiles(sourceIndex::containsFile);
+            dependencyCache.save();
+        }
+    }
+
+    /**
+     * Returns the dependency cache.
+     *
+     * @return The dependency cache, or {@code null} if none is configured.
+     */
+    DependencyCache getDependencyCache() {
+        return dependencyCache;
+    }
+
+    /**
+     * Returns the worker pool for the parallel traversal, creating it on first use.
+     *
+     * @return The worker pool, or {@code null} if the engine was configured with one thread.
+     */
+    synchronized ExecutorService workerPool() {
+        if (workerPool == null && config.threads > 1) {
+            System.out.println("Using " + config.threads + " worker threads.");
+            workerPool = Executors.newFixedThreadPool(config.threads, runnable -> {
+                // Idle worker threads must never keep the JVM alive.
+                Thread thread = new Thread(runnable, "slicer-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return workerPool;
+    }
+
+    /**
+     * Determines the fully qualified names of all types referenced by a source file.
+     * <p>
+     * If a dependency cache is configured and holds an entry whose content hash matches the file,
+     * the cached set is returned without parsing the file. Otherwise the file is analyzed by the
+     * {@link DependencyExtractor} chosen by the mode, and the result is stored in the cache. With
+     * class directories, the compiled classes of the file are read instead, as long as they are newer
+     * than the file.
+     * </p>
+     *
+     * @param filePath The source file to analyze.
+     * @return The set of referenced type names, including JDK types.
+     * @throws IOException if the source file cannot be read or parsed.
+     */
+    Set<String> resolveReferencedTypes(Path filePath) throws IOException {
+        return resolveReferencedTypes(filePath, CancellationToken.NONE);
+    }
+
+    /**
+     * Determines the fully qualified names of all types referenced by a source file, stopping early
+     * when a token fires. A file whose analysis was stopped is not added to the dependency cache.
+     *
+     * @param filePath          The source file to analyze.
+     * @param cancellationToken Stops the analysis of the file, see {@link DependencyExtractor#extract(Path, CancellationToken)}.
+     * @return The set of referenced type names, including JDK types.
+     * @throws IOException           if the source file cannot be read or parsed.
+     * @throws CancellationException if the token fired before the file was analyzed completely.
+     */
+    Set<String> resolveReferencedTypes(Path filePath, CancellationToken cancellationToken) throws IOException {
+        SourceIndex index = sourceIndex;
+        byte[] content = null;
+        String hash = null;
+        if (dependencyCache != null) {
+            content = Files.readAllBytes(filePath);
+            hash = DependencyCache.hash(content);
+            Set<String> cached = dependencyCache.get(filePath, hash, index);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        ClassFileIndex classFiles = classFileIndex;
+        Set<String> referencedTypes = classFiles != null ? classFiles.dependencies(filePath) : null;
+        if (referencedTypes == null) {
+            referencedTypes = extractor.extract(filePath, cancellationToken);
+        }
+        if (dependencyCache != null) {
+            JavaSourceScanner.ScanResult scan = JavaSourceScanner.scan(new String(content, StandardCharsets.UTF_8));
+            dependencyCache.put(filePath, hash, scan, referencedTypes, index);
+        }
+        return referencedTypes;
+    }
+
+    /**
+     * Analyzes every indexed source file and builds the whole-project dependency graph.
+     * <p>
+     * The files are analyzed on the worker pool if there is one. Files that cannot be parsed are
+     * reported and become nodes without edges.
+     * </p>
+     *
+     * @return The dependency graph.
+     */
+    DependencyGraph buildGraph() {
+        long start = System.nanoTime();
+        SourceIndex index = sourceIndex;
+        List<Path> files = index.files();
+        Map<Path, Set<String>> dependencies = new ConcurrentHashMap<>();
+        Map<Path, String> hashes = new ConcurrentHashMap<>();
+        Consumer<Path> analyzeFile = file -> {
+            try {
+                hashes.put(file, DependencyCache.hash(file));
+                dependencies.put(file, resolveReferencedTypes(file));
+            } catch (Exception e) {
+                System.err.println("Could not resolve or parse: " + file + ". Skipping. Error: " + e.getMessage());
+            }
+        };
+
+        ExecutorService pool = workerPool();
+        if (pool != null) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Path file : files) {
+                futures.add(pool.submit(() -> analyzeFile.accept(file)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while building the dependency graph.", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } else {
+            files.forEach(analyzeFile);
+        }
+
+        DependencyGraph graph = DependencyGraph.build(config.sourcePaths, index.types(), files, dependencies, hashes);
+        System.out.printf("Built dependency graph with %d types and %d edges from %d files in %d ms.%n",
+                graph.nodeCount(), graph.edgeCount(), files.size(), (System.nanoTime() - start) / 1_000_000);
+        return graph;
+    }
+
+    /**
+     * Compares all available dependency extraction engines with the accurate one, see {@link ModeBenchmark}.
+     *
+     * @param files The number of files to analyze.
+     */
+    void benchmark(int files) {
+        Map<String, DependencyExtractor> alternatives = new LinkedHashMap<>();
+        alternatives.put("Fast mode", extractorFor("fast"));
+        if (JavacDependencyExtractor.isAvailable()) {
+            alternatives.put("Javac mode", extractorFor("javac"));
+        }
+        if (classFileIndex != null) {
+            alternatives.put("Class files", file -> {
+                Set<String> referencedTypes = classFileIndex.dependencies(file);
+                if (referencedTypes == null) {
+                    throw new IOException("No up-to-date class files.");
+                }
+                return referencedTypes;
+            });
+        }
+        new ModeBenchmark(sourceIndex, files).run(extractorFor("accurate"), alternatives, type -> !isExcludedPackage(type));
+        alternatives.values().forEach(DependencyExtractor::close);
+    }
+
+    /**
+     * Converts a fully qualified Java class name to its corresponding file system path.
+     * <p>
+     * The lookup is answered from the {@link SourceIndex}, so it does not touch the file system.
+     * Nested classes and secondary top-level classes resolve to the file declaring them.
+     * </p>
+     *
+     * @param qualifiedName The fully qualified name of the class (e.g., "com.example.MyClass").
+     * @return A {@link Path} to the corresponding .java file, or {@code null} if not found in any source directory.
+     */
+    Path convertQualifiedNameToPath(String qualifiedName) {
+        return sourceIndex.find(qualifiedName);
+    }
+
+    /**
+     * Checks whether a type is declared in one of the source directories.
+     *
+     * @param qualifiedName The fully qualified name of the type.
+     * @return {@code true} if the type is indexed.
+     */
+    boolean isProjectType(String qualifiedName) {
+        return sourceIndex.find(qualifiedName) != null;
+    }
+
+    /**
+     * Checks whether a type lies in one of the excluded packages.
+     *
+     * @param qualifiedName The fully qualified name of the type.
+     * @return {@code true} if the type is excluded from resolution and traversal.
+     */
+    boolean isExcludedPackage(String qualifiedName) {
+        return config.isExcludedPackage(qualifiedName);
+    }
+
+    /**
+     * Returns whether a file was part of the source roots when the source index was last built.
+     *
+     * @param file The file to check.
+     * @return {@code true} if the file is indexed.
+     */
+    boolean isIndexedFile(Path file) {
+        return sourceIndex.containsFile(file);
+    }
+
+    /**
+     * Returns whether dependencies are extracted by the symbol solver.
+     *
+     * @return {@code true} in the {@code accurate} mode.
+     */
+    boolean usesSymbolSolver() {
+        return "accurate".equals(config.mode);
+    }
+
+    /**
+     * Returns whether dependencies are read from compiled classes where they are up to date.
+     *
+     * @return {@code true} if class directories were configured.
+     */
+    boolean usesClassFiles() {
+        return classFileIndex != null;
+    }
+
+    /**
+     * Creates the extraction engine for a mode. The engines look up the current source index and
+     * resolvers on every call, so they stay valid across {@link #reload()}.
+     *
+     * @param mode One of {@link DependencyExtractor#MODES}.
+     * @return The engine.
+     */
+    private DependencyExtractor extractorFor(String mode) {
+        switch (mode) {
+            case "fast":
+                return file -> LexicalDependencyExtractor.extract(file, sourceIndex);
+            case "javac":
+                return new JavacDependencyExtractor(config.sourcePaths,
+                        config.classDirectories.isEmpty() ? null : config.classDirectories);
+            default:
+                return new DependencyExtractor() {
+                    @Override
+                    public Set<String> extract(Path file) throws IOException {
+                        return resolvers.get().resolveReferencedTypes(file, CancellationToken.NONE);
+                    }
+
+                    @Override
+                    public Set<String> extract(Path file, CancellationToken cancellationToken) throws IOException {
+                        return resolvers.get().resolveReferencedTypes(file, cancellationToken);
+                    }
+                };
+        }
+    }
+
+    /**
+     * Creates a thread-local that lazily sets up one {@link DependencyResolver} per thread.
+     *
+     * @return A new, empty thread-local.
+     */
+    private ThreadLocal<DependencyResolver> newResolvers() {
+        // The shared resolutions are discarded together with the resolvers, since they may be outdated as well.
+        Map<String, String> sharedResolutions = new ConcurrentHashMap<>();
+        return ThreadLocal.withInitial(() -> new DependencyResolver(config.languageLevel, config.sourcePaths, parseCacheWeight,
+                sharedResolutions, this::isProjectType, this::isExcludedPackage));
+    }
+
+    /**
+     * The immutable configuration of a {@link SlicerEngine}. Created with {@link #builder(List)}.
+     */
+    public static final class Config {
+        /** The source root directories. */
+        final List<Path> sourcePaths;
+        /** The Java language level used for parsing. */
+        final ParserConfiguration.LanguageLevel languageLevel;
+        /** The dependency extraction engine, one of {@link DependencyExtractor#MODES}. */
+        final String mode;
+        /** The directories of compiled classes, or an empty list. */
+        final List<Path> classDirectories;
+        /** The packages whose types are neither resolved nor followed. */
+        final PackageTrie excludedPackages;
+        /** The number of threads that analyze files concurrently. */
+        final int threads;
+        /** The directory of the persistent dependency cache, or {@code null}. */
+        final Path cacheDirectory;
+        /** Whether dependencies are cached in memory when there is no cache directory. */
+        final boolean inMemoryCache;
+
+        /**
+         * Constructs a new Config from a validated builder.
+         *
+         * @param builder The builder.
+         */
+        private Config(Builder builder) {
+            this.sourcePaths = Collections.unmodifiableList(new ArrayList<>(builder.sourcePaths));
+            this.languageLevel = builder.languageLevel;
+            this.mode = builder.mode;
+            this.classDirectories = Collections.unmodifiableList(new ArrayList<>(builder.classDirectories));
+            this.excludedPackages = builder.excludedPackages;
+            this.threads = builder.threads;
+            this.cacheDirectory = builder.cacheDirectory;
+            this.inMemoryCache = builder.inMemoryCache;
+        }
+
+        /**
+         * Starts a configuration with default settings: language level Java 21, the accurate mode,
+         * the JDK packages excluded, one thread and no dependency cache.
+         *
+         * @param sourcePaths The source root directories, e.g. {@code src/main/java}.
+         * @return The builder.
+         */
+        public static Builder builder(List<Path> sourcePaths) {
+            return new Builder(sourcePaths);
+        }
+
+        /**
+         * Returns the source root directories.
+         *
+         * @return The source root directories.
+         */
+        public List<Path> getSourcePaths() {
+            return sourcePaths;
+        }
+
+        /**
+         * Returns the Java language level used for parsing.
+         *
+         * @return The language level.
+         */
+        public ParserConfiguration.LanguageLevel getLanguageLevel() {
+            return languageLevel;
+        }
+
+        /**
+         * Returns the dependency extraction engine.
+         *
+         * @return One of {@link DependencyExtractor#MODES}.
+         */
+        public String getMode() {
+            return mode;
+        }
+
+        /**
+         * Checks whether a type lies in one of the excluded packages.
+         *
+         * @param qualifiedName The fully qualified name of the type.
+         * @return {@code true} if the type is excluded from resolution and traversal.
+         */
+        boolean isExcludedPackage(String qualifiedName) {
+            return excludedPackages.matches(qualifiedName);
+        }
+    }
+
+    /**
+     * Collects the settings of a {@link Config}. Not thread-safe; the built configuration is.
+     */
+    public static final class Builder {
+        /** The source root directories. */
+        private final List<Path> sourcePaths;
+        /** The Java language level used for parsing. */
+        private ParserConfiguration.LanguageLevel languageLevel = ParserConfiguration.LanguageLevel.JAVA_21;
+        /** The dependency extraction engine. */
+        private String mode = DependencyExtractor.MODES[0];
+        /** The directories of compiled classes. */
+        private List<Path> classDirectories = Collections.emptyList();
+        /** The packages whose types are neither resolved nor followed. */
+        private PackageTrie excludedPackages = PackageTrie.parse(PackageTrie.DEFAULT_PREFIXES);
+        /** The number of threads that analyze files concurrently. */
+        private int threads = 1;
+        /** The directory of the persistent dependency cache, or {@code null}. */
+        private Path cacheDirectory;
+        /** Whether dependencies are cached in memory when there is no cache directory. */
+        private boolean inMemoryCache;
+
+        /**
+         * Constructs a new Builder.
+         *
+         * @param sourcePaths The source root directories.
+         */
+        private Builder(List<Path> sourcePaths) {
+            this.sourcePaths = sourcePaths;
+        }
+
+        /**
+         * Sets the Java language level used for parsing.
+         *
+         * @param languageLevel The language level.
+         * @return This builder.
+         */
+        public Builder languageLevel(ParserConfiguration.LanguageLevel languageLevel) {
+            this.languageLevel = languageLevel;
+            return this;
+        }
+
+        /**
+         * Sets the dependency extraction engine.
+         *
+         * @param mode One of {@link DependencyExtractor#MODES}, in any case.
+         * @return This builder.
+         * @throws IllegalArgumentException if the mode is unknown, or is {@code javac} on a JRE.
+         */
+        public Builder mode(String mode) {
+            String normalized = mode.toLowerCase(Locale.ROOT);
+            if (!Arrays.asList(DependencyExtractor.MODES).contains(normalized)) {
+                throw new IllegalArgumentException("The -mode flag must be one of " + String.join(", ", DependencyExtractor.MODES)
+                        + ", got: " + mode);
+            }
+            if ("javac".equals(normalized) && !JavacDependencyExtractor.isAvailable()) {
+                throw new IllegalArgumentException("-mode javac needs a JDK, but this Java installation has no compiler.");
+            }
+            this.mode = normalized;
+            return this;
+        }
+
+        /**
+         * Sets the directories of compiled classes, whose constant pools are read instead of the sources
+         * of up-to-date files.
+         *
+         * @param classDirectories The directories, e.g. {@code target/classes}.
+         * @return This builder.
+         */
+        public Builder classDirectories(List<Path> classDirectories) {
+            this.classDirectories = classDirectories;
+            return this;
+        }
+
+        /**
+         * Sets the packages whose types are neither resolved nor followed.
+         *
+         * @param prefixes A comma-separated list of package prefixes, e.g. {@code java.,javax.,org.slf4j.}.
+         * @return This builder.
+         * @throws IllegalArgumentException if a prefix is not a dot-separated sequence of names.
+         */
+        public Builder excludedPackages(String prefixes) {
+            this.excludedPackages = PackageTrie.parse(prefixes);
+            return this;
+        }
+
+        /**
+         * Sets the number of threads that analyze files concurrently. With more than one, the engine
+         * creates a worker pool, and each thread gets a share of the parse cache memory.
+         *
+         * @param threads The number of threads.
+         * @return This builder.
+         * @throws IllegalArgumentException if the number is not positive.
+         */
+        public Builder threads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("The -threads flag requires a positive number, got: " + threads);
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Sets the directory of the persistent dependency cache.
+         *
+         * @param cacheDirectory The cache directory, or {@code null} for none.
+         * @return This builder.
+         */
+        public Builder cacheDirectory(Path cacheDirectory) {
+            this.cacheDirectory = cacheDirectory;
+            return this;
+        }
+
+        /**
+         * Makes the engine cache dependencies in memory when no cache directory is set, so that
+         * repeated slices share the analyzed files.
+         *
+         * @param inMemoryCache Whether to cache in memory.
+         * @return This builder.
+         */
+        public Builder inMemoryCache(boolean inMemoryCache) {
+            this.inMemoryCache = inMemoryCache;
+            return this;
+        }
+
+        /**
+         * Creates the configuration.
+         *
+         * @return The configuration.
+         */
+        public Config build() {
+            return new Config(this);
+        }
+    }
+}
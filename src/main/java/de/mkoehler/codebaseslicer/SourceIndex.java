@@ -0,0 +1,250 @@
+package de.mkoehler.codebaseslicer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An in-memory index from fully qualified type names to the source files that declare them.
+ * <p>
+ * The index is built once at startup by walking all source roots in parallel. Every {@code .java}
+ * file is registered under the name derived from its path (the same name the slicer used to probe
+ * for with {@code Files.exists}) and, using the lightweight {@link JavaSourceScanner}, under the
+ * names of all types it actually declares, including member types and secondary top-level types.
+ * After that, every lookup is a single hash lookup without touching the file system.
+ * </p>
+ * <p>
+ * If a name occurs in several source roots, the first root in the configured order wins, just as
+ * with the former per-lookup probing. Path-derived names take precedence over scanned names.
+ * </p>
+ * <p>
+ * For every package the index also keeps a hash of the names of the types in it (see
+ * {@link #packageHash(String)}), which the {@link DependencyCache} uses to tell which cached files
+ * may resolve differently after types were added, removed or renamed.
+ * </p>
+ */
+class SourceIndex {
+
+    /** The indexed types, mapping fully qualified name to source file. */
+    private final Map<String, Path> index;
+    /** All indexed source files, in source root order. */
+    private final List<Path> files;
+    /** All indexed source files as absolute, normalized paths, for membership checks. */
+    private final Set<Path> normalizedFiles;
+    /** The hash of the type names in each package, keyed by package name. */
+    private final Map<String, String> packageHashes;
+
+    /**
+     * Constructs a new SourceIndex. Use {@link #build(List)} to create an index from source roots.
+     *
+     * @param index         The indexed types.
+     * @param files         All indexed source files.
+     * @param packageHashes The hash of the type names in each package.
+     */
+    private SourceIndex(Map<String, Path> index, List<Path> files, Map<String, String> packageHashes) {
+        this.index = index;
+        this.files = files;
+        this.packageHashes = packageHashes;
+        this.normalizedFiles = files.stream().map(p -> p.toAbsolutePath().normalize()).collect(Collectors.toSet());
+    }
+
+    /**
+     * Walks all source roots and indexes every type declared in them.
+     *
+     * @param sourceRoots The source root directories, in lookup order.
+     * @return The built index.
+     * @throws IOException if a source root cannot be walked.
+     */
+    static SourceIndex build(List<Path> sourceRoots) throws IOException {
+        long start = System.nanoTime();
+        List<List<IndexedFile>> perRoot;
+        try {
+            perRoot = sourceRoots.parallelStream()
+                    .map(SourceIndex::indexRoot)
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Map<String, Path> index = new HashMap<>();
+        List<Path> files = new ArrayList<>();
+        Map<String, Set<String>> namesByPackage = new HashMap<>();
+        for (List<IndexedFile> indexedFiles : perRoot) {
+            for (IndexedFile indexedFile : indexedFiles) {
+                index.putIfAbsent(indexedFile.pathName, indexedFile.path);
+                files.add(indexedFile.path);
+                namesByPackage.computeIfAbsent(qualifier(indexedFile.pathName), k -> new TreeSet<>())
+                        .add(indexedFile.pathName);
+            }
+        }
+        for (List<IndexedFile> indexedFiles : perRoot) {
+            for (IndexedFile indexedFile : indexedFiles) {
+                for (String declaredName : indexedFile.declaredNames) {
+                    index.putIfAbsent(declaredName, indexedFile.path);
+                    namesByPackage.computeIfAbsent(indexedFile.packageName, k -> new TreeSet<>()).add(declaredName);
+                }
+            }
+        }
+        Map<String, String> packageHashes = new HashMap<>();
+        namesByPackage.forEach((packageName, names) -> packageHashes.put(packageName,
+                DependencyCache.hash(String.join("\n", names).getBytes(StandardCharsets.UTF_8))));
+
+        System.out.printf("Indexed %d types in %d source files in %d ms.%n",
+                index.size(), files.size(), (System.nanoTime() - start) / 1_000_000);
+        return new SourceIndex(index, Collections.unmodifiableList(files), packageHashes);
+    }
+
+    /**
+     * Looks up the source file of a type.
+     * <p>
+     * Binary names of nested classes (e.g. {@code com.example.Outer$Inner}) are accepted as well; if
+     * the nested name itself is not indexed, the file of the outermost class is returned.
+     * </p>
+     *
+     * @param qualifiedName The fully qualified name of the type.
+     * @return The source file declaring the type, or {@code null} if it is not part of any source root.
+     */
+    Path find(String qualifiedName) {
+        Path path = index.get(qualifiedName);
+        if (path == null && qualifiedName.indexOf('$') >= 0) {
+            path = index.get(qualifiedName.replace('$', '.'));
+            if (path == null) {
+                path = index.get(qualifiedName.split("\\$")[0]);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Returns all indexed types.
+     *
+     * @return An unmodifiable map from fully qualified name to source file.
+     */
+    Map<String, Path> types() {
+        return Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * Returns a hash of the names of the types in a package. How a file's references resolve depends
+     * on which types exist in its own package, in the packages it imports and as member types of its
+     * supertypes, none of which show in the file's own content. The hash changes whenever a type in
+     * the package, including a member type, is added, removed or renamed.
+     *
+     * @param packageName The package name, or an empty string for the default package.
+     * @return The SHA-256 hash of the sorted type names, or {@code "-"} if no indexed type is in the package.
+     */
+    String packageHash(String packageName) {
+        return packageHashes.getOrDefault(packageName, "-");
+    }
+
+    /**
+     * Returns all indexed source files.
+     *
+     * @return An unmodifiable list of source files, in source root order.
+     */
+    List<Path> files() {
+        return files;
+    }
+
+    /**
+     * Returns whether a file was part of the source roots when the index was built.
+     *
+     * @param file The file to check.
+     * @return {@code true} if the file is indexed.
+     */
+    boolean containsFile(Path file) {
+        return normalizedFiles.contains(file.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Returns the part of a dotted name before its last dot.
+     *
+     * @param name The dotted name.
+     * @return The qualifier, or an empty string if the name has no dot.
+     */
+    static String qualifier(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(0, dot);
+    }
+
+    /**
+     * Walks a single source root and scans every source file in it.
+     *
+     * @param sourceRoot The source root directory.
+     * @return The indexed files of the root, sorted by path for a deterministic result.
+     */
+    private static List<IndexedFile> indexRoot(Path sourceRoot) {
+        if (!Files.isDirectory(sourceRoot)) {
+            System.err.println("Source directory does not exist: " + sourceRoot);
+            return Collections.emptyList();
+        }
+        try (Stream<Path> paths = Files.walk(sourceRoot)) {
+            List<Path> sourceFiles = paths
+                    .filter(p -> p.toString().endsWith(".java") && Files.isRegularFile(p))
+                    .sorted()
+                    .collect(Collectors.toList());
+            return sourceFiles.parallelStream()
+                    .map(p -> indexFile(sourceRoot, p))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Scans a single source file for its declared types.
+     *
+     * @param sourceRoot The source root the file belongs to.
+     * @param path       The source file.
+     * @return The {@link IndexedFile} for the file.
+     */
+    private static IndexedFile indexFile(Path sourceRoot, Path path) {
+        String relativePath = sourceRoot.relativize(path).toString();
+        String pathName = relativePath.substring(0, relativePath.length() - ".java".length())
+                .replace(File.separatorChar, '.');
+        try {
+            JavaSourceScanner.ScanResult scan = JavaSourceScanner.scan(Files.readString(path, StandardCharsets.UTF_8));
+            List<String> declaredNames = scan.typeNames.stream().map(scan::qualify).collect(Collectors.toList());
+            return new IndexedFile(path, pathName, scan.packageName, declaredNames);
+        } catch (IOException e) {
+            // The file stays reachable under its path-derived name; only its declared types are unknown.
+            System.err.println("Could not scan source file: " + path + ". Error: " + e.getMessage());
+            return new IndexedFile(path, pathName, qualifier(pathName), Collections.emptyList());
+        }
+    }
+
+    /**
+     * A source file together with the names it is indexed under.
+     */
+    private static class IndexedFile {
+        /** The source file. */
+        final Path path;
+        /** The fully qualified name derived from the file's path relative to its source root. */
+        final String pathName;
+        /** The declared package of the file. */
+        final String packageName;
+        /** The fully qualified names of all types declared in the file. */
+        final List<String> declaredNames;
+
+        /**
+         * Constructs a new IndexedFile.
+         *
+         * @param path          The source file.
+         * @param pathName      The name derived from the path.
+         * @param packageName   The declared package.
+         * @param declaredNames The names of the declared types.
+         */
+        IndexedFile(Path path, String pathName, String packageName, List<String> declaredNames) {
+            this.path = path;
+            this.pathName = pathName;
+            this.packageName = packageName;
+            this.declaredNames = declaredNames;
+        }
+    }
+}
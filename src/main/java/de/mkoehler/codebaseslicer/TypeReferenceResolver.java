@@ -0,0 +1,422 @@
+package de.mkoehler.codebaseslicer;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.InitializerDeclaration;
+import com.github.javaparser.ast.body.RecordDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.TypeParameter;
+import com.github.javaparser.resolution.types.ResolvedType;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the type references of one compilation unit, resolving each distinct name only once.
+ * <p>
+ * A file that mentions {@code List<Order>} forty times would otherwise ask the symbol solver forty
+ * times for {@code Order}. Since a name always means the same type within the same scope, results are
+ * memoized by the textual name and the innermost node that can change its meaning: a type body, an
+ * anonymous class body, or a method, constructor or initializer that declares type parameters or
+ * local types. The names in an {@code extends} or {@code implements} clause belong to the scope
+ * around the declaration, not to its body.
+ * </p>
+ * <p>
+ * Across files, the same name resolves to the same type when the package, the imports and the
+ * supertypes of all enclosing types are the same, unless the file itself declares a type or type
+ * parameter of that name. Such lookups are answered from a map shared by all resolvers, so that a
+ * sibling file with the same imports skips the symbol solver completely. Only successful resolutions
+ * are shared, together with the names that are known not to resolve. Names inside anonymous class
+ * bodies are never shared, since they depend on members inherited from the instantiated type.
+ * </p>
+ * <p>
+ * Unresolvable names are expensive, since the symbol solver reports them with an exception. Most of
+ * them are third-party types, so a name that is imported from outside the project is classified from
+ * the imports alone: the type solvers only know the JDK ({@link PackageTrie#REFLECTION_PACKAGES}) and
+ * the source roots, so a single-type import of any other type can never be resolved. The check is
+ * skipped where an enclosing type may inherit a member type of the same name from a project type.
+ * </p>
+ * <p>
+ * Names in excluded packages (see {@link PackageTrie}) are dropped before resolution as well, since the
+ * traversal would not follow them anyway. Their qualified name is taken from a single-type import,
+ * from the name itself if it is written out in full, or from {@code java.lang} for the implicitly
+ * imported types, unless a type of the same name in the file's own package shadows it.
+ * </p>
+ * <p>
+ * An instance must only be used by one thread; the shared map must be safe for concurrent use.
+ * </p>
+ */
+class TypeReferenceResolver {
+
+    /** The number of references that were passed to the symbol solver. */
+    private static final LongAdder TOTAL_SOLVED = new LongAdder();
+    /** The number of references that were answered from the memo of their compilation unit. */
+    private static final LongAdder TOTAL_MEMO_HITS = new LongAdder();
+    /** The number of references that were answered from the map shared across files. */
+    private static final LongAdder TOTAL_SHARED_HITS = new LongAdder();
+    /** The number of shared hits that were known to be unresolvable. */
+    private static final LongAdder TOTAL_NEGATIVE_HITS = new LongAdder();
+    /** The number of references that were classified as external from the imports. */
+    private static final LongAdder TOTAL_EXTERNAL = new LongAdder();
+    /** The number of references that were dropped because they belong to an excluded package. */
+    private static final LongAdder TOTAL_EXCLUDED = new LongAdder();
+    /** The number of references that the symbol solver could not resolve. */
+    private static final LongAdder TOTAL_UNRESOLVED = new LongAdder();
+    /** Whether a simple name is a type in {@code java.lang}, by simple name. */
+    private static final Map<String, Boolean> JAVA_LANG_TYPES = new ConcurrentHashMap<>();
+
+    /** The value of a shared resolution that is known to fail. */
+    private static final String UNRESOLVABLE = "";
+
+    /** The resolved names of references, by their context key and name, shared across files. */
+    private final Map<String, String> sharedResolutions;
+    /** The resolved names of references, by scope node and name. An empty value means unresolvable. */
+    private final Map<Node, Map<String, Optional<String>>> memo = new IdentityHashMap<>();
+    /** The context key of each scope, or {@code null} if the scope's names must not be shared. */
+    private final Map<Node, Optional<String>> contextKeys = new IdentityHashMap<>();
+    /** Whether names in a scope may refer to member types inherited from project types. */
+    private final Map<Node, Boolean> inheritsFromProject = new IdentityHashMap<>();
+    /** Whether a method, constructor or initializer declares type parameters or local types. */
+    private final Map<Node, Boolean> declaresTypes = new IdentityHashMap<>();
+    /** The simple names of all types and type parameters declared in the compilation unit. */
+    private final Set<String> declaredNames = new HashSet<>();
+    /** The package and imports of the compilation unit, the root of all context keys. */
+    private final String fileKey;
+    /** The qualified names of the single-type imports, by simple name. */
+    private final Map<String, String> singleTypeImports = new HashMap<>();
+    /** Checks whether a qualified name belongs to a type under one of the source roots. */
+    private final Predicate<String> isProjectType;
+    /** Checks whether a qualified name lies in an excluded package. */
+    private final Predicate<String> isExcluded;
+    /** The package of the compilation unit, or an empty string for the default package. */
+    private final String packageName;
+
+    /**
+     * Constructs a new resolver for one compilation unit.
+     *
+     * @param cu                The parsed compilation unit, with a symbol resolver.
+     * @param sharedResolutions The resolutions shared across files.
+     * @param isProjectType     Checks whether a qualified name belongs to a type under one of the source roots.
+     * @param isExcluded        Checks whether a qualified name lies in an excluded package.
+     */
+    TypeReferenceResolver(CompilationUnit cu, Map<String, String> sharedResolutions, Predicate<String> isProjectType,
+                          Predicate<String> isExcluded) {
+        this.sharedResolutions = sharedResolutions;
+        this.isProjectType = isProjectType;
+        this.isExcluded = isExcluded;
+        for (ImportDeclaration declaration : cu.getImports()) {
+            if (!declaration.isStatic() && !declaration.isAsterisk()) {
+                singleTypeImports.put(declaration.getName().getIdentifier(), declaration.getNameAsString());
+            }
+        }
+        cu.findAll(TypeDeclaration.class).forEach(type -> declaredNames.add(type.getNameAsString()));
+        cu.findAll(TypeParameter.class).forEach(parameter -> declaredNames.add(parameter.getNameAsString()));
+        this.packageName = cu.getPackageDeclaration().map(declaration -> declaration.getNameAsString()).orElse("");
+        String imports = cu.getImports().stream()
+                .map(TypeReferenceResolver::describe)
+                .sorted()
+                .collect(Collectors.joining(","));
+        this.fileKey = packageName + "|" + imports;
+    }
+
+    /**
+     * Returns the fully qualified name of the type a reference resolves to.
+     *
+     * @param type The type reference, which must belong to this resolver's compilation unit.
+     * @return The qualified name, or empty if the reference is not resolvable or not a reference type.
+     */
+    Optional<String> resolve(ClassOrInterfaceType type) {
+        String name = type.getNameWithScope();
+        Node scope = scopeOf(type);
+        Map<String, Optional<String>> scopeMemo = memo.computeIfAbsent(scope, key -> new HashMap<>());
+        Optional<String> memoized = scopeMemo.get(name);
+        if (memoized != null) {
+            TOTAL_MEMO_HITS.increment();
+            return memoized;
+        }
+
+        String sharedKey = null;
+        String firstSegment = firstSegment(name);
+        if (!declaredNames.contains(firstSegment)) {
+            String qualifiedName = qualifyWithoutResolving(name, firstSegment);
+            if (qualifiedName != null && isExcluded.test(qualifiedName) && !inheritsFromProject(scope)) {
+                TOTAL_EXCLUDED.increment();
+                scopeMemo.put(name, Optional.empty());
+                return Optional.empty();
+            }
+            if (isExternal(firstSegment) && !inheritsFromProject(scope)) {
+                TOTAL_EXTERNAL.increment();
+                scopeMemo.put(name, Optional.empty());
+                return Optional.empty();
+            }
+            Optional<String> context = contextKey(scope);
+            if (context.isPresent()) {
+                sharedKey = context.get() + "|" + name;
+                String shared = sharedResolutions.get(sharedKey);
+                if (shared != null) {
+                    TOTAL_SHARED_HITS.increment();
+                    if (shared.equals(UNRESOLVABLE)) {
+                        TOTAL_NEGATIVE_HITS.increment();
+                    }
+                    Optional<String> result = shared.equals(UNRESOLVABLE) ? Optional.empty() : Optional.of(shared);
+                    scopeMemo.put(name, result);
+                    return result;
+                }
+            }
+        }
+
+        TOTAL_SOLVED.increment();
+        Optional<String> resolved = Optional.empty();
+        try {
+            ResolvedType resolvedType = type.resolve();
+            if (resolvedType.isReferenceType()) {
+                resolved = Optional.of(resolvedType.asReferenceType().getQualifiedName());
+            }
+        } catch (Exception e) {
+            // Unsolvable types are ignored, but counted for -stats.
+            TOTAL_UNRESOLVED.increment();
+        }
+        scopeMemo.put(name, resolved);
+        if (sharedKey != null) {
+            sharedResolutions.put(sharedKey, resolved.orElse(UNRESOLVABLE));
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns the counters of all instances added up.
+     *
+     * @return The number of references passed to the symbol solver, answered from the memo of their
+     *         file, answered from the shared map, answered from the shared map as unresolvable, and
+     *         classified as external, dropped as excluded, and not resolved by the symbol solver, in this order.
+     */
+    static long[] totals() {
+        return new long[]{TOTAL_SOLVED.sum(), TOTAL_MEMO_HITS.sum(), TOTAL_SHARED_HITS.sum(),
+                TOTAL_NEGATIVE_HITS.sum(), TOTAL_EXTERNAL.sum(), TOTAL_EXCLUDED.sum(), TOTAL_UNRESOLVED.sum()};
+    }
+
+    /**
+     * Determines the qualified name of a reference from the imports alone, as far as that is possible
+     * without the symbol solver.
+     *
+     * @param name         The name as written, e.g. {@code Map.Entry}.
+     * @param firstSegment The first segment of the name.
+     * @return The qualified name, or {@code null} if it depends on the types visible in the project.
+     */
+    private String qualifyWithoutResolving(String name, String firstSegment) {
+        String importedName = singleTypeImports.get(firstSegment);
+        if (importedName != null) {
+            return importedName + name.substring(firstSegment.length());
+        }
+        if (name.length() > firstSegment.length() && isExcluded.test(name)) {
+            // A name written out in full, such as java.util.List.
+            return name;
+        }
+        if (isJavaLangType(firstSegment)
+                && !isProjectType.test(packageName.isEmpty() ? firstSegment : packageName + "." + firstSegment)) {
+            return "java.lang." + name;
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a simple name is a type in {@code java.lang}, which every file imports implicitly.
+     *
+     * @param simpleName The simple name.
+     * @return {@code true} if {@code java.lang} declares a type of this name.
+     */
+    private static boolean isJavaLangType(String simpleName) {
+        return JAVA_LANG_TYPES.computeIfAbsent(simpleName, key -> {
+            try {
+                Class.forName("java.lang." + key, false, null);
+                return true;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Checks whether a simple name is imported from outside the project and the JDK, which means that
+     * the symbol solver cannot resolve it. Whether the JDK is excluded does not matter here: excluded
+     * names were dropped before, and the others are resolved if the type solvers can see them.
+     *
+     * @param simpleName The simple name.
+     * @return {@code true} if a single-type import brings the name from an external type.
+     */
+    private boolean isExternal(String simpleName) {
+        String importedName = singleTypeImports.get(simpleName);
+        if (importedName == null || PackageTrie.REFLECTION_PACKAGES.matches(importedName)) {
+            return false;
+        }
+        // The import may name a nested type of a project type.
+        for (String name = importedName; name.indexOf('.') >= 0; name = name.substring(0, name.lastIndexOf('.'))) {
+            if (isProjectType.test(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether names in a scope may refer to a member type inherited from a project type, which
+     * would shadow a single-type import of the same name. This is assumed unless every supertype of
+     * every enclosing type is itself external.
+     *
+     * @param scope The scope node.
+     * @return {@code true} if a project type may contribute inherited member types.
+     */
+    private boolean inheritsFromProject(Node scope) {
+        Boolean cached = inheritsFromProject.get(scope);
+        if (cached != null) {
+            return cached;
+        }
+        boolean inherits;
+        if (scope instanceof CompilationUnit) {
+            inherits = false;
+        } else if (scope instanceof ObjectCreationExpr) {
+            inherits = true;
+        } else {
+            inherits = scope instanceof TypeDeclaration && supertypesOf((TypeDeclaration<?>) scope).stream()
+                    .anyMatch(supertype -> !isExternal(firstSegment(supertype.getNameWithScope())));
+            if (!inherits && scope.getParentNode().isPresent()) {
+                inherits = inheritsFromProject(scopeOf(scope));
+            }
+        }
+        inheritsFromProject.put(scope, inherits);
+        return inherits;
+    }
+
+    /**
+     * Finds the innermost node that determines the meaning of the names used inside another node.
+     *
+     * @param node The node.
+     * @return The scope node: a type or anonymous class, a method, constructor or initializer that
+     *         declares types, or the compilation unit.
+     */
+    private Node scopeOf(Node node) {
+        Node child = node;
+        Node parent = node.getParentNode().orElse(null);
+        while (parent != null) {
+            if (parent instanceof TypeDeclaration || parent instanceof ObjectCreationExpr) {
+                // Only the body belongs to the type's scope, not its header or the constructor arguments.
+                if (child instanceof BodyDeclaration) {
+                    return parent;
+                }
+            } else if ((parent instanceof CallableDeclaration || parent instanceof InitializerDeclaration) && declaresTypes(parent)) {
+                return parent;
+            } else if (parent instanceof CompilationUnit) {
+                return parent;
+            }
+            child = parent;
+            parent = parent.getParentNode().orElse(null);
+        }
+        return child;
+    }
+
+    /**
+     * Checks whether a method, constructor or initializer declares type parameters or local types,
+     * which can shadow other types within it.
+     *
+     * @param member The method, constructor or initializer.
+     * @return {@code true} if it declares types.
+     */
+    private boolean declaresTypes(Node member) {
+        return declaresTypes.computeIfAbsent(member, key ->
+                (key instanceof CallableDeclaration && ((CallableDeclaration<?>) key).getTypeParameters().isNonEmpty())
+                        || key.findFirst(TypeDeclaration.class).isPresent());
+    }
+
+    /**
+     * Computes the key that identifies the meaning of names in a scope across files.
+     * <p>
+     * Apart from the types declared in the file itself, which are excluded before this is consulted,
+     * a simple name can only resolve differently in two scopes if the package, the imports, or the
+     * member types inherited by an enclosing type differ. The key therefore combines the package and
+     * imports with the textual supertypes of all enclosing types.
+     * </p>
+     *
+     * @param scope The scope node.
+     * @return The key, or empty if names in this scope must not be shared.
+     */
+    private Optional<String> contextKey(Node scope) {
+        Optional<String> cached = contextKeys.get(scope);
+        if (cached != null) {
+            return cached;
+        }
+        Optional<String> key;
+        if (scope instanceof CompilationUnit) {
+            key = Optional.of(fileKey);
+        } else if (scope instanceof ObjectCreationExpr) {
+            key = Optional.empty();
+        } else {
+            Node parent = scope.getParentNode().orElse(null);
+            Optional<String> outer = parent == null ? Optional.empty() : contextKey(scopeOf(scope));
+            key = outer.map(prefix -> scope instanceof TypeDeclaration
+                    ? prefix + ">" + supertypes((TypeDeclaration<?>) scope)
+                    : prefix);
+        }
+        contextKeys.put(scope, key);
+        return key;
+    }
+
+    /**
+     * Describes the supertypes of a type declaration as written in the source.
+     *
+     * @param type The type declaration.
+     * @return The extended and implemented types, separated by commas.
+     */
+    private static String supertypes(TypeDeclaration<?> type) {
+        return supertypesOf(type).stream().map(ClassOrInterfaceType::getNameWithScope).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Returns the extended and implemented types of a type declaration.
+     *
+     * @param type The type declaration.
+     * @return The supertypes as written in the source.
+     */
+    private static List<ClassOrInterfaceType> supertypesOf(TypeDeclaration<?> type) {
+        List<ClassOrInterfaceType> supertypes = new ArrayList<>();
+        if (type instanceof ClassOrInterfaceDeclaration) {
+            supertypes.addAll(((ClassOrInterfaceDeclaration) type).getExtendedTypes());
+            supertypes.addAll(((ClassOrInterfaceDeclaration) type).getImplementedTypes());
+        } else if (type instanceof EnumDeclaration) {
+            supertypes.addAll(((EnumDeclaration) type).getImplementedTypes());
+        } else if (type instanceof RecordDeclaration) {
+            supertypes.addAll(((RecordDeclaration) type).getImplementedTypes());
+        }
+        return supertypes;
+    }
+
+    /**
+     * Returns the first segment of a possibly qualified name.
+     *
+     * @param name The name, e.g. {@code Map.Entry}.
+     * @return The first segment, e.g. {@code Map}.
+     */
+    private static String firstSegment(String name) {
+        int dot = name.indexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    /**
+     * Describes an import declaration.
+     *
+     * @param declaration The import declaration.
+     * @return The imported name, marked as static and on-demand where applicable.
+     */
+    private static String describe(ImportDeclaration declaration) {
+        return (declaration.isStatic() ? "static " : "") + declaration.getNameAsString() + (declaration.isAsterisk() ? ".*" : "");
+    }
+}
@@ -0,0 +1,97 @@
+package de.mkoehler.codebaseslicer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CancellationTokenTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void timeoutFiresAtTheDeadline() throws InterruptedException {
+        CancellationToken token = CancellationToken.withTimeout(50);
+        assertFalse(token.isCancelled());
+        long start = System.nanoTime();
+        while (!token.isCancelled()) {
+            assertTrue(System.nanoTime() - start < 5_000_000_000L, "The token did not fire.");
+            Thread.sleep(5);
+        }
+        assertTrue(System.nanoTime() - start >= 40_000_000L);
+        assertTrue(CancellationToken.withTimeout(0).isCancelled());
+    }
+
+    @Test
+    void hugeTimeoutsDoNotOverflowIntoThePast() {
+        // The old multiplication by 1,000,000 wrapped around to a negative timeout for these.
+        assertFalse(CancellationToken.withTimeout(Long.MAX_VALUE / 1_000_000 + 1).isCancelled());
+        assertFalse(CancellationToken.withTimeout(Long.MAX_VALUE).isCancelled());
+    }
+
+    @Test
+    void negativeTimeoutIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> CancellationToken.withTimeout(-1));
+    }
+
+    @Test
+    void sharedNoneTokenCannotBeCancelled() {
+        CancellationToken.NONE.cancel();
+        assertFalse(CancellationToken.NONE.isCancelled());
+    }
+
+    @Test
+    void cancelFiresEveryToken() {
+        CancellationToken token = new CancellationToken();
+        CancellationToken timed = CancellationToken.withTimeout(60_000);
+        assertFalse(token.isCancelled());
+        token.cancel();
+        timed.cancel();
+        assertTrue(token.isCancelled());
+        assertTrue(timed.isCancelled());
+        assertFalse(CancellationToken.NONE.isCancelled());
+    }
+
+    @Test
+    void accurateEngineStopsWithinAFileAndDoesNotCacheIt() throws IOException {
+        Path sources = tempDir.resolve("src");
+        DependencyCacheTest.write(sources, "p/A.java", "package p; public class A { B b; }");
+        DependencyCacheTest.write(sources, "p/B.java", "package p; public class B { }");
+        Path a = sources.resolve("p/A.java");
+        SlicerEngine.Config config = SlicerEngine.Config.builder(Collections.singletonList(sources)).inMemoryCache(true).build();
+        try (SlicerEngine engine = new SlicerEngine(config)) {
+            CancellationToken token = new CancellationToken();
+            token.cancel();
+            // The engine itself does not check the token before the file, only the resolver between references.
+            assertThrows(CancellationException.class, () -> engine.resolveReferencedTypes(a, token));
+            assertNull(engine.getDependencyCache().lastKnown(a));
+            assertEquals(Collections.singleton("p.B"), engine.resolveReferencedTypes(a, CancellationToken.NONE));
+        }
+    }
+
+    @Test
+    void cutOffSliceIsCompleteUpToItsDepth() throws IOException {
+        Path sources = tempDir.resolve("src");
+        DependencyCacheTest.write(sources, "p/A.java", "package p; public class A { B b; }");
+        DependencyCacheTest.write(sources, "p/B.java", "package p; public class B { C c; }");
+        DependencyCacheTest.write(sources, "p/C.java", "package p; public class C { }");
+        try (SlicerEngine engine = new SlicerEngine(SlicerEngine.Config.builder(Collections.singletonList(sources)).build())) {
+            CancellationToken token = new CancellationToken();
+            token.cancel();
+            SliceResult cut = engine.slice("p.A", 5, Collections.emptyList(), tempDir.resolve("cut.txt"), 0, -1, token);
+            assertTrue(cut.isCutOff());
+            assertTrue(cut.getCompleteDepth() >= 0 && cut.getCompleteDepth() < 2, "depth " + cut.getCompleteDepth());
+
+            SliceResult full = engine.slice("p.A", cut.getCompleteDepth(), Collections.emptyList(), tempDir.resolve("full.txt"), 0, -1,
+                    CancellationToken.NONE);
+            assertFalse(full.isCutOff());
+            assertEquals(full.getClasses().keySet(), cut.getClasses().keySet());
+        }
+    }
+}
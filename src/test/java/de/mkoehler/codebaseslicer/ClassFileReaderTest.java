@@ -0,0 +1,104 @@
+package de.mkoehler.codebaseslicer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads class files compiled from fixtures by the JDK's compiler, so the tests need a JDK.
+ */
+class ClassFileReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path sources;
+    private Path classes;
+
+    @BeforeEach
+    void compileFixtures() throws IOException {
+        sources = tempDir.resolve("src");
+        classes = Files.createDirectories(tempDir.resolve("classes"));
+        DependencyCacheTest.write(sources, "p/Order.java", "package p;\npublic class Order {\n"
+                + "    public static class Line { }\n}\n");
+        DependencyCacheTest.write(sources, "p/Customer.java", "package p;\npublic class Customer { }\n");
+        DependencyCacheTest.write(sources, "p/Audit.java", "package p;\npublic class Audit {\n"
+                + "    public static void log(Object o) { }\n}\n");
+        DependencyCacheTest.write(sources, "p/Failure.java", "package p;\npublic class Failure extends Exception { }\n");
+        DependencyCacheTest.write(sources, "p/Marker.java", "package p;\n"
+                + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\npublic @interface Marker { }\n");
+        DependencyCacheTest.write(sources, "p/Service.java", "package p;\n"
+                + "import java.util.List;\n"
+                + "@Marker\n"
+                + "public class Service {\n"
+                + "    private List<Order> orders;\n"
+                + "    private final long big = 123456789012L;\n"
+                + "    private final double ratio = 0.25;\n"
+                + "    public void add(Order.Line[] lines) throws Failure {\n"
+                + "        Object o = lines;\n"
+                + "        if (o instanceof Customer) {\n"
+                + "            Audit.log(o);\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n");
+        DependencyCacheTest.write(sources, "p/Report.java", "package p;\n"
+                + "import java.util.*;\n"
+                + "public class Report {\n"
+                + "    public int count() {\n"
+                + "        List<Customer> customers = new ArrayList<>();\n"
+                + "        return customers.size();\n"
+                + "    }\n"
+                + "}\n");
+        // With debug information, as Maven and Gradle compile by default.
+        List<String> arguments = new ArrayList<>(Arrays.asList("-g", "-d", classes.toString()));
+        for (String name : new String[] {"Order", "Customer", "Audit", "Failure", "Marker", "Service", "Report"}) {
+            arguments.add(sources.resolve("p/" + name + ".java").toString());
+        }
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, arguments.toArray(new String[0])));
+    }
+
+    @Test
+    void findsClassesFromTheConstantPoolAndSignatures() throws IOException {
+        Set<String> referenced = ClassFileReader.referencedClasses(classes.resolve("p/Service.class"));
+        // The class itself, and the generic type argument that only the Signature attribute names.
+        assertTrue(referenced.containsAll(Arrays.asList("p/Service", "java/util/List", "p/Order")), referenced.toString());
+        // An array parameter, a checked exception, an instanceof and a static call.
+        assertTrue(referenced.containsAll(Arrays.asList("p/Order$Line", "p/Failure", "p/Customer", "p/Audit")), referenced.toString());
+        assertFalse(referenced.contains("p/Marker"), "Annotations are skipped.");
+        assertTrue(referenced.stream().noneMatch(name -> name.startsWith("[")), referenced.toString());
+    }
+
+    @Test
+    void findsGenericTypeArgumentsOfLocalVariables() throws IOException {
+        // Only the LocalVariableTypeTable in the Code attribute names Customer.
+        Set<String> referenced = ClassFileReader.referencedClasses(classes.resolve("p/Report.class"));
+        assertTrue(referenced.containsAll(Arrays.asList("java/util/ArrayList", "java/util/List", "p/Customer")), referenced.toString());
+    }
+
+    @Test
+    void rejectsOtherFiles() {
+        assertThrows(IOException.class, () -> ClassFileReader.referencedClasses("not a class file".getBytes()));
+    }
+
+    @Test
+    void engineAnswersFromClassFilesInSourceForm() throws IOException {
+        SlicerEngine.Config config = SlicerEngine.Config.builder(Collections.singletonList(sources))
+                .classDirectories(Collections.singletonList(classes))
+                .build();
+        try (SlicerEngine engine = new SlicerEngine(config)) {
+            assertTrue(engine.usesClassFiles());
+            Set<String> referenced = new HashSet<>(engine.resolveReferencedTypes(sources.resolve("p/Service.java")));
+            referenced.removeIf(type -> !engine.isProjectType(type));
+            assertEquals(new TreeSet<>(Arrays.asList("p.Audit", "p.Customer", "p.Failure", "p.Order", "p.Order.Line", "p.Service")),
+                    new TreeSet<>(referenced));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package de.mkoehler.codebaseslicer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that cached dependencies are reused for unchanged trees and refreshed when a file's
+ * references resolve differently, although the file itself did not change.
+ */
+class DependencyCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void unchangedTreeIsAnsweredFromTheCache() throws IOException {
+        Path sources = tempDir.resolve("src");
+        write(sources, "p/A.java", "package p; public class A { B b; }");
+        write(sources, "p/B.java", "package p; public class B { }");
+        Path a = sources.resolve("p/A.java");
+
+        try (SlicerEngine engine = newEngine(sources)) {
+            assertEquals(Collections.singleton("p.B"), engine.resolveReferencedTypes(a));
+            engine.saveCache();
+        }
+        long hitsBefore = DependencyCache.totals()[0];
+        try (SlicerEngine engine = newEngine(sources)) {
+            assertEquals(Collections.singleton("p.B"), engine.resolveReferencedTypes(a));
+        }
+        assertEquals(hitsBefore + 1, DependencyCache.totals()[0]);
+    }
+
+    @Test
+    void addingSamePackageTypeRefreshesCachedEdges() throws IOException {
+        Path sources = tempDir.resolve("src");
+        write(sources, "p/A.java", "package p; public class A { B b; }");
+        Path a = sources.resolve("p/A.java");
+
+        try (SlicerEngine engine = newEngine(sources)) {
+            assertFalse(engine.resolveReferencedTypes(a).contains("p.B"));
+            engine.saveCache();
+        }
+        // A.java is unchanged, but its reference to B now resolves.
+        write(sources, "p/B.java", "package p; public class B { }");
+        try (SlicerEngine engine = newEngine(sources)) {
+            assertTrue(engine.resolveReferencedTypes(a).contains("p.B"));
+        }
+    }
+
+    @Test
+    void addingNestedTypeRefreshesInMemoryCacheOnReload() throws IOException {
+        Path sources = tempDir.resolve("src");
+        write(sources, "p/A.java", "package p; public class A { Base.Inner i; }");
+        write(sources, "p/Base.java", "package p; public class Base { }");
+        Path a = sources.resolve("p/A.java");
+
+        SlicerEngine.Config config = SlicerEngine.Config.builder(Collections.singletonList(sources)).inMemoryCache(true).build();
+        try (SlicerEngine engine = new SlicerEngine(config)) {
+            assertFalse(engine.resolveReferencedTypes(a).contains("p.Base.Inner"));
+            write(sources, "p/Base.java", "package p; public class Base { public static class Inner { } }");
+            engine.reload();
+            Set<String> referencedTypes = engine.resolveReferencedTypes(a);
+            assertTrue(referencedTypes.contains("p.Base.Inner"), referencedTypes.toString());
+        }
+    }
+
+    @Test
+    void addingTypeToUnrelatedPackageKeepsCachedEdges() throws IOException {
+        Path sources = tempDir.resolve("src");
+        write(sources, "p/A.java", "package p; import java.util.List; public class A { B b; List<B> l; }");
+        write(sources, "p/B.java", "package p; public class B { }");
+        Path a = sources.resolve("p/A.java");
+
+        try (SlicerEngine engine = newEngine(sources)) {
+            engine.resolveReferencedTypes(a);
+            engine.saveCache();
+        }
+        write(sources, "q/C.java", "package q; public class C { }");
+        long hitsBefore = DependencyCache.totals()[0];
+        try (SlicerEngine engine = newEngine(sources)) {
+            assertTrue(engine.resolveReferencedTypes(a).contains("p.B"));
+        }
+        assertEquals(hitsBefore + 1, DependencyCache.totals()[0]);
+    }
+
+    @Test
+    void addingTypeToImportedPackageRefreshesCachedEdges() throws IOException {
+        Path sources = tempDir.resolve("src");
+        write(sources, "p/A.java", "package p; import q.*; public class A { C c; }");
+        write(sources, "q/D.java", "package q; public class D { }");
+        Path a = sources.resolve("p/A.java");
+
+        try (SlicerEngine engine = newEngine(sources)) {
+            assertFalse(engine.resolveReferencedTypes(a).contains("q.C"));
+            engine.saveCache();
+        }
+        write(sources, "q/C.java", "package q; public class C { }");
+        try (SlicerEngine engine = newEngine(sources)) {
+            assertTrue(engine.resolveReferencedTypes(a).contains("q.C"));
+        }
+    }
+
+    @Test
+    void deletedFilesAreDroppedWhenSaving() throws IOException {
+        Path sources = tempDir.resolve("src");
+        write(sources, "p/A.java", "package p; public class A { B b; }");
+        write(sources, "p/B.java", "package p; public class B { }");
+        Path b = sources.resolve("p/B.java");
+        Path cacheFile = tempDir.resolve("cache").resolve("dependencies.cache");
+
+        try (SlicerEngine engine = newEngine(sources)) {
+            engine.resolveReferencedTypes(sources.resolve("p/A.java"));
+            engine.resolveReferencedTypes(b);
+            engine.saveCache();
+        }
+        assertTrue(new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8).contains(b.toAbsolutePath().normalize().toString()));
+
+        Files.delete(b);
+        try (SlicerEngine engine = newEngine(sources)) {
+            engine.saveCache();
+        }
+        assertFalse(new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8).contains(b.toAbsolutePath().normalize().toString()));
+    }
+
+    private SlicerEngine newEngine(Path sources) throws IOException {
+        return new SlicerEngine(SlicerEngine.Config.builder(Collections.singletonList(sources))
+                .cacheDirectory(tempDir.resolve("cache"))
+                .build());
+    }
+
+    static void write(Path root, String relativePath, String content) throws IOException {
+        Path file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
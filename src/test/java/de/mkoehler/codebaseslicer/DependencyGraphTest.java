@@ -0,0 +1,115 @@
+package de.mkoehler.codebaseslicer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DependencyGraphTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Builds a graph of four files: A uses B and its nested type, B uses Ć, Ć uses A, and D is unused.
+     * The names include non-ASCII characters, since the string table is searched by its UTF-8 bytes.
+     */
+    private DependencyGraph build() throws IOException {
+        Path root = tempDir.resolve("src");
+        Map<String, Path> types = new LinkedHashMap<>();
+        types.put("p.A", write(root, "p/A.java", "package p; class A { B b; B.Inner i; }"));
+        Path b = write(root, "p/B.java", "package p; class B { q.Ć c; static class Inner { } }");
+        types.put("p.B", b);
+        types.put("p.B.Inner", b);
+        // A secondary top-level class, since file names may be limited to ASCII.
+        types.put("q.Ć", write(root, "q/C.java", "package q; class C { } class Ć { p.A a; }"));
+        types.put("q.D", write(root, "q/D.java", "package q; class D { }"));
+
+        List<Path> files = new ArrayList<>(new LinkedHashSet<>(types.values()));
+        Map<Path, Set<String>> dependencies = new HashMap<>();
+        dependencies.put(types.get("p.A"), new HashSet<>(Arrays.asList("p.B", "p.B.Inner", "java.lang.String")));
+        dependencies.put(b, Collections.singleton("q.Ć"));
+        dependencies.put(types.get("q.Ć"), Collections.singleton("p.A"));
+        Map<Path, String> hashes = new HashMap<>();
+        for (Path file : files) {
+            hashes.put(file, DependencyCache.hash(file));
+        }
+        return DependencyGraph.build(Collections.singletonList(root), types, files, dependencies, hashes);
+    }
+
+    private static Path write(Path root, String relativePath, String content) throws IOException {
+        DependencyCacheTest.write(root, relativePath, content);
+        return root.resolve(relativePath);
+    }
+
+    /**
+     * Returns everything a slice query can observe of a graph.
+     */
+    private static List<Object> contents(DependencyGraph graph) {
+        List<Object> contents = new ArrayList<>(Arrays.asList(graph.nodeCount(), graph.edgeCount(), graph.sourceRoots()));
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            contents.add(Arrays.asList(graph.name(node), graph.path(node), graph.isUpToDate(node), graph.find(graph.name(node)),
+                    new TreeSet<>(graph.neighbors(node, DependencyGraph.Direction.FORWARD)),
+                    new TreeSet<>(graph.neighbors(node, DependencyGraph.Direction.REVERSE))));
+        }
+        return contents;
+    }
+
+    @Test
+    void writtenGraphMapsBackUnchanged() throws IOException {
+        DependencyGraph built = build();
+        Path file = tempDir.resolve("graph.bin");
+        built.write(file);
+        DependencyGraph mapped = DependencyGraph.read(file);
+
+        assertEquals(contents(built), contents(mapped));
+        assertEquals(5, mapped.nodeCount());
+        assertEquals(4, mapped.edgeCount());
+        // Only project types are nodes, so the reference to String is not an edge.
+        assertEquals(new TreeSet<>(Arrays.asList("p.B", "p.B.Inner")),
+                new TreeSet<>(mapped.neighbors(mapped.find("p.A"), DependencyGraph.Direction.FORWARD)));
+        assertEquals(Collections.singleton("q.Ć"), mapped.neighbors(mapped.find("p.A"), DependencyGraph.Direction.REVERSE));
+        assertEquals(-1, mapped.find("p.Missing"));
+        assertTrue(mapped.isUpToDate(mapped.find("q.D")));
+
+        Map<String, Integer> slice = mapped.slice(mapped.find("p.A"), 5, DependencyGraph.Direction.FORWARD, type -> true);
+        assertEquals(Map.of("p.A", 0, "p.B", 1, "p.B.Inner", 1, "q.Ć", 2), slice);
+    }
+
+    @Test
+    void changedFileIsOutdated() throws IOException {
+        Path file = tempDir.resolve("graph.bin");
+        build().write(file);
+        Files.writeString(tempDir.resolve("src/q/D.java"), "package q; class D { int changed; }");
+        DependencyGraph mapped = DependencyGraph.read(file);
+        assertFalse(mapped.isUpToDate(mapped.find("q.D")));
+        assertTrue(mapped.isUpToDate(mapped.find("p.A")));
+    }
+
+    @Test
+    void otherVersionsAndTruncatedFilesAreRejected() throws IOException {
+        Path file = tempDir.resolve("graph.bin");
+        build().write(file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        Path truncated = tempDir.resolve("truncated.bin");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+        assertTrue(assertThrows(IOException.class, () -> DependencyGraph.read(truncated)).getMessage().contains("Truncated"));
+
+        Path outdated = tempDir.resolve("outdated.bin");
+        byte[] otherVersion = bytes.clone();
+        ByteBuffer.wrap(otherVersion).putInt(Integer.BYTES, 2);
+        Files.write(outdated, otherVersion);
+        assertTrue(assertThrows(IOException.class, () -> DependencyGraph.read(outdated)).getMessage().contains("Outdated"));
+
+        Path foreign = tempDir.resolve("foreign.bin");
+        Files.write(foreign, "not a graph at all, just text".getBytes());
+        assertTrue(assertThrows(IOException.class, () -> DependencyGraph.read(foreign)).getMessage().contains("Not a dependency graph"));
+    }
+}
@@ -0,0 +1,86 @@
+package de.mkoehler.codebaseslicer;
+
+import org.junit.jupiter.api.Test;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Compares the dependency extraction engines on generated projects of growing size.
+ * <p>
+ * Each project is generated by {@link ExtractorScalingTest#generate(Path, int)} and compiled, and
+ * then {@code -benchmark} runs on it with the classes passed as with {@code -classes}. Without them,
+ * javac parses everything reachable from each file and takes seconds per file, and the class file
+ * engine cannot run.
+ * </p>
+ * <p>
+ * Like the other benchmarks, this only runs with the {@code benchmark} profile, e.g.
+ * {@code mvn test -Pbenchmark -Dtest=ExtractorBenchmark -Dbenchmark.sizes=1000,10000 -DargLine=-Xmx4g}.
+ * The default sizes are 1,000, 10,000 and 100,000 classes; the largest needs about 4 GB of heap.
+ * </p>
+ */
+class ExtractorBenchmark {
+
+    /** The number of files each engine analyzes. */
+    private static final int SAMPLE_SIZE = 200;
+
+    @Test
+    void compareEnginesOnGrowingProjects() throws IOException {
+        Path root = Files.createTempDirectory("slicer-extractors");
+        for (String size : System.getProperty("benchmark.sizes", "1000,10000,100000").split(",")) {
+            int classCount = Integer.parseInt(size.trim());
+            Path sources = root.resolve("c" + classCount).resolve("src");
+            long start = System.nanoTime();
+            ExtractorScalingTest.generate(sources, classCount);
+            System.out.printf("%n=== %d classes (generated in %d ms) ===%n", classCount, (System.nanoTime() - start) / 1_000_000);
+
+            Path classes = Files.createDirectories(root.resolve("c" + classCount).resolve("classes"));
+            if (JavacDependencyExtractor.isAvailable()) {
+                start = System.nanoTime();
+                compile(sources, classes);
+                System.out.printf("Compiled in %d ms.%n", (System.nanoTime() - start) / 1_000_000);
+            }
+
+            start = System.nanoTime();
+            SlicerEngine.Config config = SlicerEngine.Config.builder(Collections.singletonList(sources))
+                    .classDirectories(Collections.singletonList(classes))
+                    .build();
+            try (SlicerEngine engine = new SlicerEngine(config)) {
+                System.out.printf("Indexed in %d ms.%n", (System.nanoTime() - start) / 1_000_000);
+                engine.benchmark(SAMPLE_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Compiles all files of a generated project.
+     *
+     * @param sources The source root.
+     * @param classes The directory to write the classes to.
+     * @throws IOException if the sources cannot be listed or do not compile.
+     */
+    private static void compile(Path sources, Path classes) throws IOException {
+        List<String> arguments = new ArrayList<>(Arrays.asList("-proc:none", "-nowarn", "-d", classes.toString()));
+        try (Stream<Path> files = Files.walk(sources)) {
+            files.filter(file -> file.toString().endsWith(".java")).forEach(file -> arguments.add(file.toString()));
+        }
+        // Like the javac engine, javac needs a deep stack for the long chains of classes in a large project.
+        int[] status = {-1};
+        Thread thread = new Thread(null, () -> status[0] = ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                arguments.toArray(new String[0])), "javac", 512L * 1024 * 1024);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compiling " + sources, e);
+        }
+        if (status[0] != 0) {
+            throw new IOException("The generated project does not compile: " + sources);
+        }
+    }
+}
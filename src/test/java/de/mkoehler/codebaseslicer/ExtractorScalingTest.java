@@ -0,0 +1,146 @@
+package de.mkoehler.codebaseslicer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Generates synthetic projects and compares the dependency extraction engines on them.
+ * <p>
+ * The generated classes are spread over packages of {@value #CLASSES_PER_PACKAGE} classes and
+ * compile. Every third class extends a class with a lower number, the others implement a generic
+ * interface, and each refers to a few random classes through imports, same-package names, fully
+ * qualified names, generic type arguments, static calls and a nested type. The generator is seeded,
+ * so the same size always gives the same project, and it returns the project types each class refers
+ * to in type positions. Every engine must find those. The class of a static call is not among them,
+ * since the accurate engine only follows types, and neither is the enclosing type of a nested type,
+ * which only the accurate engine reports.
+ * </p>
+ * <p>
+ * The test checks that every engine finds these references on a small project. The size sweep over
+ * large generated projects is {@link ExtractorBenchmark}.
+ * </p>
+ */
+class ExtractorScalingTest {
+
+    /** The number of generated classes in each package. */
+    private static final int CLASSES_PER_PACKAGE = 100;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void everyEngineFindsTheGeneratedReferences() throws IOException {
+        Path sources = tempDir.resolve("src");
+        Map<String, Set<String>> expected = generate(sources, 300);
+        List<String> modes = new ArrayList<>(Arrays.asList("accurate", "fast"));
+        if (JavacDependencyExtractor.isAvailable()) {
+            modes.add("javac");
+        }
+        for (String mode : modes) {
+            SlicerEngine.Config config = SlicerEngine.Config.builder(Collections.singletonList(sources)).mode(mode).build();
+            try (SlicerEngine engine = new SlicerEngine(config)) {
+                // Every 61st class, which covers all packages and classes with and without a superclass.
+                for (int i = 0; i < expected.size(); i += 61) {
+                    String className = className(i);
+                    Set<String> found = new HashSet<>(engine.resolveReferencedTypes(engine.convertQualifiedNameToPath(className)));
+                    found.removeIf(type -> !engine.isProjectType(type));
+                    found.remove(className);
+                    assertTrue(found.containsAll(expected.get(className)), mode + ": " + className + " " + found);
+                    if (mode.equals("accurate")) {
+                        found.removeAll(expected.get(className));
+                        found.removeIf(type -> expected.get(className).contains(type + ".Part"));
+                        assertEquals(Collections.emptySet(), found, mode + ": " + className);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates a project.
+     *
+     * @param sources The source root to generate the project in.
+     * @param classes The number of classes to generate, besides the shared interface.
+     * @return The fully qualified names of the project types each generated class refers to, by class name.
+     * @throws IOException if a file cannot be written.
+     */
+    static Map<String, Set<String>> generate(Path sources, int classes) throws IOException {
+        Random random = new Random(42);
+        DependencyCacheTest.write(sources, "gen/api/Handler.java",
+                "package gen.api;\n\npublic interface Handler<T> {\n    void handle(T value);\n}\n");
+
+        Map<String, Set<String>> expected = new LinkedHashMap<>();
+        for (int i = 0; i < classes; i++) {
+            int[] refs = new int[5];
+            for (int k = 0; k < refs.length; k++) {
+                refs[k] = random.nextInt(classes - 1);
+                if (refs[k] >= i) {
+                    refs[k]++;
+                }
+            }
+            Integer superclass = i % 3 == 0 && i > 0 ? random.nextInt(i) : null;
+            int handled = refs[0], imported = refs[1], called = refs[2], created = refs[3], nested = refs[4];
+
+            String packageName = packageName(i);
+            StringBuilder code = new StringBuilder("package ").append(packageName).append(";\n\n");
+            code.append("import java.util.ArrayList;\nimport java.util.List;\n");
+            for (int ref : new int[] {imported, called}) {
+                if (!packageName(ref).equals(packageName)) {
+                    code.append("import ").append(className(ref)).append(";\n");
+                }
+            }
+            code.append(superclass != null ? "\n" : "import gen.api.Handler;\n\n");
+            code.append("public class C").append(i);
+            if (superclass != null) {
+                // The superclass already implements the interface, with another type argument.
+                code.append(" extends ").append(className(superclass)).append(" {\n\n");
+            } else {
+                code.append(" implements Handler<").append(className(handled)).append("> {\n\n");
+            }
+            code.append("    private final List<C").append(imported).append("> items = new ArrayList<>();\n");
+            code.append("    private ").append(className(nested)).append(".Part part;\n\n");
+            code.append("    public static C").append(i).append(" create() {\n        return new C").append(i).append("();\n    }\n\n");
+            code.append(superclass != null ? "    public void process(" : "    @Override\n    public void handle(")
+                    .append(className(handled)).append(" value) {\n");
+            code.append("        ").append(className(created)).append(" created = ").append(className(created)).append(".create();\n");
+            code.append("        if (created != null && C").append(called).append(".count() > items.size()) {\n");
+            code.append("            items.add(null);\n        }\n    }\n\n");
+            code.append("    public static int count() {\n        return ").append(i % 7).append(";\n    }\n\n");
+            code.append("    public static class Part {\n        private C").append(i).append(" owner;\n    }\n}\n");
+            DependencyCacheTest.write(sources, packageName.replace('.', '/') + "/C" + i + ".java", code.toString());
+
+            Set<String> references = new TreeSet<>(Arrays.asList(className(handled), className(imported),
+                    className(created), className(nested) + ".Part"));
+            references.add(superclass != null ? className(superclass) : "gen.api.Handler");
+            expected.put(className(i), references);
+        }
+        return expected;
+    }
+
+    /**
+     * Returns the package of a generated class.
+     *
+     * @param i The number of the class.
+     * @return The package name.
+     */
+    private static String packageName(int i) {
+        return "gen.p" + i / CLASSES_PER_PACKAGE;
+    }
+
+    /**
+     * Returns the fully qualified name of a generated class.
+     *
+     * @param i The number of the class.
+     * @return The class name.
+     */
+    private static String className(int i) {
+        return packageName(i) + ".C" + i;
+    }
+}
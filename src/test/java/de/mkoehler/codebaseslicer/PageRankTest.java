@@ -0,0 +1,73 @@
+package de.mkoehler.codebaseslicer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageRankTest {
+
+    /**
+     * Builds a random graph large enough to be split into many chunks.
+     */
+    private static DependencyGraph randomGraph(int nodeCount, int edgesPerNode) {
+        Random random = new Random(42);
+        Map<String, Path> types = new HashMap<>();
+        List<Path> files = new ArrayList<>();
+        Map<Path, Set<String>> dependencies = new HashMap<>();
+        Map<Path, String> hashes = new HashMap<>();
+        for (int i = 0; i < nodeCount; i++) {
+            Path file = Paths.get("p", "C" + i + ".java");
+            types.put("p.C" + i, file);
+            files.add(file);
+            hashes.put(file, String.format("%064x", i));
+        }
+        for (Path file : files) {
+            Set<String> targets = new HashSet<>();
+            for (int e = 0; e < edgesPerNode; e++) {
+                targets.add("p.C" + random.nextInt(nodeCount));
+            }
+            dependencies.put(file, targets);
+        }
+        return DependencyGraph.build(Collections.singletonList(Paths.get("src")), types, files, dependencies, hashes);
+    }
+
+    /**
+     * A parallel stream runs in the fork/join pool of the task that starts it, so computing the
+     * ranking inside pools of different sizes splits the sums among different numbers of threads.
+     */
+    @Test
+    void scoresDoNotDependOnTheNumberOfThreads() throws Exception {
+        DependencyGraph graph = randomGraph(50_000, 3);
+        List<Integer> seeds = Arrays.asList(graph.find("p.C0"), graph.find("p.C1"));
+        PageRank single = rankInPool(graph, seeds, 1);
+        PageRank parallel = rankInPool(graph, seeds, 8);
+
+        assertEquals(single.getIterations(), parallel.getIterations());
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            assertEquals(Double.doubleToLongBits(single.score(node)), Double.doubleToLongBits(parallel.score(node)),
+                    "score of node " + node);
+        }
+    }
+
+    private static PageRank rankInPool(DependencyGraph graph, List<Integer> seeds, int parallelism) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> PageRank.compute(graph, seeds)).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void seedsRankAboveUnrelatedNodes() {
+        DependencyGraph graph = randomGraph(1_000, 2);
+        int seed = graph.find("p.C7");
+        PageRank ranking = PageRank.compute(graph, Collections.singletonList(seed));
+        assertEquals(seed, (int) ranking.top(1).get(0));
+    }
+}
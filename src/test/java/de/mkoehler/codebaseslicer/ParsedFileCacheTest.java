@@ -0,0 +1,72 @@
+package de.mkoehler.codebaseslicer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that a long-lived engine does not serve syntax trees of files that were edited since they
+ * were parsed, neither to the next slice nor to the dependency cache on disk.
+ */
+class ParsedFileCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void editBetweenTwoSlicesIsSeen() throws IOException {
+        Path sources = tempDir.resolve("src");
+        DependencyCacheTest.write(sources, "p/Root.java", "package p; public class Root { A a; }");
+        DependencyCacheTest.write(sources, "p/A.java", "package p; public class A { }");
+        DependencyCacheTest.write(sources, "p/B.java", "package p; public class B { }");
+        Path root = sources.resolve("p/Root.java");
+
+        try (SlicerEngine engine = newEngine(sources)) {
+            assertEquals(new TreeSet<>(Arrays.asList("p.A", "p.Root")), slice(engine));
+
+            // The new content has the same size, so only the modification time tells the versions
+            // apart. It is moved on explicitly in case the file system has coarse timestamps.
+            FileTime before = Files.getLastModifiedTime(root);
+            DependencyCacheTest.write(sources, "p/Root.java", "package p; public class Root { B b; }");
+            Files.setLastModifiedTime(root, FileTime.fromMillis(before.toMillis() + 2000));
+            assertEquals(new TreeSet<>(Arrays.asList("p.B", "p.Root")), slice(engine));
+        }
+        // The dependency cache must have stored the new references under the new content hash.
+        try (SlicerEngine engine = newEngine(sources)) {
+            assertEquals(Collections.singleton("p.B"), engine.resolveReferencedTypes(root));
+        }
+    }
+
+    @Test
+    void changedFileIsDroppedAndReported() throws IOException {
+        Path file = tempDir.resolve("A.java");
+        DependencyCacheTest.write(tempDir, "A.java", "class A { }");
+        int[] changes = {0};
+        ParsedFileCache cache = new ParsedFileCache(Long.MAX_VALUE, () -> changes[0]++);
+        cache.put(file, Optional.empty());
+        assertTrue(cache.get(file).isPresent());
+
+        DependencyCacheTest.write(tempDir, "A.java", "class A { int i; }");
+        assertFalse(cache.get(file).isPresent());
+        assertEquals(1, changes[0]);
+        assertEquals(0, cache.size());
+    }
+
+    private SlicerEngine newEngine(Path sources) throws IOException {
+        return new SlicerEngine(SlicerEngine.Config.builder(Collections.singletonList(sources))
+                .cacheDirectory(tempDir.resolve("cache"))
+                .build());
+    }
+
+    private Set<String> slice(SlicerEngine engine) throws IOException {
+        return new TreeSet<>(engine.slice("p.Root", 1, Collections.emptyList(), tempDir.resolve("slice.txt"), 0, -1)
+                .getClasses().keySet());
+    }
+}
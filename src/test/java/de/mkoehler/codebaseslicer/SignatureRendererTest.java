@@ -0,0 +1,85 @@
+package de.mkoehler.codebaseslicer;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignatureRendererTest {
+
+    private static final ParserConfiguration.LanguageLevel LEVEL = ParserConfiguration.LanguageLevel.JAVA_17;
+
+    @TempDir
+    Path tempDir;
+
+    private CompilationUnit renderAndParse(String relPath, String content) throws IOException {
+        DependencyCacheTest.write(tempDir, relPath, content);
+        String rendered = new SignatureRenderer(LEVEL).render(tempDir.resolve(relPath));
+        ParseResult<CompilationUnit> result = new JavaParser(new ParserConfiguration().setLanguageLevel(LEVEL)).parse(rendered);
+        assertTrue(result.isSuccessful(), () -> result.getProblems() + "\n" + rendered);
+        return result.getResult().get();
+    }
+
+    private static MethodDeclaration method(CompilationUnit cu, String name) {
+        return cu.findFirst(MethodDeclaration.class, method -> method.getNameAsString().equals(name)).get();
+    }
+
+    @Test
+    void classMethodsLoseTheirBodies() throws IOException {
+        CompilationUnit cu = renderAndParse("p/A.java", "package p;\n"
+                + "/** Doc. */\n"
+                + "public class A {\n"
+                + "    private int n = 1;\n"
+                + "    static { System.out.println(); }\n"
+                + "    public A(int n) { this.n = n; }\n"
+                + "    // Comment.\n"
+                + "    public int twice(int x) { return 2 * x; }\n"
+                + "    abstract static class B { abstract void f(); }\n"
+                + "}\n");
+        assertFalse(method(cu, "twice").getBody().isPresent());
+        assertFalse(method(cu, "f").getBody().isPresent());
+        assertTrue(cu.getAllContainedComments().stream().allMatch(comment -> comment.getContent().contains("Signatures only")));
+        assertFalse(cu.toString().contains("println"));
+    }
+
+    @Test
+    void interfaceMethodsThatNeedABodyKeepAnEmptyOne() throws IOException {
+        CompilationUnit cu = renderAndParse("p/I.java", "package p;\n"
+                + "public interface I {\n"
+                + "    int abstractMethod();\n"
+                + "    default int defaultMethod() { return abstractMethod() + 1; }\n"
+                + "    static int staticMethod() { return 2; }\n"
+                + "    private int privateMethod() { return 3; }\n"
+                + "}\n");
+        assertFalse(method(cu, "abstractMethod").getBody().isPresent());
+        for (String name : new String[] {"defaultMethod", "staticMethod", "privateMethod"}) {
+            assertTrue(method(cu, name).getBody().get().isEmpty(), name);
+        }
+    }
+
+    @Test
+    void anonymousClassesAndEnumConstantBodiesAreKept() throws IOException {
+        CompilationUnit cu = renderAndParse("p/E.java", "package p;\n"
+                + "public enum E implements Runnable {\n"
+                + "    A { public void run() { System.out.println(\"a\"); } },\n"
+                + "    B;\n"
+                + "    Runnable task = new Runnable() { public void run() { System.out.println(\"task\"); } };\n"
+                + "    public void run() { System.out.println(\"b\"); }\n"
+                + "    record R(int a) { R { if (a < 0) throw new IllegalArgumentException(); } int twice() { return a * 2; } }\n"
+                + "}\n");
+        String rendered = cu.toString();
+        assertTrue(rendered.contains("\"a\""), rendered);
+        assertTrue(rendered.contains("\"task\""), rendered);
+        assertFalse(rendered.contains("\"b\""), rendered);
+        assertFalse(rendered.contains("IllegalArgumentException"), rendered);
+        assertFalse(method(cu, "twice").getBody().isPresent());
+    }
+}
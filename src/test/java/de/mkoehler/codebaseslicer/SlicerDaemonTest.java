@@ -0,0 +1,125 @@
+package de.mkoehler.codebaseslicer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the request validation of the daemon. Requests are sent over a plain socket, since the JDK
+ * HTTP clients do not allow setting the {@code Host} header.
+ */
+class SlicerDaemonTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SlicerEngine engine;
+    private SlicerDaemon daemon;
+    private Path outputDirectory;
+    private int port;
+
+    @BeforeEach
+    void startDaemon() throws IOException {
+        Path sources = tempDir.resolve("src");
+        DependencyCacheTest.write(sources, "p/A.java", "package p; public class A { B b; }");
+        DependencyCacheTest.write(sources, "p/B.java", "package p; public class B { }");
+        outputDirectory = Files.createDirectories(tempDir.resolve("out"));
+        engine = new SlicerEngine(SlicerEngine.Config.builder(Collections.singletonList(sources)).inMemoryCache(true).build());
+        daemon = new SlicerDaemon(engine, 0, outputDirectory);
+        port = daemon.start();
+    }
+
+    @AfterEach
+    void stopDaemon() {
+        daemon.stop();
+        engine.close();
+    }
+
+    @Test
+    void validSliceIsWrittenToTheOutputDirectory() throws IOException {
+        String response = send("POST", "/slice?root=p.A&depth=1&output=a.txt", "localhost:" + port, null);
+        assertTrue(response.startsWith("HTTP/1.1 200"), response);
+        assertTrue(Files.readString(outputDirectory.resolve("a.txt")).contains("class B"));
+    }
+
+    @Test
+    void getIsRejected() throws IOException {
+        assertStatus(405, send("GET", "/slice?root=p.A&depth=1&output=a.txt", "localhost:" + port, null));
+        assertFalse(Files.exists(outputDirectory.resolve("a.txt")));
+    }
+
+    @Test
+    void missingParameterIsRejected() throws IOException {
+        assertStatus(400, send("POST", "/slice?root=p.A&output=a.txt", "localhost:" + port, null));
+    }
+
+    @Test
+    void invalidNumberIsRejected() throws IOException {
+        assertStatus(400, send("POST", "/slice?root=p.A&depth=two&output=a.txt", "localhost:" + port, null));
+        assertStatus(400, send("POST", "/slice?root=p.A&depth=1&output=a.txt&timeout=-5", "localhost:" + port, null));
+        assertStatus(400, send("POST", "/slice?root=p.A&depth=1&output=a.txt&timeout=0", "localhost:" + port, null));
+    }
+
+    @Test
+    void outputOutsideTheOutputDirectoryIsRejected() throws IOException {
+        assertStatus(400, send("POST", "/slice?root=p.A&depth=1&output=../escaped.txt", "localhost:" + port, null));
+        assertStatus(400, send("POST", "/slice?root=p.A&depth=1&output=sub/../../escaped.txt", "localhost:" + port, null));
+        String absolute = tempDir.resolve("absolute.txt").toString();
+        assertStatus(400, send("POST", "/slice?root=p.A&depth=1&output=" + absolute, "localhost:" + port, null));
+        assertFalse(Files.exists(tempDir.resolve("escaped.txt")));
+        assertFalse(Files.exists(tempDir.resolve("absolute.txt")));
+    }
+
+    @Test
+    void foreignHostIsRejected() throws IOException {
+        assertStatus(403, send("POST", "/slice?root=p.A&depth=1&output=a.txt", "attacker.example:" + port, null));
+        assertStatus(403, send("POST", "/shutdown", "attacker.example", null));
+    }
+
+    @Test
+    void requestFromWebPageIsRejected() throws IOException {
+        assertStatus(403, send("POST", "/slice?root=p.A&depth=1&output=a.txt", "localhost:" + port, "http://attacker.example"));
+        assertFalse(Files.exists(outputDirectory.resolve("a.txt")));
+    }
+
+    @Test
+    void reloadAnswers() throws IOException {
+        assertStatus(200, send("POST", "/reload", "127.0.0.1:" + port, null));
+        assertStatus(405, send("GET", "/reload", "127.0.0.1:" + port, null));
+    }
+
+    private static void assertStatus(int status, String response) {
+        assertTrue(response.startsWith("HTTP/1.1 " + status), response);
+    }
+
+    /**
+     * Sends a request without a body and returns the whole response.
+     */
+    private String send(String method, String target, String host, String origin) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            StringBuilder request = new StringBuilder(method + " " + target + " HTTP/1.1\r\nHost: " + host + "\r\n");
+            if (origin != null) {
+                request.append("Origin: ").append(origin).append("\r\n");
+            }
+            request.append("Content-Length: 0\r\nConnection: close\r\n\r\n");
+            OutputStream out = socket.getOutputStream();
+            out.write(request.toString().getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package de.mkoehler.codebaseslicer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBudgetTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path sources;
+    private SlicerEngine engine;
+
+    /**
+     * Generates a root that references a large and a small class; the small class references a tiny one.
+     */
+    @BeforeEach
+    void generateProject() throws IOException {
+        sources = tempDir.resolve("src");
+        DependencyCacheTest.write(sources, "p/Root.java", "package p; public class Root { Big big; Small small; }");
+        StringBuilder big = new StringBuilder("package p; public class Big {\n");
+        for (int i = 0; i < 200; i++) {
+            big.append("    int field").append(i).append(" = ").append(i).append(";\n");
+        }
+        DependencyCacheTest.write(sources, "p/Big.java", big.append("}\n").toString());
+        DependencyCacheTest.write(sources, "p/Small.java", "package p; public class Small { Tiny tiny; }");
+        DependencyCacheTest.write(sources, "p/Tiny.java", "package p; public class Tiny { }");
+        engine = new SlicerEngine(SlicerEngine.Config.builder(Collections.singletonList(sources)).build());
+    }
+
+    @AfterEach
+    void closeEngine() {
+        engine.close();
+    }
+
+    private long tokens(String... classNames) {
+        long tokens = 0;
+        for (String className : classNames) {
+            tokens += SliceSession.estimateTokens(sources.resolve("p/" + className + ".java"));
+        }
+        return tokens;
+    }
+
+    @Test
+    void classesThatDoNotFitAreSkipped() throws IOException {
+        long budget = tokens("Root", "Small", "Tiny") + 1;
+        assertTrue(tokens("Big") > budget, "The fixture must not fit.");
+
+        SliceResult result = engine.slice("p.Root", 5, Collections.emptyList(), tempDir.resolve("slice.txt"), budget, -1);
+        assertEquals(new HashSet<>(Arrays.asList("p.Root", "p.Small", "p.Tiny")), result.getClasses().keySet());
+        assertFalse(result.isCutOff());
+    }
+
+    @Test
+    void sliceStaysWithinTheBudget() throws IOException {
+        for (long budget = tokens("Root"); budget <= tokens("Root", "Big", "Small", "Tiny"); budget += 7) {
+            SliceResult result = engine.slice("p.Root", 5, Collections.emptyList(), tempDir.resolve("slice.txt"), budget, -1);
+            long used = 0;
+            for (Path file : result.getFiles()) {
+                used += SliceSession.estimateTokens(file);
+            }
+            assertTrue(used <= budget, "Used " + used + " of " + budget + " tokens.");
+        }
+    }
+
+    @Test
+    void skippedClassesAreNotFollowed() throws IOException {
+        // Tiny would fit, but it is only reachable through Small, which does not.
+        long budget = tokens("Root", "Tiny");
+        SliceResult result = engine.slice("p.Root", 5, Collections.emptyList(), tempDir.resolve("slice.txt"), budget, -1);
+        assertEquals(Collections.singleton("p.Root"), result.getClasses().keySet());
+    }
+
+    @Test
+    void rootIsKeptEvenOverBudget() throws IOException {
+        SliceResult result = engine.slice("p.Root", 5, Collections.emptyList(), tempDir.resolve("slice.txt"), 1, -1);
+        assertEquals(Collections.singleton("p.Root"), result.getClasses().keySet());
+    }
+}
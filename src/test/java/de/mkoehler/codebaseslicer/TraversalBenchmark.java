@@ -0,0 +1,75 @@
+package de.mkoehler.codebaseslicer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+/**
+ * Shows that the breadth-first traversal scales linearly with the width of the dependency graph.
+ * <p>
+ * Each generated project has a root class that references {@code width} classes, and every one of
+ * those references two of its siblings and the root again, so each class is discovered several
+ * times. The traversal runs in {@code fast} mode, so that resolution costs little next to the
+ * bookkeeping of the work queue. With a queue scan per enqueued class, doubling the width would
+ * quadruple the time per slice; with hashed lookups, the time per class stays flat.
+ * </p>
+ * <p>
+ * Like the other benchmarks, this only runs with the {@code benchmark} profile, e.g.
+ * {@code mvn test -Pbenchmark -Dtest=TraversalBenchmark -Dbenchmark.widths=1000,8000}.
+ * </p>
+ */
+class TraversalBenchmark {
+
+    /** The number of runs per width whose time is discarded, to warm up the JIT. */
+    private static final int WARMUP_RUNS = 2;
+
+    @Test
+    void timePerClassForGrowingWidths() throws IOException {
+        Path root = Files.createTempDirectory("slicer-scaling");
+        System.out.println("width  us/class");
+        for (String width : System.getProperty("benchmark.widths", "1000,2000,4000,8000,16000,32000").split(",")) {
+            int classCount = Integer.parseInt(width.trim());
+            System.out.printf("%5d  %8.1f%n", classCount, measure(root.resolve("w" + classCount), classCount) / 1e3);
+        }
+    }
+
+    /**
+     * Generates a project of the given width and measures one slice of it.
+     *
+     * @param directory The directory to generate the project in.
+     * @param width     The number of classes the root references.
+     * @return The time of the slice per class, in nanoseconds.
+     * @throws IOException if the project cannot be generated.
+     */
+    private static double measure(Path directory, int width) throws IOException {
+        Path sources = directory.resolve("src");
+        StringBuilder rootClass = new StringBuilder("package p;\npublic class Root {\n");
+        for (int i = 0; i < width; i++) {
+            rootClass.append("    C").append(i).append(" f").append(i).append(";\n");
+            DependencyCacheTest.write(sources, "p/C" + i + ".java", "package p;\npublic class C" + i + " {\n"
+                    + "    C" + (i + 1) % width + " next;\n    C" + (i + 7) % width + " skip;\n    Root root;\n}\n");
+        }
+        DependencyCacheTest.write(sources, "p/Root.java", rootClass.append("}\n").toString());
+
+        PrintStream out = System.out;
+        SlicerEngine.Config config = SlicerEngine.Config.builder(Collections.singletonList(sources)).mode("fast").build();
+        try (SlicerEngine engine = new SlicerEngine(config)) {
+            // The traversal prints every class; that is not what is measured here.
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            long nanos = 0;
+            for (int run = 0; run <= WARMUP_RUNS; run++) {
+                long start = System.nanoTime();
+                engine.newSession("p.Root", 2, Collections.emptyList(), directory.resolve("slice.txt")).run();
+                nanos = System.nanoTime() - start;
+            }
+            return (double) nanos / (width + 1);
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
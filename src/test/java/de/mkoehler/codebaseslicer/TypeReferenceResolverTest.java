@@ -0,0 +1,45 @@
+package de.mkoehler.codebaseslicer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that the import-based shortcuts of the resolver agree with {@code -exclude-packages}: excluded
+ * names are dropped, JDK names are resolved whenever they are not excluded, and other libraries are
+ * never resolved.
+ */
+class TypeReferenceResolverTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void jdkIsResolvedUnlessExcluded() throws IOException {
+        Path sources = tempDir.resolve("src");
+        DependencyCacheTest.write(sources, "p/A.java", "package p;\n\nimport java.util.List;\nimport org.lib.Thing;\n\n"
+                + "public class A {\n    List<B> items;\n    Thing thing;\n    javax.swing.JPanel panel;\n}\n");
+        DependencyCacheTest.write(sources, "p/B.java", "package p; public class B { }");
+        Path a = sources.resolve("p/A.java");
+
+        assertEquals(new TreeSet<>(Collections.singletonList("p.B")), referencedTypes(sources, a, PackageTrie.DEFAULT_PREFIXES));
+        // Only excludes org.lib; the JDK is resolved, as the type solvers can see it.
+        assertEquals(new TreeSet<>(Arrays.asList("java.util.List", "javax.swing.JPanel", "p.B")),
+                referencedTypes(sources, a, "org.lib."));
+        assertEquals(new TreeSet<>(Arrays.asList("javax.swing.JPanel", "p.B")), referencedTypes(sources, a, "java."));
+    }
+
+    private static Set<String> referencedTypes(Path sources, Path file, String excludedPackages) throws IOException {
+        SlicerEngine.Config config = SlicerEngine.Config.builder(Collections.singletonList(sources))
+                .excludedPackages(excludedPackages)
+                .build();
+        try (SlicerEngine engine = new SlicerEngine(config)) {
+            return new TreeSet<>(engine.resolveReferencedTypes(file));
+        }
+    }
+}